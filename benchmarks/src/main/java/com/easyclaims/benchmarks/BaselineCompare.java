@@ -0,0 +1,102 @@
+package com.easyclaims.benchmarks;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares a JMH JSON result file against the committed baseline.
+ *
+ * Usage: BaselineCompare &lt;baseline.json&gt; &lt;results.json&gt; [maxRegressionPercent]
+ *
+ * Benchmarks are matched by name and parameters. Exits with 1 if any of them got slower
+ * (or, in throughput mode, lower) by more than the allowed percentage, 10 by default.
+ */
+public final class BaselineCompare {
+
+    private BaselineCompare() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineCompare <baseline.json> <results.json> [maxRegressionPercent]");
+            System.exit(2);
+        }
+        Map<String, Score> baseline = read(Paths.get(args[0]));
+        Map<String, Score> results = read(Paths.get(args[1]));
+        double maxRegression = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+
+        int regressions = 0;
+        for (Map.Entry<String, Score> entry : results.entrySet()) {
+            Score current = entry.getValue();
+            Score before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("  new   %-80s %12.3f %s%n", entry.getKey(), current.value, current.unit);
+                continue;
+            }
+            // Positive change = worse
+            double change = (current.value - before.value) / before.value * 100.0;
+            if (current.higherIsBetter) {
+                change = -change;
+            }
+            boolean regressed = change > maxRegression;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%s %-80s %12.3f -> %12.3f %s (%+.1f%%)%n", regressed ? "  SLOW " : "  ok   ",
+                    entry.getKey(), before.value, current.value, current.unit, change);
+        }
+        for (String key : baseline.keySet()) {
+            if (!results.containsKey(key)) {
+                System.out.printf("  gone  %s%n", key);
+            }
+        }
+
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) regressed by more than %.1f%%%n", regressions, maxRegression);
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Score> read(Path file) throws IOException {
+        Map<String, Score> scores = new TreeMap<>();
+        JsonArray runs = JsonParser.parseString(Files.readString(file)).getAsJsonArray();
+        for (JsonElement element : runs) {
+            JsonObject run = element.getAsJsonObject();
+            StringBuilder key = new StringBuilder(run.get("benchmark").getAsString());
+            if (run.has("params")) {
+                // TreeMap so the key doesn't depend on the order JMH wrote the params in
+                Map<String, String> params = new TreeMap<>();
+                for (Map.Entry<String, JsonElement> param : run.getAsJsonObject("params").entrySet()) {
+                    params.put(param.getKey(), param.getValue().getAsString());
+                }
+                key.append(params);
+            }
+            JsonObject metric = run.getAsJsonObject("primaryMetric");
+            String mode = run.get("mode").getAsString();
+            scores.put(key.toString(), new Score(metric.get("score").getAsDouble(),
+                    metric.get("scoreUnit").getAsString(), mode.equals("thrpt")));
+        }
+        return scores;
+    }
+
+    private static final class Score {
+        private final double value;
+        private final String unit;
+        private final boolean higherIsBetter;
+
+        private Score(double value, String unit, boolean higherIsBetter) {
+            this.value = value;
+            this.unit = unit;
+            this.higherIsBetter = higherIsBetter;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.easyclaims.benchmarks;
+
+import com.easyclaims.config.BlockGroups;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classifying interacted blocks into trust groups with the default block groups, the way
+ * the use protection does: USE, then CONTAINER, then WORKSTATION.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockGroupsBenchmark {
+
+    // Mostly plain blocks, like what players actually click on
+    private static final String[] BLOCK_IDS = {
+            "Rock_Stone", "Soil_Grass", "Wood_Oak_Trunk", "Soil_Dirt", "Rock_Stone_Cobble",
+            "Plant_Grass_Sharp", "Wood_Oak_Planks", "Rock_Sandstone", "Soil_Sand", "Plant_Flower_Common",
+            "Door_Wooden", "Furniture_Village_Door", "Trapdoor_Crude", "Wood_Fence_Gate",
+            "Chest_Small_Crude", "Furniture_Tavern_Barrel", "Chest_Large_Jungle",
+            "Bench_Anvil", "Bench_Workbench", "Bench_Furnace"
+    };
+
+    private Path directory;
+    private BlockGroups blockGroups;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("easyclaims-bench");
+        blockGroups = new BlockGroups(directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticClaims.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public int classify() {
+        String id = BLOCK_IDS[next++ % BLOCK_IDS.length];
+        if (blockGroups.isUseBlockId(id)) return 1;
+        if (blockGroups.isContainerBlockId(id)) return 2;
+        if (blockGroups.isWorkstationBlockId(id)) return 3;
+        return 0;
+    }
+}
@@ -0,0 +1,129 @@
+package com.easyclaims.benchmarks;
+
+import com.easyclaims.config.BlockGroups;
+import com.easyclaims.config.PluginConfig;
+import com.easyclaims.data.ClaimStorage;
+import com.easyclaims.data.PlaytimeStorage;
+import com.easyclaims.data.TrustLevel;
+import com.easyclaims.managers.ClaimManager;
+import com.easyclaims.util.ChunkUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claim lookups on the protection path: owner of a chunk, permission checks, and the
+ * buffer zone search done when claiming.
+ *
+ * Probes are a fixed random mix of owned chunks checked by their owner, by a trusted
+ * player and by a stranger, plus unclaimed chunks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClaimLookupBenchmark {
+
+    private static final int PROBES = 4096;
+
+    @Param({"1000", "100000", "1000000"})
+    public int claims;
+
+    @Param({"10", "1000", "10000"})
+    public int owners;
+
+    private SyntheticClaims data;
+    private ClaimStorage storage;
+    private ClaimManager manager;
+    private int bufferSize;
+
+    private final int[] probeX = new int[PROBES];
+    private final int[] probeZ = new int[PROBES];
+    private final UUID[] probePlayer = new UUID[PROBES];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        data = SyntheticClaims.create(claims, owners, 42);
+        storage = data.open();
+        PluginConfig config = new PluginConfig(data.dataDirectory);
+        manager = new ClaimManager(storage, new PlaytimeStorage(data.dataDirectory), config,
+                new BlockGroups(data.dataDirectory));
+        bufferSize = Math.max(1, config.getClaimBufferSize());
+
+        // Owner files are loaded on first use, as on a server that has been up for a while
+        for (UUID owner : data.owners) {
+            storage.getPlayerClaims(owner);
+        }
+
+        Random random = new Random(7);
+        for (int i = 0; i < PROBES; ++i) {
+            if (random.nextInt(4) == 0) {
+                probeX[i] = random.nextInt(data.size);
+                probeZ[i] = random.nextInt(data.size);
+                probePlayer[i] = data.owners[random.nextInt(data.owners.length)];
+                continue;
+            }
+            int claim = random.nextInt(data.claimX.length);
+            probeX[i] = data.claimX[claim];
+            probeZ[i] = data.claimZ[claim];
+            UUID owner = data.claimOwner[claim];
+            switch (random.nextInt(3)) {
+                case 0 -> probePlayer[i] = owner;
+                case 1 -> probePlayer[i] = trustedOf(owner);
+                default -> probePlayer[i] = new UUID(random.nextLong(), random.nextLong());
+            }
+        }
+    }
+
+    private UUID trustedOf(UUID owner) {
+        for (int o = 0; o < data.owners.length; ++o) {
+            if (data.owners[o].equals(owner)) {
+                return data.trustedOf(o, 0);
+            }
+        }
+        return owner;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        data.delete();
+    }
+
+    @Benchmark
+    public UUID getClaimOwner() {
+        int i = next++ & (PROBES - 1);
+        return storage.getClaimOwner(SyntheticClaims.WORLD, probeX[i], probeZ[i]);
+    }
+
+    @Benchmark
+    public boolean hasPermissionAt() {
+        int i = next++ & (PROBES - 1);
+        double x = ChunkUtil.getChunkMinX(probeX[i]) + 5.5;
+        double z = ChunkUtil.getChunkMinZ(probeZ[i]) + 9.5;
+        return manager.hasPermissionAt(probePlayer[i], SyntheticClaims.WORLD, x, z, TrustLevel.BUILD);
+    }
+
+    @Benchmark
+    public UUID findNearbyClaimByOtherPlayer() {
+        int i = next++ & (PROBES - 1);
+        return storage.findNearbyClaimByOtherPlayer(SyntheticClaims.WORLD, probeX[i], probeZ[i], bufferSize, probePlayer[i]);
+    }
+}
@@ -0,0 +1,152 @@
+package com.easyclaims.benchmarks;
+
+import com.easyclaims.map.FluidSurfaceMap;
+import com.easyclaims.map.MapTileRenderer;
+import com.easyclaims.map.TerrainTile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The stages of rendering one map tile, on synthetic chunks. Scores are tiles per second
+ * for each stage on its own; run with -prof gc for the allocation per tile
+ * (gc.alloc.rate.norm).
+ *
+ * Stages follow ClaimImageBuilder: heights, fluid surface and block colors are the
+ * sampling stage, then shading, claim overlay and text.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapRenderBenchmark {
+
+    /**
+     * Claims around the rendered chunk.
+     */
+    public enum Claims {
+        // Nothing claimed, no overlay
+        NONE,
+        // Claimed, all neighbors by the same owner: fill only
+        INSIDE,
+        // Claimed, every neighbor by someone else: borders on all sides
+        EDGE
+    }
+
+    @Param({"16", "32", "64", "128"})
+    public int imageSize;
+
+    @Param({"PLAINS", "HILLS", "COAST"})
+    public SyntheticChunk.Layout terrain;
+
+    @Param({"NONE", "INSIDE", "EDGE"})
+    public Claims claims;
+
+    private SyntheticChunk chunk;
+    private int sampleSize;
+    private int blockStep;
+    private short[] heights;
+    private short[] borderedHeights;
+    private FluidSurfaceMap fluids;
+    private TerrainTile tile;
+
+    private UUID owner;
+    private UUID[] nearbyOwners;
+    private List<String> labels;
+
+    private int[] baseColors;
+    private int[] fluidTints;
+    private float[] fluidMix;
+    private int[] pixels;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SyntheticChunk.registerColors();
+        chunk = new SyntheticChunk(terrain);
+        sampleSize = Math.min(SyntheticChunk.SIZE, imageSize);
+        blockStep = Math.max(1, SyntheticChunk.SIZE / imageSize);
+
+        heights = MapTileRenderer.sampleHeights(chunk, sampleSize, sampleSize, blockStep, blockStep);
+        fluids = FluidSurfaceMap.compute(chunk, heights, sampleSize, sampleSize, blockStep, blockStep);
+
+        // Neighbors continue the same terrain, so the border repeats the edge samples
+        int stride = sampleSize + 2;
+        borderedHeights = new short[stride * stride];
+        for (int z = 0; z < stride; ++z) {
+            for (int x = 0; x < stride; ++x) {
+                int sx = Math.min(Math.max(x - 1, 0), sampleSize - 1);
+                int sz = Math.min(Math.max(z - 1, 0), sampleSize - 1);
+                borderedHeights[z * stride + x] = heights[sz * sampleSize + sx];
+            }
+        }
+
+        int sampleCount = sampleSize * sampleSize;
+        baseColors = new int[sampleCount];
+        fluidTints = fluids.hasFluid() ? new int[sampleCount] : null;
+        fluidMix = fluids.hasFluid() ? new float[sampleCount] : null;
+        MapTileRenderer.sampleColors(chunk, heights, fluids, sampleSize, sampleSize, blockStep, blockStep,
+                baseColors, fluidTints, fluidMix);
+        float[] shades = MapTileRenderer.computeShades(borderedHeights, sampleSize, sampleSize, imageSize, imageSize);
+        tile = new TerrainTile(imageSize, imageSize, sampleSize, sampleSize, borderedHeights,
+                baseColors.clone(), shades, fluidTints != null ? fluidTints.clone() : null,
+                fluidMix != null ? fluidMix.clone() : null, System.currentTimeMillis());
+
+        UUID neighbor = new UUID(2, 2);
+        owner = claims == Claims.NONE ? null : new UUID(1, 1);
+        UUID around = claims == Claims.EDGE ? neighbor : owner;
+        nearbyOwners = new UUID[] { around, around, around, around };
+        labels = List.of("Steve", "Alex", "Notch");
+        pixels = new int[imageSize * imageSize];
+    }
+
+    @Benchmark
+    public short[] sampleHeights() {
+        return MapTileRenderer.sampleHeights(chunk, sampleSize, sampleSize, blockStep, blockStep);
+    }
+
+    @Benchmark
+    public FluidSurfaceMap sampleFluids() {
+        return FluidSurfaceMap.compute(chunk, heights, sampleSize, sampleSize, blockStep, blockStep);
+    }
+
+    @Benchmark
+    public int[] sampleColors() {
+        MapTileRenderer.sampleColors(chunk, heights, fluids, sampleSize, sampleSize, blockStep, blockStep,
+                baseColors, fluidTints, fluidMix);
+        return baseColors;
+    }
+
+    @Benchmark
+    public float[] shade() {
+        return MapTileRenderer.computeShades(borderedHeights, sampleSize, sampleSize, imageSize, imageSize);
+    }
+
+    @Benchmark
+    public int[] claimOverlay() {
+        MapTileRenderer.compositeClaim(tile, owner, nearbyOwners, pixels, imageSize, imageSize);
+        return pixels;
+    }
+
+    @Benchmark
+    public int[] text() {
+        if (owner != null) {
+            MapTileRenderer.drawLabels(labels, pixels, imageSize, imageSize);
+        }
+        return pixels;
+    }
+}
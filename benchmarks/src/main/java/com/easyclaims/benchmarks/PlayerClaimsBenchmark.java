@@ -0,0 +1,92 @@
+package com.easyclaims.benchmarks;
+
+import com.easyclaims.data.Claim;
+import com.easyclaims.data.PlayerClaims;
+import com.easyclaims.data.TrustLevel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operations on a single player's claims and trust list.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerClaimsBenchmark {
+
+    private static final String WORLD = SyntheticClaims.WORLD;
+
+    @Param({"10", "100", "1000"})
+    public int claimsPerPlayer;
+
+    @Param({"3", "50"})
+    public int trusted;
+
+    private PlayerClaims claims;
+    private UUID[] visitors;
+    private int side;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        claims = new PlayerClaims(new UUID(random.nextLong(), random.nextLong()));
+        side = (int) Math.ceil(Math.sqrt(claimsPerPlayer));
+        for (int i = 0; i < claimsPerPlayer; ++i) {
+            claims.addClaim(new Claim(WORLD, i % side, i / side, 0L));
+        }
+
+        TrustLevel[] levels = TrustLevel.values();
+        // Half of the visitors are trusted, the other half strangers
+        visitors = new UUID[trusted * 2];
+        for (int i = 0; i < visitors.length; ++i) {
+            visitors[i] = new UUID(random.nextLong(), random.nextLong());
+            if (i < trusted) {
+                claims.addTrustedPlayer(visitors[i], "Player" + i, levels[1 + i % (levels.length - 1)]);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean hasClaim() {
+        int i = next++ % (claimsPerPlayer * 2);
+        // Every other probe misses
+        return claims.hasClaim(WORLD, i % side, i / side);
+    }
+
+    @Benchmark
+    public boolean addAndRemoveClaim() {
+        int x = -1 - (next++ & 1023);
+        claims.addClaim(new Claim(WORLD, x, 0, 0L));
+        return claims.removeClaim(WORLD, x, 0);
+    }
+
+    @Benchmark
+    public boolean hasPermission() {
+        UUID visitor = visitors[next++ % visitors.length];
+        return claims.hasPermission(visitor, TrustLevel.CONTAINER);
+    }
+
+    @Benchmark
+    public List<String> getTrustedPlayerNames() {
+        return claims.getTrustedPlayerNames(2);
+    }
+}
@@ -0,0 +1,148 @@
+package com.easyclaims.benchmarks;
+
+import com.easyclaims.data.TrustLevel;
+import com.easyclaims.managers.ClaimManager;
+import com.easyclaims.systems.ProtectionEventLog;
+import com.easyclaims.util.ChunkUtil;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates a protection event log from simulated players moving through a synthetic world,
+ * deciding each event with ClaimManager like the protection systems would.
+ *
+ * Most players own a plot and mostly stay around it; the rest are visitors wandering the
+ * whole map. Each tick (50 ms, like the server) every player may act: interacting and
+ * damaging blocks are the most common, then using, breaking and placing blocks, then
+ * picking up items. Targets are a few blocks around the player, so decisions cluster in
+ * the same chunks the way real building does.
+ */
+public final class ProtectionLoadSimulator {
+
+    private static final long TICK_NANOS = 50_000_000L;
+    // Chance per tick that a player does something
+    private static final double ACTION_CHANCE = 0.5;
+    private static final double VISITOR_SHARE = 0.3;
+    private static final double WALK_SPEED = 4.3 / 20.0; // Blocks per tick
+    private static final int REACH = 5;
+
+    // Weights of INTERACT, DAMAGE, USE, BREAK, PLACE, PICKUP
+    private static final ProtectionEventLog.Kind[] KINDS = {
+            ProtectionEventLog.Kind.INTERACT, ProtectionEventLog.Kind.DAMAGE, ProtectionEventLog.Kind.USE,
+            ProtectionEventLog.Kind.BREAK, ProtectionEventLog.Kind.PLACE, ProtectionEventLog.Kind.PICKUP };
+    private static final int[] WEIGHTS = { 35, 20, 15, 12, 12, 6 };
+    private static final TrustLevel[] USE_LEVELS = { TrustLevel.USE, TrustLevel.CONTAINER, TrustLevel.WORKSTATION };
+
+    private final SyntheticClaims data;
+    private final ClaimManager manager;
+    private final Random random;
+
+    private final UUID[] playerIds;
+    private final double[] x;
+    private final double[] z;
+    private final double[] heading;
+    // Plot center a player returns to, or NaN for visitors
+    private final double[] homeX;
+    private final double[] homeZ;
+
+    public ProtectionLoadSimulator(SyntheticClaims data, ClaimManager manager, int players, long seed) {
+        this.data = data;
+        this.manager = manager;
+        this.random = new Random(seed);
+        this.playerIds = new UUID[players];
+        this.x = new double[players];
+        this.z = new double[players];
+        this.heading = new double[players];
+        this.homeX = new double[players];
+        this.homeZ = new double[players];
+
+        // Claims are grouped by owner, so the first one seen of each owner is the plot's corner
+        Map<UUID, Integer> firstClaim = new HashMap<>();
+        for (int i = data.claimOwner.length - 1; i >= 0; --i) {
+            firstClaim.put(data.claimOwner[i], i);
+        }
+
+        int blocks = data.size * ChunkUtil.CHUNK_SIZE;
+        for (int p = 0; p < players; ++p) {
+            if (random.nextDouble() < VISITOR_SHARE) {
+                playerIds[p] = new UUID(random.nextLong(), random.nextLong());
+                homeX[p] = Double.NaN;
+                homeZ[p] = Double.NaN;
+                x[p] = random.nextDouble() * blocks;
+                z[p] = random.nextDouble() * blocks;
+            } else {
+                int owner = random.nextInt(data.owners.length);
+                playerIds[p] = data.owners[owner];
+                int claim = firstClaim.get(data.owners[owner]);
+                homeX[p] = (data.claimX[claim] + 0.5) * ChunkUtil.CHUNK_SIZE;
+                homeZ[p] = (data.claimZ[claim] + 0.5) * ChunkUtil.CHUNK_SIZE;
+                x[p] = homeX[p];
+                z[p] = homeZ[p];
+            }
+            heading[p] = random.nextDouble() * Math.PI * 2;
+        }
+    }
+
+    /**
+     * Simulates ticks until the given number of events was written.
+     */
+    public void generate(ProtectionEventLog.Writer writer, long events, long startTime) throws IOException {
+        int total = 0;
+        for (int w : WEIGHTS) {
+            total += w;
+        }
+        int blocks = data.size * ChunkUtil.CHUNK_SIZE;
+        long tickStart = startTime;
+        long written = 0;
+        while (written < events) {
+            for (int p = 0; p < playerIds.length && written < events; ++p) {
+                move(p, blocks);
+                if (random.nextDouble() >= ACTION_CHANCE) {
+                    continue;
+                }
+
+                int pick = random.nextInt(total);
+                int k = 0;
+                while (pick >= WEIGHTS[k]) {
+                    pick -= WEIGHTS[k++];
+                }
+                ProtectionEventLog.Kind kind = KINDS[k];
+                TrustLevel required = switch (kind) {
+                    case BREAK, PLACE -> TrustLevel.BUILD;
+                    case DAMAGE -> TrustLevel.DAMAGE;
+                    case USE -> USE_LEVELS[random.nextInt(USE_LEVELS.length)];
+                    case PICKUP -> TrustLevel.USE;
+                    default -> random.nextBoolean() ? TrustLevel.BUILD : TrustLevel.USE;
+                };
+                int targetX = (int) Math.floor(x[p]) + random.nextInt(2 * REACH + 1) - REACH;
+                int targetY = 64 + random.nextInt(16);
+                int targetZ = (int) Math.floor(z[p]) + random.nextInt(2 * REACH + 1) - REACH;
+                boolean allowed = manager.hasPermissionAt(playerIds[p], SyntheticClaims.WORLD, targetX, targetZ, required);
+
+                // Spread the events of a tick over the tick
+                long time = tickStart + TICK_NANOS * p / playerIds.length;
+                writer.write(kind, time, playerIds[p], SyntheticClaims.WORLD, targetX, targetY, targetZ, required, allowed);
+                written++;
+            }
+            tickStart += TICK_NANOS;
+        }
+    }
+
+    private void move(int p, int blocks) {
+        heading[p] += (random.nextDouble() - 0.5) * 0.6;
+        if (!Double.isNaN(homeX[p])) {
+            // Turn back towards home when wandering off more than two chunks
+            double dx = homeX[p] - x[p];
+            double dz = homeZ[p] - z[p];
+            if (dx * dx + dz * dz > 64.0 * 64.0) {
+                heading[p] = Math.atan2(dz, dx);
+            }
+        }
+        x[p] = Math.min(Math.max(x[p] + Math.cos(heading[p]) * WALK_SPEED, 0), blocks - 1);
+        z[p] = Math.min(Math.max(z[p] + Math.sin(heading[p]) * WALK_SPEED, 0), blocks - 1);
+    }
+}
@@ -0,0 +1,312 @@
+package com.easyclaims.benchmarks;
+
+import com.easyclaims.config.BlockGroups;
+import com.easyclaims.config.PluginConfig;
+import com.easyclaims.data.ClaimStorage;
+import com.easyclaims.data.PlaytimeStorage;
+import com.easyclaims.data.TrustLevel;
+import com.easyclaims.managers.ClaimManager;
+import com.easyclaims.systems.ProtectionEventLog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Replays protection event logs against ClaimManager as fast as it can and reports the
+ * throughput and latency of the permission checks, to see how much load a server's claims
+ * can take before an event rather than during it.
+ *
+ * Usage:
+ * <pre>
+ *   ProtectionReplay simulate [--players 500] [--claims 100000] [--owners 1000] [--events 2000000]
+ *                             [--seed 42] [--save trace.ecpt] [--threads 1] [--warmup 2]
+ *   ProtectionReplay replay &lt;trace.ecpt&gt; &lt;pluginDataDir&gt; [--threads 1] [--warmup 2]
+ * </pre>
+ *
+ * simulate generates a log from simulated players in a synthetic world (see
+ * {@link ProtectionLoadSimulator}); replay reads one recorded on a server with
+ * /claim admin trace and checks it against a copy of that server's plugin data.
+ *
+ * Each event is one ClaimManager.hasPermissionAt call with the recorded trust level.
+ * Events are split between threads by player, keeping each player's events in order.
+ * After the warmup passes, one pass measures throughput and another the latency of each
+ * check (System.nanoTime around every call, which adds its own cost to the numbers).
+ */
+public final class ProtectionReplay {
+
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9, 99.99 };
+
+    // The log, as parallel arrays
+    private final ProtectionEventLog.Kind[] kinds;
+    private final long[] times;
+    private final UUID[] players;
+    private final String[] worlds;
+    private final int[] x;
+    private final int[] z;
+    private final TrustLevel[] required;
+    private final boolean[] allowed;
+    private final int count;
+
+    private ProtectionReplay(InputStream in) throws IOException {
+        List<ProtectionEventLog.Kind> kindList = new ArrayList<>();
+        long[] timeArray = new long[1024];
+        List<UUID> playerList = new ArrayList<>();
+        List<String> worldList = new ArrayList<>();
+        int[] xArray = new int[1024];
+        int[] zArray = new int[1024];
+        List<TrustLevel> requiredList = new ArrayList<>();
+        boolean[] allowedArray = new boolean[1024];
+
+        int n = 0;
+        try (ProtectionEventLog.Reader reader = new ProtectionEventLog.Reader(in)) {
+            while (reader.next()) {
+                if (n == timeArray.length) {
+                    timeArray = Arrays.copyOf(timeArray, n * 2);
+                    xArray = Arrays.copyOf(xArray, n * 2);
+                    zArray = Arrays.copyOf(zArray, n * 2);
+                    allowedArray = Arrays.copyOf(allowedArray, n * 2);
+                }
+                kindList.add(reader.kind);
+                timeArray[n] = reader.time;
+                // The reader hands out the same instances for the same player and world
+                playerList.add(reader.player);
+                worldList.add(reader.world);
+                xArray[n] = reader.x;
+                zArray[n] = reader.z;
+                requiredList.add(reader.required);
+                allowedArray[n] = reader.allowed;
+                n++;
+            }
+        }
+        this.count = n;
+        this.kinds = kindList.toArray(new ProtectionEventLog.Kind[0]);
+        this.times = timeArray;
+        this.players = playerList.toArray(new UUID[0]);
+        this.worlds = worldList.toArray(new String[0]);
+        this.x = xArray;
+        this.z = zArray;
+        this.required = requiredList.toArray(new TrustLevel[0]);
+        this.allowed = allowedArray;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || !(args[0].equals("simulate") || args[0].equals("replay") && args.length >= 3)) {
+            System.err.println("Usage: ProtectionReplay simulate [--players N] [--claims N] [--owners N] [--events N]"
+                    + " [--seed N] [--save file] [--threads N] [--warmup N]");
+            System.err.println("       ProtectionReplay replay <trace.ecpt> <pluginDataDir> [--threads N] [--warmup N]");
+            System.exit(2);
+        }
+        Map<String, String> options = new HashMap<>();
+        List<String> positional = new ArrayList<>();
+        for (int i = 1; i < args.length; ++i) {
+            if (args[i].startsWith("--") && i + 1 < args.length) {
+                options.put(args[i].substring(2), args[++i]);
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        int threads = Integer.parseInt(options.getOrDefault("threads", "1"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "2"));
+
+        if (args[0].equals("simulate")) {
+            int players = Integer.parseInt(options.getOrDefault("players", "500"));
+            int claims = Integer.parseInt(options.getOrDefault("claims", "100000"));
+            int owners = Integer.parseInt(options.getOrDefault("owners", "1000"));
+            long events = Long.parseLong(options.getOrDefault("events", "2000000"));
+            long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+
+            SyntheticClaims data = SyntheticClaims.create(claims, owners, seed);
+            try {
+                ClaimManager manager = openManager(data.open(), data.dataDirectory);
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                try (ProtectionEventLog.Writer writer = new ProtectionEventLog.Writer(buffer, 0)) {
+                    new ProtectionLoadSimulator(data, manager, players, seed).generate(writer, events, 0);
+                }
+                byte[] log = buffer.toByteArray();
+                if (options.containsKey("save")) {
+                    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(options.get("save"))))) {
+                        out.write(log);
+                    }
+                }
+                System.out.printf("Simulated %d players, %d claims, %d owners: %d events (%d bytes)%n",
+                        players, claims, owners, events, log.length);
+
+                // Replay on fresh storage, so the simulation didn't warm anything up
+                ClaimManager replayManager = openManager(data.open(), data.dataDirectory);
+                new ProtectionReplay(new ByteArrayInputStream(log)).run(replayManager, threads, warmup);
+            } finally {
+                data.delete();
+            }
+        } else {
+            Path trace = Paths.get(positional.get(0));
+            Path dataDirectory = Paths.get(positional.get(1));
+            ProtectionReplay replay;
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(trace))) {
+                replay = new ProtectionReplay(in);
+            }
+            replay.run(openManager(new ClaimStorage(dataDirectory), dataDirectory), threads, warmup);
+        }
+    }
+
+    private static ClaimManager openManager(ClaimStorage storage, Path dataDirectory) {
+        return new ClaimManager(storage, new PlaytimeStorage(dataDirectory), new PluginConfig(dataDirectory),
+                new BlockGroups(dataDirectory));
+    }
+
+    private void run(ClaimManager manager, int threads, int warmup) throws InterruptedException {
+        if (count == 0) {
+            System.out.println("The log has no events");
+            return;
+        }
+        printRecorded();
+
+        int[][] partitions = partition(threads);
+        for (int i = 0; i < warmup; ++i) {
+            replay(manager, partitions, null);
+        }
+
+        long start = System.nanoTime();
+        int mismatches = replay(manager, partitions, null);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Replayed with %d thread(s): %.0f checks/s (%.3f s), %d decisions differ from the log%n",
+                threads, count / seconds, seconds, mismatches);
+        double recordedPeak = peakPerSecond();
+        if (recordedPeak > 0) {
+            System.out.printf("Headroom over the busiest recorded second: %.0fx%n", count / seconds / recordedPeak);
+        }
+
+        long[] latencies = new long[count];
+        replay(manager, partitions, latencies);
+        printLatencies("all", latencies, null);
+        for (ProtectionEventLog.Kind kind : ProtectionEventLog.Kind.values()) {
+            printLatencies(kind.name().toLowerCase(), latencies, kind);
+        }
+    }
+
+    /**
+     * Replays every partition on its own thread.
+     *
+     * @param latencies If not null, receives the duration of each check in nanoseconds
+     * @return Number of decisions that differ from the recorded ones
+     */
+    private int replay(ClaimManager manager, int[][] partitions, long[] latencies) throws InterruptedException {
+        int[] mismatches = new int[partitions.length];
+        CountDownLatch done = new CountDownLatch(partitions.length);
+        for (int t = 0; t < partitions.length; ++t) {
+            int[] events = partitions[t];
+            int slot = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    int differ = 0;
+                    for (int i : events) {
+                        long begin = latencies != null ? System.nanoTime() : 0;
+                        boolean result = manager.hasPermissionAt(players[i], worlds[i], x[i], z[i], required[i]);
+                        if (latencies != null) {
+                            latencies[i] = System.nanoTime() - begin;
+                        }
+                        if (result != allowed[i]) {
+                            differ++;
+                        }
+                    }
+                    mismatches[slot] = differ;
+                } finally {
+                    done.countDown();
+                }
+            }, "ProtectionReplay-" + t);
+            thread.start();
+        }
+        done.await();
+        int total = 0;
+        for (int m : mismatches) {
+            total += m;
+        }
+        return total;
+    }
+
+    /**
+     * Splits the events between threads by player.
+     */
+    private int[][] partition(int threads) {
+        int[] sizes = new int[threads];
+        int[] owner = new int[count];
+        for (int i = 0; i < count; ++i) {
+            owner[i] = Math.floorMod(players[i].hashCode(), threads);
+            sizes[owner[i]]++;
+        }
+        int[][] partitions = new int[threads][];
+        for (int t = 0; t < threads; ++t) {
+            partitions[t] = new int[sizes[t]];
+            sizes[t] = 0;
+        }
+        for (int i = 0; i < count; ++i) {
+            partitions[owner[i]][sizes[owner[i]]++] = i;
+        }
+        return partitions;
+    }
+
+    private void printRecorded() {
+        double seconds = times[count - 1] / 1e9;
+        Map<UUID, Boolean> distinctPlayers = new HashMap<>();
+        for (int i = 0; i < count; ++i) {
+            distinctPlayers.put(players[i], Boolean.TRUE);
+        }
+        System.out.printf("Log: %d events from %d players over %.1f s (busiest second: %.0f events)%n",
+                count, distinctPlayers.size(), seconds, peakPerSecond());
+    }
+
+    private double peakPerSecond() {
+        int peak = 0;
+        int from = 0;
+        for (int i = 0; i < count; ++i) {
+            while (times[i] - times[from] >= 1_000_000_000L) {
+                from++;
+            }
+            peak = Math.max(peak, i - from + 1);
+        }
+        // A log shorter than a second says nothing about its peak rate
+        return times[count - 1] >= 1_000_000_000L ? peak : 0;
+    }
+
+    private void printLatencies(String label, long[] latencies, ProtectionEventLog.Kind kind) {
+        long[] selected;
+        if (kind == null) {
+            selected = latencies.clone();
+        } else {
+            int n = 0;
+            selected = new long[count];
+            for (int i = 0; i < count; ++i) {
+                if (kinds[i] == kind) {
+                    selected[n++] = latencies[i];
+                }
+            }
+            selected = Arrays.copyOf(selected, n);
+        }
+        if (selected.length == 0) {
+            return;
+        }
+        Arrays.sort(selected);
+        StringBuilder line = new StringBuilder(String.format("  %-9s %9d checks  ns:", label, selected.length));
+        for (double p : PERCENTILES) {
+            int index = (int) Math.min(selected.length - 1, Math.ceil(p / 100.0 * selected.length) - 1);
+            line.append(String.format("  p%s=%d", p % 1 == 0 ? String.valueOf((int) p) : String.valueOf(p),
+                    selected[Math.max(0, index)]));
+        }
+        line.append(String.format("  max=%d", selected[selected.length - 1]));
+        System.out.println(line);
+    }
+}
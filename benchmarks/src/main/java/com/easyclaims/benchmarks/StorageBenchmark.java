@@ -0,0 +1,87 @@
+package com.easyclaims.benchmarks;
+
+import com.easyclaims.data.ClaimStorage;
+import com.easyclaims.data.PlaytimeStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading and saving claim and playtime data.
+ *
+ * saveIndex goes through saveAll on a storage with no player files loaded, which writes
+ * only the index and the name table; savePlayerClaims writes one owner's file, which is
+ * what every claim change costs on top of the index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int claims;
+
+    @Param({"10", "1000", "10000"})
+    public int owners;
+
+    private SyntheticClaims data;
+    private ClaimStorage storage;
+    private PlaytimeStorage playtime;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        data = SyntheticClaims.create(claims, owners, 42);
+        storage = data.open();
+        for (UUID owner : data.owners) {
+            storage.getPlayerClaims(owner);
+        }
+
+        playtime = new PlaytimeStorage(data.dataDirectory);
+        for (UUID owner : data.owners) {
+            playtime.getPlaytime(owner).addPlaytime(3600);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        data.delete();
+    }
+
+    @Benchmark
+    public ClaimStorage loadIndex() {
+        return data.open();
+    }
+
+    @Benchmark
+    public void saveIndex() {
+        data.open().saveAll();
+    }
+
+    @Benchmark
+    public void savePlayerClaims() {
+        storage.savePlayerClaims(data.owners[next++ % data.owners.length]);
+    }
+
+    @Benchmark
+    public void savePlaytime() {
+        playtime.saveAll();
+    }
+}
@@ -0,0 +1,123 @@
+package com.easyclaims.benchmarks;
+
+import com.easyclaims.map.ChunkSampleSource;
+import com.easyclaims.map.MapColorTables;
+
+import javax.annotation.Nullable;
+
+/**
+ * An in-memory 32x32 chunk standing in for a WorldChunk when rendering map tiles.
+ *
+ * Terrain is a height field with a surface block and biome tint per column. Water fills
+ * every column below the water level, in 32 block high fluid sections like the real ones.
+ */
+public final class SyntheticChunk implements ChunkSampleSource {
+
+    public static final int SIZE = 32;
+
+    private static final int SECTION_HEIGHT = 32;
+    private static final int SECTIONS = 10;
+
+    // Ids are only looked up in MapColorTables, which registerColors fills
+    private static final int GRASS = 1;
+    private static final int SAND = 2;
+    private static final int STONE = 3;
+    private static final int EMPTY = 0;
+    private static final int WATER = 1;
+    private static final int ENVIRONMENT = 0;
+
+    /**
+     * Terrain shapes, from cheapest to most expensive to render.
+     */
+    public enum Layout {
+        // Flat grass, no fluid
+        PLAINS,
+        // Rolling grass and stone, no fluid
+        HILLS,
+        // Shore running through the chunk: half of it under water of varying depth
+        COAST
+    }
+
+    private final short[] heights = new short[SIZE * SIZE];
+    private final int[] tints = new int[SIZE * SIZE];
+    private final int[] blocks = new int[SIZE * SIZE];
+    private final int waterLevel;
+    private final Object[] sections = new Object[SECTIONS];
+
+    public SyntheticChunk(Layout layout) {
+        int base = 100;
+        this.waterLevel = layout == Layout.COAST ? base : -1;
+        for (int z = 0; z < SIZE; ++z) {
+            for (int x = 0; x < SIZE; ++x) {
+                int i = z * SIZE + x;
+                int height;
+                switch (layout) {
+                    case PLAINS -> height = base;
+                    case HILLS -> height = base + (int) (6 * Math.sin(x * 0.3) + 4 * Math.cos(z * 0.25));
+                    default -> height = base - 12 + x + (int) (3 * Math.sin(z * 0.4)); // Deeper towards x = 0
+                }
+                heights[i] = (short) height;
+                tints[i] = 0x3F8F2F + ((x * 3 + z * 5) & 15);
+                if (height <= waterLevel + 1) {
+                    blocks[i] = SAND;
+                } else {
+                    blocks[i] = height > base + 5 ? STONE : GRASS;
+                }
+            }
+        }
+        if (waterLevel >= 0) {
+            for (int y = 0; y <= waterLevel / SECTION_HEIGHT; ++y) {
+                sections[y] = new Object();
+            }
+        }
+    }
+
+    /**
+     * Registers the colors of the synthetic blocks and fluid, so tiles render without assets.
+     */
+    public static void registerColors() {
+        MapColorTables.putBlockColor(GRASS, 0x6A9A3A, 0xFFFFFF, 100);
+        MapColorTables.putBlockColor(SAND, 0xD8C890, 0xFFFFFF, 0);
+        MapColorTables.putBlockColor(STONE, 0x808080, 0xFFFFFF, 0);
+        // Depth is measured by comparing against the fluid below, which is empty under the water
+        MapColorTables.putFluidColor(EMPTY, 0xFFFFFF);
+        MapColorTables.putFluidColor(WATER, 0x3060D0);
+        MapColorTables.putEnvironmentWaterTint(ENVIRONMENT, 0x2050B0);
+    }
+
+    @Override
+    public short getHeight(int x, int z) {
+        return heights[z * SIZE + x];
+    }
+
+    @Override
+    public int getTint(int x, int z) {
+        return tints[z * SIZE + x];
+    }
+
+    @Override
+    public int getBlock(int x, int y, int z) {
+        return y == heights[z * SIZE + x] ? blocks[z * SIZE + x] : STONE;
+    }
+
+    @Override
+    public int getEnvironment(int x, int y, int z) {
+        return ENVIRONMENT;
+    }
+
+    @Override
+    public int getFluidSectionCount() {
+        return SECTIONS;
+    }
+
+    @Nullable
+    @Override
+    public Object getFluidSection(int sectionY) {
+        return sections[sectionY];
+    }
+
+    @Override
+    public int getFluidId(int sectionY, int x, int y, int z) {
+        return y > heights[z * SIZE + x] && y <= waterLevel ? WATER : EMPTY;
+    }
+}
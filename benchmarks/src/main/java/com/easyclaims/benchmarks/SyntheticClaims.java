@@ -0,0 +1,159 @@
+package com.easyclaims.benchmarks;
+
+import com.easyclaims.data.ClaimStorage;
+import com.easyclaims.data.TrustLevel;
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * A synthetic claim data directory, written in the same format ClaimStorage uses.
+ *
+ * Every owner gets one square-ish plot of neighboring claims; plots are laid out on a grid
+ * with a one chunk gap, so lookups hit owned, neighboring and unclaimed chunks like on a
+ * real server. Each owner trusts the next few owners at different levels.
+ */
+public final class SyntheticClaims {
+
+    public static final String WORLD = "bench";
+
+    private static final int TRUSTED_PER_OWNER = 3;
+    private static final TrustLevel[] TRUST_LEVELS = { TrustLevel.BUILD, TrustLevel.CONTAINER, TrustLevel.USE };
+
+    public final Path dataDirectory;
+    public final UUID[] owners;
+
+    // Claimed chunks, grouped by owner
+    public final int[] claimX;
+    public final int[] claimZ;
+    public final UUID[] claimOwner;
+
+    // The world spans [0, size) chunks on both axes
+    public final int size;
+
+    private SyntheticClaims(Path dataDirectory, UUID[] owners, int[] claimX, int[] claimZ, UUID[] claimOwner, int size) {
+        this.dataDirectory = dataDirectory;
+        this.owners = owners;
+        this.claimX = claimX;
+        this.claimZ = claimZ;
+        this.claimOwner = claimOwner;
+        this.size = size;
+    }
+
+    /**
+     * Writes a dataset of the given number of claims spread over the given number of owners
+     * (at most one owner per claim) into a new temporary directory.
+     */
+    public static SyntheticClaims create(int claims, int ownerCount, long seed) throws IOException {
+        ownerCount = Math.max(1, Math.min(ownerCount, claims));
+        Random random = new Random(seed);
+
+        UUID[] owners = new UUID[ownerCount];
+        for (int i = 0; i < ownerCount; ++i) {
+            owners[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+
+        int perOwner = (claims + ownerCount - 1) / ownerCount;
+        int plotSide = (int) Math.ceil(Math.sqrt(perOwner));
+        int gridColumns = (int) Math.ceil(Math.sqrt(ownerCount));
+        int size = gridColumns * (plotSide + 1);
+
+        int[] claimX = new int[claims];
+        int[] claimZ = new int[claims];
+        UUID[] claimOwner = new UUID[claims];
+        int base = claims / ownerCount;
+        int extra = claims % ownerCount;
+        int next = 0;
+        for (int o = 0; o < ownerCount; ++o) {
+            int originX = (o % gridColumns) * (plotSide + 1);
+            int originZ = (o / gridColumns) * (plotSide + 1);
+            int count = base + (o < extra ? 1 : 0);
+            for (int i = 0; i < count; ++i) {
+                claimX[next] = originX + i % plotSide;
+                claimZ[next] = originZ + i / plotSide;
+                claimOwner[next] = owners[o];
+                next++;
+            }
+        }
+
+        Path directory = Files.createTempDirectory("easyclaims-bench");
+        SyntheticClaims data = new SyntheticClaims(directory, owners, claimX, claimZ, claimOwner, size);
+        data.write();
+        return data;
+    }
+
+    /**
+     * Loads the dataset like the plugin does on startup.
+     */
+    public ClaimStorage open() {
+        return new ClaimStorage(dataDirectory);
+    }
+
+    public UUID trustedOf(int ownerIndex, int k) {
+        return owners[(ownerIndex + 1 + k) % owners.length];
+    }
+
+    private void write() throws IOException {
+        Gson gson = new Gson();
+        Path claimsDirectory = Files.createDirectories(dataDirectory.resolve("claims"));
+
+        Map<String, String> index = new HashMap<>(claimX.length * 2);
+        Map<UUID, List<Map<String, Object>>> byOwner = new HashMap<>();
+        long claimedAt = System.currentTimeMillis();
+        for (int i = 0; i < claimX.length; ++i) {
+            index.put(claimX[i] + "," + claimZ[i], claimOwner[i].toString());
+            Map<String, Object> claim = new HashMap<>();
+            claim.put("world", WORLD);
+            claim.put("chunkX", claimX[i]);
+            claim.put("chunkZ", claimZ[i]);
+            claim.put("claimedAt", claimedAt);
+            byOwner.computeIfAbsent(claimOwner[i], (k) -> new ArrayList<>()).add(claim);
+        }
+        Files.writeString(claimsDirectory.resolve("index.json"), gson.toJson(Map.of(WORLD, index)));
+
+        Map<String, String> names = new HashMap<>();
+        for (int o = 0; o < owners.length; ++o) {
+            names.put(owners[o].toString(), "Player" + o);
+
+            Map<String, Object> trusted = new HashMap<>();
+            for (int k = 0; k < Math.min(TRUSTED_PER_OWNER, owners.length - 1); ++k) {
+                UUID trustedId = trustedOf(o, k);
+                trusted.put(trustedId.toString(), Map.of("name", "Player" + trustedId.hashCode(),
+                        "level", TRUST_LEVELS[k].getKey()));
+            }
+            Map<String, Object> file = new HashMap<>();
+            file.put("claims", byOwner.getOrDefault(owners[o], List.of()));
+            file.put("trustedPlayersData", trusted);
+            Files.writeString(claimsDirectory.resolve(owners[o] + ".json"), gson.toJson(file));
+        }
+        Files.writeString(claimsDirectory.resolve("names.json"), gson.toJson(names));
+    }
+
+    /**
+     * Deletes the dataset directory.
+     */
+    public void delete() throws IOException {
+        deleteRecursively(dataDirectory);
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
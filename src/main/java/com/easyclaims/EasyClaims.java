@@ -3,19 +3,31 @@ package com.easyclaims;
 import com.easyclaims.commands.EasyClaimsCommand;
 import com.easyclaims.config.BlockGroups;
 import com.easyclaims.config.PluginConfig;
+import com.easyclaims.data.Claim;
 import com.easyclaims.data.ClaimStorage;
 import com.easyclaims.data.PlaytimeStorage;
 import com.easyclaims.listeners.ClaimProtectionListener;
 import com.easyclaims.managers.ClaimManager;
 import com.easyclaims.managers.PlaytimeManager;
+import com.easyclaims.map.ClaimColorPalette;
+import com.easyclaims.map.ClaimMapExporter;
 import com.easyclaims.map.ClaimMapOverlayProvider;
+import com.easyclaims.map.CompositeKernel;
 import com.easyclaims.map.EasyClaimsWorldMapProvider;
+import com.easyclaims.map.MapInvalidator;
+import com.easyclaims.map.MapRenderScheduler;
+import com.easyclaims.map.TerrainLod;
+import com.easyclaims.map.TerrainTileCache;
+import com.easyclaims.map.TerrainTileStore;
+import com.easyclaims.metrics.Metrics;
+import com.easyclaims.metrics.StartupTimer;
 import com.easyclaims.systems.BlockBreakProtectionSystem;
 import com.easyclaims.systems.BlockDamageProtectionSystem;
 import com.easyclaims.systems.BlockPlaceProtectionSystem;
 import com.easyclaims.systems.BlockUseProtectionSystem;
 import com.easyclaims.systems.ClaimTitleSystem;
 import com.easyclaims.systems.ItemPickupProtectionSystem;
+import com.easyclaims.systems.ProtectionEventRecorder;
 import com.hypixel.hytale.server.core.event.events.player.PlayerConnectEvent;
 import com.hypixel.hytale.server.core.event.events.player.PlayerDisconnectEvent;
 import com.hypixel.hytale.server.core.plugin.JavaPlugin;
@@ -25,12 +37,16 @@ import com.hypixel.hytale.server.core.universe.world.events.AddWorldEvent;
 import com.hypixel.hytale.server.core.universe.world.events.RemoveWorldEvent;
 import com.hypixel.hytale.server.core.universe.world.worldmap.provider.IWorldMapProvider;
 import com.hypixel.hytale.server.core.entity.entities.Player;
-import com.hypixel.hytale.math.util.ChunkUtil;
-import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
-import it.unimi.dsi.fastutil.longs.LongSet;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * EasyClaims - A chunk-based land claiming plugin with playtime-based limits.
@@ -52,9 +68,10 @@ public class EasyClaims extends JavaPlugin {
     private ClaimProtectionListener protectionListener;
     private ClaimMapOverlayProvider mapOverlayProvider;
     private ClaimTitleSystem claimTitleSystem;
+    private final AtomicBoolean mapExportRunning = new AtomicBoolean();
 
     // Track registered worlds for map provider
-    public static final Map<String, World> WORLDS = new HashMap<>();
+    public static final Map<String, World> WORLDS = new ConcurrentHashMap<>();
 
     public EasyClaims(JavaPluginInit init) {
         super(init);
@@ -63,21 +80,40 @@ public class EasyClaims extends JavaPlugin {
     @Override
     public void setup() {
         getLogger().atSevere().log("========== EASYCLAIMS PLUGIN STARTING ==========");
+        StartupTimer startup = new StartupTimer("setup", getLogger());
 
         // Initialize configuration
         config = new PluginConfig(getDataDirectory());
         blockGroups = new BlockGroups(getDataDirectory());
+        startup.mark("config");
 
-        // Initialize storage
-        claimStorage = new ClaimStorage(getDataDirectory());
+        // Initialize storage; the claim index and names are loaded by initInBackground()
+        claimStorage = new ClaimStorage(getDataDirectory(), false);
         playtimeStorage = new PlaytimeStorage(getDataDirectory());
 
         // Initialize static accessor for map system
         EasyClaimsAccess.init(claimStorage);
+        ClaimColorPalette.init(claimStorage);
+        startup.mark("storage");
+
+        // Persistent terrain cache for the world map
+        if (config.isPersistentMapCache()) {
+            TerrainTileStore.init(getDataDirectory(), config.getMapCacheMaxAgeHours(), getLogger());
+        }
+
+        // Dedicated, prioritized threads for map tile rendering
+        MapRenderScheduler.init(config.getMapRenderThreads(), config.getMapRenderQueueSize(),
+                config.getMapRenderCancelDistance(), getLogger());
+        TerrainLod.init(config.getMapClaimOnlyBelowSize());
+
+        // Coalesces map refreshes after claim changes
+        MapInvalidator.init(getLogger());
+        startup.mark("map");
 
         // Initialize managers
         claimManager = new ClaimManager(claimStorage, playtimeStorage, config, blockGroups);
         playtimeManager = new PlaytimeManager(playtimeStorage, config);
+        startup.mark("managers");
 
         // Register the main command (all functionality under /claim)
         getCommandRegistry().registerCommand(new EasyClaimsCommand(this));
@@ -105,6 +141,7 @@ public class EasyClaims extends JavaPlugin {
 
         // Initialize map overlay provider (for markers, kept for compatibility)
         mapOverlayProvider = new ClaimMapOverlayProvider(claimStorage, getLogger());
+        startup.mark("events");
 
         // Register ECS block protection systems
         getLogger().atInfo().log("Registering ECS block protection systems...");
@@ -116,13 +153,73 @@ public class EasyClaims extends JavaPlugin {
             getEntityStoreRegistry().registerSystem(new ItemPickupProtectionSystem(claimManager, getLogger()));
 
             // Register claim title system (shows banner when entering/leaving claims)
-            claimTitleSystem = new ClaimTitleSystem(claimStorage);
+            claimTitleSystem = new ClaimTitleSystem(claimStorage, getLogger());
             getEntityStoreRegistry().registerSystem(claimTitleSystem);
 
             getLogger().atInfo().log("All ECS systems registered successfully!");
         } catch (Exception e) {
             getLogger().atSevere().withCause(e).log("ERROR registering ECS systems");
         }
+        startup.mark("systems");
+
+        // Record protection decisions for offline replay
+        if (config.isRecordProtectionEvents()) {
+            startProtectionTrace();
+        }
+
+        // Periodic metrics file (/claim admin stats shows them in game)
+        if (config.getMetricsDumpIntervalSeconds() > 0) {
+            Metrics.startDump(getDataDirectory().resolve("metrics.jsonl"), config.getMetricsDumpIntervalSeconds(), getLogger());
+        }
+        startup.mark("diagnostics");
+        startup.finish();
+
+        initInBackground();
+    }
+
+    /**
+     * Loads what the server doesn't need to wait for on a background thread: the claim index,
+     * player names, the claim cache warm-up and the map pixel kernel.
+     * Protection denies everything and /claim refuses to run until the index is loaded.
+     */
+    private void initInBackground() {
+        Thread thread = new Thread(() -> {
+            StartupTimer startup = new StartupTimer("background", getLogger());
+            try {
+                try {
+                    claimStorage.loadIndex();
+                    startup.mark("index");
+                    getLogger().atInfo().log("[Startup] Claim index loaded, protection is active");
+
+                    // Map tiles drawn until now showed no claims
+                    for (World world : WORLDS.values()) {
+                        world.execute(() -> refreshWorldMap(world.getName()));
+                    }
+                } catch (IOException e) {
+                    startup.mark("index");
+                    getLogger().atSevere().withCause(e).log("[Startup] Could not read the claim index; "
+                            + "protection denies everything and claims can't be changed until it is fixed and the server restarted");
+                }
+
+                claimStorage.loadNames();
+                startup.mark("names");
+
+                if (config.isWarmClaimCache()) {
+                    int owners = claimStorage.warmCache();
+                    startup.mark("warm_cache");
+                    getLogger().atInfo().log("[Startup] Loaded the claims of %d owners", owners);
+                }
+
+                // Pick the map pixel kernel (SIMD if available); tiles use the scalar one until then
+                CompositeKernel.init(config.isSimdMapRendering(), getLogger());
+                startup.mark("map_kernel");
+            } catch (Exception e) {
+                getLogger().atSevere().withCause(e).log("[Startup] Background initialization failed");
+            }
+            startup.finish();
+        }, "EasyClaims-Init");
+        thread.setDaemon(true);
+        thread.start();
     }
 
     /**
@@ -149,6 +246,11 @@ public class EasyClaims extends JavaPlugin {
      */
     private void onWorldRemove(RemoveWorldEvent event) {
         WORLDS.remove(event.getWorld().getName());
+        TerrainTileCache.clearWorld(event.getWorld().getName());
+        TerrainTileStore.closeWorld(event.getWorld().getName());
+        if (claimTitleSystem != null) {
+            claimTitleSystem.removeWorld(event.getWorld().getName());
+        }
     }
 
     @Override
@@ -159,8 +261,9 @@ public class EasyClaims extends JavaPlugin {
 
     /**
      * Refreshes the entire world map to show updated claims.
-     * Clears both server and client caches to force regeneration.
-     * Called after claiming/unclaiming chunks.
+     * Clears both server and client caches to force regeneration of every tile,
+     * so this is only used by the admin refreshmap command; claim changes go
+     * through {@link #refreshWorldMapChunk}.
      */
     public void refreshWorldMap(String worldName) {
         World world = WORLDS.get(worldName);
@@ -194,43 +297,70 @@ public class EasyClaims extends JavaPlugin {
     }
 
     /**
-     * Refreshes specific chunks on the world map.
-     * More efficient than refreshing the entire map when only a few chunks changed.
+     * Exports the claim map of a world as PNG tiles into mapexport/ in the data directory,
+     * on a background thread. Fails if another export is still running.
+     */
+    public CompletableFuture<ClaimMapExporter.Result> exportClaimMap(String worldName) {
+        if (!mapExportRunning.compareAndSet(false, true)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("A map export is already running"));
+        }
+        ClaimMapExporter exporter = new ClaimMapExporter(claimStorage, getDataDirectory().resolve("mapexport"),
+                config.getMapRenderThreads(), getLogger());
+        CompletableFuture<ClaimMapExporter.Result> result = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                result.complete(exporter.export(worldName));
+            } catch (Exception e) {
+                getLogger().atWarning().withCause(e).log("[MapExport] Export failed for world: %s", worldName);
+                result.completeExceptionally(e);
+            } finally {
+                mapExportRunning.set(false);
+            }
+        }, "EasyClaims-MapExport");
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+
+    /**
+     * Starts recording protection decisions into a new file in traces/ in the data directory.
+     *
+     * @return The file, or null if already recording or it could not be created
+     */
+    public Path startProtectionTrace() {
+        String name = "protection-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".ecpt";
+        Path file = getDataDirectory().resolve("traces").resolve(name);
+        return ProtectionEventRecorder.start(file, getLogger()) ? file : null;
+    }
+
+    /**
+     * Stops recording protection decisions.
+     *
+     * @return The file that was recorded, or null if not recording
+     */
+    public Path stopProtectionTrace() {
+        return ProtectionEventRecorder.stop();
+    }
+
+    /**
+     * Refreshes a chunk on the world map after its claim changed.
+     * The chunk and its neighbors (for border updates) are queued on the MapInvalidator,
+     * which clears all changes of the next few hundred milliseconds together.
      *
      * @param worldName The world name
      * @param chunkX The chunk X coordinate
      * @param chunkZ The chunk Z coordinate
      */
     public void refreshWorldMapChunk(String worldName, int chunkX, int chunkZ) {
-        World world = WORLDS.get(worldName);
-        if (world == null) {
-            return;
-        }
-
-        try {
-            // Create a set with this chunk and its neighbors (for border updates)
-            LongSet chunksToRefresh = new LongOpenHashSet();
-            for (int dx = -1; dx <= 1; dx++) {
-                for (int dz = -1; dz <= 1; dz++) {
-                    chunksToRefresh.add(ChunkUtil.indexChunk(chunkX + dx, chunkZ + dz));
-                }
-            }
-
-            // Clear server-side cached images for these chunks
-            world.getWorldMapManager().clearImagesInChunks(chunksToRefresh);
-
-            // Clear each player's client-side cache for these chunks
-            for (Player player : world.getPlayers()) {
-                try {
-                    player.getWorldMapTracker().clearChunks(chunksToRefresh);
-                } catch (Exception e) {
-                    getLogger().atFine().withCause(e).log("[Map] Error clearing chunks for player");
-                }
-            }
+        MapInvalidator.markChunk(worldName, chunkX, chunkZ);
+    }
 
-            getLogger().atFine().log("[Map] Refreshed chunk %d,%d in world %s", chunkX, chunkZ, worldName);
-        } catch (Exception e) {
-            getLogger().atWarning().withCause(e).log("[Map] Error refreshing chunk %d,%d", chunkX, chunkZ);
+    /**
+     * Refreshes the map chunks of the given claims (e.g. after all claims of a player were removed).
+     */
+    public void refreshClaimChunks(Collection<Claim> claims) {
+        for (Claim claim : claims) {
+            MapInvalidator.markChunk(claim.getWorld(), claim.getChunkX(), claim.getChunkZ());
         }
     }
 
@@ -245,6 +375,14 @@ public class EasyClaims extends JavaPlugin {
         if (claimStorage != null) {
             claimStorage.saveAll();
         }
+
+        ProtectionEventRecorder.stop();
+        Metrics.stopDump();
+
+        // Stop map rendering, then flush the persistent map terrain cache
+        MapInvalidator.shutdown();
+        MapRenderScheduler.shutdown();
+        TerrainTileStore.close();
     }
 
     public PluginConfig getPluginConfig() {
@@ -330,59 +468,13 @@ public class EasyClaims extends JavaPlugin {
     /**
      * Refreshes all claim chunks for a specific player.
      * Called when trust is added/removed to update the trusted player names on the map.
+     * Changes are merged per owner and applied shortly after on the MapInvalidator thread;
+     * tiles are only redrawn if the names shown on them changed.
      *
      * @param playerId The UUID of the claim owner
      */
     public void refreshPlayerClaimChunks(java.util.UUID playerId) {
-        var playerClaims = claimStorage.getPlayerClaims(playerId);
-        if (playerClaims == null) {
-            return;
-        }
-
-        // Group claims by world for efficient refresh
-        Map<String, java.util.List<int[]>> claimsByWorld = new HashMap<>();
-        for (var claim : playerClaims.getClaims()) {
-            claimsByWorld.computeIfAbsent(claim.getWorld(), k -> new java.util.ArrayList<>())
-                    .add(new int[]{claim.getChunkX(), claim.getChunkZ()});
-        }
-
-        // Refresh each world's chunks
-        for (var entry : claimsByWorld.entrySet()) {
-            String worldName = entry.getKey();
-            World world = WORLDS.get(worldName);
-            if (world == null) {
-                continue;
-            }
-
-            try {
-                LongSet chunksToRefresh = new LongOpenHashSet();
-                for (int[] coords : entry.getValue()) {
-                    // Add the claim chunk and its neighbors for border updates
-                    for (int dx = -1; dx <= 1; dx++) {
-                        for (int dz = -1; dz <= 1; dz++) {
-                            chunksToRefresh.add(ChunkUtil.indexChunk(coords[0] + dx, coords[1] + dz));
-                        }
-                    }
-                }
-
-                // Clear server-side cached images
-                world.getWorldMapManager().clearImagesInChunks(chunksToRefresh);
-
-                // Clear each player's client-side cache
-                for (Player player : world.getPlayers()) {
-                    try {
-                        player.getWorldMapTracker().clearChunks(chunksToRefresh);
-                    } catch (Exception e) {
-                        getLogger().atFine().withCause(e).log("[Map] Error clearing chunks for player");
-                    }
-                }
-
-                getLogger().atFine().log("[Map] Refreshed %d claim chunks for player %s in world %s",
-                        entry.getValue().size(), playerId, worldName);
-            } catch (Exception e) {
-                getLogger().atWarning().withCause(e).log("[Map] Error refreshing claims for player %s", playerId);
-            }
-        }
+        MapInvalidator.markOwnerLabels(playerId);
     }
 
     /**
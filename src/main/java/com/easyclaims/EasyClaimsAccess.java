@@ -1,13 +1,16 @@
 package com.easyclaims;
 
+import com.easyclaims.data.Claim;
 import com.easyclaims.data.ClaimStorage;
 import com.easyclaims.data.PlayerClaims;
 import com.easyclaims.data.TrustedPlayer;
+import com.easyclaims.metrics.Metrics;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Static accessor for claim data used by the map system.
@@ -17,13 +20,16 @@ import java.util.UUID;
 public class EasyClaimsAccess {
     private static ClaimStorage claimStorage;
 
+    private static final LongAdder LOOKUPS_CLAIMED = Metrics.counter("map.owner_lookups.claimed");
+    private static final LongAdder LOOKUPS_UNCLAIMED = Metrics.counter("map.owner_lookups.unclaimed");
+    private static final LongAdder LOOKUPS_UNAVAILABLE = Metrics.counter("map.owner_lookups.unavailable");
+
     /**
      * Initializes the accessor with the claim storage instance.
      * Called during plugin startup.
      */
     public static void init(ClaimStorage storage) {
         claimStorage = storage;
-        System.out.println("[EasyClaimsAccess] Initialized with claimStorage: " + (storage != null ? "OK" : "NULL"));
     }
 
     /**
@@ -32,14 +38,12 @@ public class EasyClaimsAccess {
      */
     public static UUID getClaimOwner(String worldName, int chunkX, int chunkZ) {
         if (claimStorage == null) {
-            System.out.println("[EasyClaimsAccess] ERROR: claimStorage is null!");
+            // Map asked before the plugin finished loading
+            LOOKUPS_UNAVAILABLE.increment();
             return null;
         }
         UUID owner = claimStorage.getClaimOwner(worldName, chunkX, chunkZ);
-        // Debug: log when we find a claim (first few only to avoid spam)
-        if (owner != null) {
-            System.out.println("[EasyClaimsAccess] Found claim at " + worldName + " " + chunkX + "," + chunkZ + " owner=" + owner);
-        }
+        (owner != null ? LOOKUPS_CLAIMED : LOOKUPS_UNCLAIMED).increment();
         return owner;
     }
 
@@ -91,4 +95,32 @@ public class EasyClaimsAccess {
 
         return names;
     }
+
+    /**
+     * Gets the names drawn on a claimed map tile: the owner first, then up to
+     * {@code maxTrusted} trusted players. One lookup per tile.
+     */
+    public static List<String> getClaimLabelNames(UUID owner, int maxTrusted) {
+        List<String> names = new ArrayList<>(1 + maxTrusted);
+        if (claimStorage == null || owner == null) {
+            return names;
+        }
+
+        names.add(claimStorage.getPlayerName(owner));
+        PlayerClaims playerClaims = claimStorage.getPlayerClaims(owner);
+        if (playerClaims != null) {
+            names.addAll(playerClaims.getTrustedPlayerNames(maxTrusted));
+        }
+        return names;
+    }
+
+    /**
+     * Gets the claims of a player, or an empty list if none.
+     */
+    public static List<Claim> getClaims(UUID owner) {
+        if (claimStorage == null || owner == null) {
+            return new ArrayList<>();
+        }
+        return claimStorage.getPlayerClaims(owner).getClaims();
+    }
 }
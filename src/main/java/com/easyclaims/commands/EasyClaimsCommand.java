@@ -23,10 +23,17 @@ import com.easyclaims.data.PlayerClaims;
 import com.easyclaims.data.TrustLevel;
 import com.easyclaims.data.TrustedPlayer;
 import com.easyclaims.managers.ClaimManager;
+import com.easyclaims.map.MapColorTables;
+import com.easyclaims.map.MapInvalidator;
+import com.easyclaims.map.TerrainTileCache;
+import com.easyclaims.map.TerrainTileStore;
+import com.easyclaims.metrics.Metrics;
+import com.easyclaims.systems.ProtectionEventRecorder;
 import com.hypixel.hytale.server.core.permissions.PermissionsModule;
 
 import javax.annotation.Nonnull;
 import java.awt.Color;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -94,6 +101,13 @@ public class EasyClaimsCommand extends AbstractPlayerCommand {
 
         String[] args = parseArgs(ctx);
 
+        // Claims read or changed before the index is loaded would be wrong or get lost;
+        // admin diagnostics don't touch claims and are what's needed to find out why
+        if (!plugin.getClaimStorage().isIndexLoaded() && !isAdminDiagnostic(args)) {
+            playerData.sendMessage(Message.raw("Claims are still loading, try again in a moment.").color(RED));
+            return;
+        }
+
         if (args.length == 0) {
             handleGui(playerData, store, playerRef, world, false);
             return;
@@ -181,12 +195,41 @@ public class EasyClaimsCommand extends AbstractPlayerCommand {
             case "fakeclaim":
                 handleFakeClaim(playerData, args, store, playerRef, world);
                 break;
+            case "refreshmap":
+                handleRefreshMap(playerData, world);
+                break;
+            case "exportmap":
+                handleExportMap(playerData, arg1, world);
+                break;
+            case "trace":
+                handleTrace(playerData, arg1);
+                break;
+            case "stats":
+                handleStats(playerData, arg1);
+                break;
             default:
                 playerData.sendMessage(Message.raw("Unknown admin command: " + adminSubcmd).color(RED));
                 showAdminHelp(playerData);
         }
     }
 
+    /**
+     * Admin subcommands that don't read or change claims, so they can run while claims load.
+     */
+    private static boolean isAdminDiagnostic(String[] args) {
+        if (args.length < 2 || !args[0].equalsIgnoreCase("admin")) {
+            return false;
+        }
+        switch (args[1].toLowerCase()) {
+            case "stats":
+            case "reload":
+            case "config":
+                return true;
+            default:
+                return false;
+        }
+    }
+
     // Static fake player UUID for testing (consistent across sessions)
     private static final UUID FAKE_PLAYER_UUID = UUID.fromString("00000000-0000-0000-0000-000000000001");
     private static final String FAKE_PLAYER_NAME = "TestPlayer";
@@ -260,12 +303,11 @@ public class EasyClaimsCommand extends AbstractPlayerCommand {
 
         } else if (subCmd.equalsIgnoreCase("remove")) {
             // Remove all fake claims
+            List<Claim> removed = plugin.getClaimStorage().getPlayerClaims(FAKE_PLAYER_UUID).getClaims();
             int count = plugin.getClaimManager().unclaimAll(FAKE_PLAYER_UUID);
             if (count > 0) {
                 playerData.sendMessage(Message.raw("Removed " + count + " fake claim(s)").color(GREEN));
-                for (String worldName : EasyClaims.WORLDS.keySet()) {
-                    plugin.refreshWorldMap(worldName);
-                }
+                plugin.refreshClaimChunks(removed);
             } else {
                 playerData.sendMessage(Message.raw("No fake claims to remove").color(YELLOW));
             }
@@ -284,6 +326,10 @@ public class EasyClaimsCommand extends AbstractPlayerCommand {
         playerData.sendMessage(Message.raw("/claim admin reload - Reload config from file").color(GRAY));
         playerData.sendMessage(Message.raw("/claim admin unclaim - Remove claim at your location").color(GRAY));
         playerData.sendMessage(Message.raw("/claim admin unclaim <player> - Remove all claims from player").color(GRAY));
+        playerData.sendMessage(Message.raw("/claim admin refreshmap - Redraw the whole map of this world").color(GRAY));
+        playerData.sendMessage(Message.raw("/claim admin exportmap [world] - Export the claim map as PNG tiles").color(GRAY));
+        playerData.sendMessage(Message.raw("/claim admin trace <start|stop> - Record protection checks for replay").color(GRAY));
+        playerData.sendMessage(Message.raw("/claim admin stats [prefix] - Show plugin metrics (e.g. stats map)").color(GRAY));
         playerData.sendMessage(Message.raw("").color(GRAY));
         playerData.sendMessage(Message.raw("=== Testing Commands ===").color(GOLD));
         playerData.sendMessage(Message.raw("/claim admin fakeclaim - Claim chunk as fake player (for testing)").color(GRAY));
@@ -316,7 +362,7 @@ public class EasyClaimsCommand extends AbstractPlayerCommand {
                             plugin.getClaimManager(),
                             plugin.getClaimStorage(),
                             isAdmin,
-                            (worldName) -> plugin.refreshWorldMap(worldName)
+                            plugin::refreshWorldMapChunk
                     )
             );
         });
@@ -362,13 +408,12 @@ public class EasyClaimsCommand extends AbstractPlayerCommand {
 
     // ===== UNCLAIM ALL =====
     private void handleUnclaimAll(PlayerRef playerData) {
+        List<Claim> removed = plugin.getClaimStorage().getPlayerClaims(playerData.getUuid()).getClaims();
         int count = plugin.getClaimManager().unclaimAll(playerData.getUuid());
 
         if (count > 0) {
             playerData.sendMessage(Message.raw("Removed " + count + " claim(s)").color(GREEN));
-            for (String worldName : EasyClaims.WORLDS.keySet()) {
-                plugin.refreshWorldMap(worldName);
-            }
+            plugin.refreshClaimChunks(removed);
         } else {
             playerData.sendMessage(Message.raw("You don't have any claims to remove.").color(YELLOW));
         }
@@ -631,10 +676,75 @@ public class EasyClaimsCommand extends AbstractPlayerCommand {
 
     private void handleReload(PlayerRef playerData) {
         plugin.getPluginConfig().reload();
+
+        // Pick up changed block/fluid colors on the next map render
+        MapColorTables.invalidate();
+        TerrainTileCache.clear();
+        TerrainTileStore.clear();
+        MapInvalidator.clearLabels();
+
         playerData.sendMessage(Message.raw("Configuration reloaded!").color(GREEN));
         showConfig(playerData);
     }
 
+    // ===== ADMIN: REFRESH MAP =====
+    private void handleRefreshMap(PlayerRef playerData, World world) {
+        plugin.refreshWorldMap(world.getName());
+        playerData.sendMessage(Message.raw("Map refreshed for world " + world.getName()).color(GREEN));
+    }
+
+    // ===== ADMIN: EXPORT MAP =====
+    private void handleExportMap(PlayerRef playerData, String worldName, World world) {
+        String target = worldName != null ? worldName : world.getName();
+        playerData.sendMessage(Message.raw("Exporting claim map of " + target + "...").color(YELLOW));
+        plugin.exportClaimMap(target).whenComplete((result, error) -> world.execute(() -> {
+            if (error != null) {
+                playerData.sendMessage(Message.raw("Map export failed: " + error.getMessage()).color(RED));
+            } else {
+                playerData.sendMessage(Message.raw("Exported " + result.tilesWritten + " tiles ("
+                        + result.tilesUnchanged + " unchanged) to " + result.directory).color(GREEN));
+            }
+        }));
+    }
+
+    // ===== ADMIN: PROTECTION TRACE =====
+    private void handleTrace(PlayerRef playerData, String action) {
+        if ("start".equalsIgnoreCase(action)) {
+            Path file = plugin.startProtectionTrace();
+            if (file != null) {
+                playerData.sendMessage(Message.raw("Recording protection checks to " + file).color(GREEN));
+            } else {
+                playerData.sendMessage(Message.raw("Already recording, or the trace file could not be created").color(RED));
+            }
+        } else if ("stop".equalsIgnoreCase(action)) {
+            long count = ProtectionEventRecorder.getRecordedCount();
+            Path file = plugin.stopProtectionTrace();
+            if (file != null) {
+                playerData.sendMessage(Message.raw("Recorded " + count + " protection checks to " + file).color(GREEN));
+            } else {
+                playerData.sendMessage(Message.raw("Not recording").color(YELLOW));
+            }
+        } else {
+            String state = ProtectionEventRecorder.isRecording()
+                    ? "recording (" + ProtectionEventRecorder.getRecordedCount() + " checks)" : "not recording";
+            playerData.sendMessage(Message.raw("Protection trace: " + state).color(AQUA));
+            playerData.sendMessage(Message.raw("Usage: /claim admin trace <start|stop>").color(GRAY));
+        }
+    }
+
+    // ===== ADMIN: STATS =====
+    private void handleStats(PlayerRef playerData, String prefix) {
+        List<String> lines = Metrics.format(prefix);
+        if (lines.isEmpty()) {
+            playerData.sendMessage(Message.raw("No metrics" + (prefix != null ? " starting with " + prefix : "")).color(YELLOW));
+            return;
+        }
+        playerData.sendMessage(Message.raw("=== EasyClaims Metrics ===").color(GOLD));
+        for (String line : lines) {
+            playerData.sendMessage(Message.raw(line).color(GRAY));
+        }
+    }
+
     // ===== ADMIN: UNCLAIM =====
     private void handleAdminUnclaim(PlayerRef playerData, String playerInput, Store<EntityStore> store, Ref<EntityStore> playerRef, World world) {
         if (playerInput == null || playerInput.isEmpty()) {
@@ -677,12 +787,11 @@ public class EasyClaimsCommand extends AbstractPlayerCommand {
                 }
             }
 
+            List<Claim> removed = plugin.getClaimStorage().getPlayerClaims(targetId).getClaims();
             int count = plugin.getClaimManager().unclaimAll(targetId);
             if (count > 0) {
                 playerData.sendMessage(Message.raw("Removed " + count + " claim(s) from " + targetName).color(GREEN));
-                for (String worldName : EasyClaims.WORLDS.keySet()) {
-                    plugin.refreshWorldMap(worldName);
-                }
+                plugin.refreshClaimChunks(removed);
             } else {
                 playerData.sendMessage(Message.raw(targetName + " doesn't have any claims.").color(YELLOW));
             }
@@ -257,24 +257,7 @@ public class BlockGroups {
         // Check built-in door detection
         if (blockType.isDoor()) return true;
 
-        String id = blockType.getId();
-        if (id == null) return false;
-
-        String lowerID = id.toLowerCase();
-
-        // Check exact matches
-        if (useBlocks.contains(id) || useBlocks.contains(lowerID)) {
-            return true;
-        }
-
-        // Check patterns
-        for (String pattern : usePatterns) {
-            if (lowerID.contains(pattern)) {
-                return true;
-            }
-        }
-
-        return false;
+        return isUseBlockId(blockType.getId());
     }
 
     /**
@@ -282,25 +265,7 @@ public class BlockGroups {
      */
     public boolean isContainerBlock(BlockType blockType) {
         if (blockType == null) return false;
-
-        String id = blockType.getId();
-        if (id == null) return false;
-
-        String lowerID = id.toLowerCase();
-
-        // Check exact matches
-        if (containerBlocks.contains(id) || containerBlocks.contains(lowerID)) {
-            return true;
-        }
-
-        // Check patterns
-        for (String pattern : containerPatterns) {
-            if (lowerID.contains(pattern)) {
-                return true;
-            }
-        }
-
-        return false;
+        return isContainerBlockId(blockType.getId());
     }
 
     /**
@@ -308,19 +273,42 @@ public class BlockGroups {
      */
     public boolean isWorkstationBlock(BlockType blockType) {
         if (blockType == null) return false;
+        return isWorkstationBlockId(blockType.getId());
+    }
+
+    /**
+     * Check if a block ID is in the USE group (without the built-in door detection).
+     */
+    public boolean isUseBlockId(String id) {
+        return matches(id, useBlocks, usePatterns);
+    }
+
+    /**
+     * Check if a block ID is in the CONTAINER group.
+     */
+    public boolean isContainerBlockId(String id) {
+        return matches(id, containerBlocks, containerPatterns);
+    }
+
+    /**
+     * Check if a block ID is in the WORKSTATION group.
+     */
+    public boolean isWorkstationBlockId(String id) {
+        return matches(id, workstationBlocks, workstationPatterns);
+    }
 
-        String id = blockType.getId();
+    private static boolean matches(String id, Set<String> blocks, Set<String> patterns) {
         if (id == null) return false;
 
         String lowerID = id.toLowerCase();
 
         // Check exact matches
-        if (workstationBlocks.contains(id) || workstationBlocks.contains(lowerID)) {
+        if (blocks.contains(id) || blocks.contains(lowerID)) {
             return true;
         }
 
         // Check patterns
-        for (String pattern : workstationPatterns) {
+        for (String pattern : patterns) {
             if (lowerID.contains(pattern)) {
                 return true;
             }
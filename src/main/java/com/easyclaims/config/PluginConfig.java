@@ -1,5 +1,6 @@
 package com.easyclaims.config;
 
+import com.easyclaims.metrics.ClaimEvents;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
@@ -80,7 +81,13 @@ public class PluginConfig {
      * Reload configuration from file.
      */
     public void reload() {
+        ClaimEvents.ConfigReload event = new ClaimEvents.ConfigReload();
+        event.begin();
         load();
+        if (event.shouldCommit()) {
+            event.file = configFile.toString();
+            event.commit();
+        }
     }
 
     /**
@@ -117,6 +124,46 @@ public class PluginConfig {
         return config.claimBufferSize;
     }
 
+    public boolean isPersistentMapCache() {
+        return config.persistentMapCache;
+    }
+
+    public int getMapCacheMaxAgeHours() {
+        return config.mapCacheMaxAgeHours;
+    }
+
+    public boolean isSimdMapRendering() {
+        return config.simdMapRendering;
+    }
+
+    public int getMapRenderThreads() {
+        return config.mapRenderThreads;
+    }
+
+    public int getMapRenderQueueSize() {
+        return config.mapRenderQueueSize;
+    }
+
+    public int getMapRenderCancelDistance() {
+        return config.mapRenderCancelDistance;
+    }
+
+    public int getMapClaimOnlyBelowSize() {
+        return config.mapClaimOnlyBelowSize;
+    }
+
+    public boolean isRecordProtectionEvents() {
+        return config.recordProtectionEvents;
+    }
+
+    public int getMetricsDumpIntervalSeconds() {
+        return config.metricsDumpIntervalSeconds;
+    }
+
+    public boolean isWarmClaimCache() {
+        return config.warmClaimCache;
+    }
+
     // ===== SETTERS (auto-save) =====
 
     public void setClaimsPerHour(int value) {
@@ -204,5 +251,15 @@ public class PluginConfig {
         int maxClaims = 50;
         int playtimeSaveInterval = 60;
         int claimBufferSize = 2;  // Buffer zone in chunks around claims where others can't claim
+        boolean persistentMapCache = true;  // Keep rendered map terrain on disk across restarts
+        int mapCacheMaxAgeHours = 24;  // Re-render stored map terrain older than this (0 = never)
+        boolean simdMapRendering = true;  // Use the Vector API map renderer when the JVM provides it
+        int mapRenderThreads = 2;  // Threads rendering map tiles
+        int mapRenderQueueSize = 1024;  // Waiting map tiles; the farthest are dropped beyond this
+        int mapRenderCancelDistance = 0;  // Skip map tiles this many chunks away from every player (0 = never); skipped tiles stay blank until asked for again
+        int mapClaimOnlyBelowSize = 16;  // Map tiles smaller than this (pixels) show only claims unless terrain is cached (0 = never)
+        boolean recordProtectionEvents = false;  // Log every protection decision to traces/ for replay (see benchmarks/)
+        int metricsDumpIntervalSeconds = 0;  // Append all metrics to metrics.jsonl this often (0 = never)
+        boolean warmClaimCache = true;  // Load every owner's claims in the background at startup instead of on first use
     }
 }
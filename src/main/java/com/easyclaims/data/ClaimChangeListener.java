@@ -0,0 +1,21 @@
+package com.easyclaims.data;
+
+import java.util.UUID;
+
+/**
+ * Notified by ClaimStorage whenever a chunk is claimed or unclaimed.
+ * Called on the thread that changed the claim, after the claim index was updated.
+ */
+public interface ClaimChangeListener {
+
+    void onClaimAdded(String world, int chunkX, int chunkZ, UUID owner);
+
+    void onClaimRemoved(String world, int chunkX, int chunkZ, UUID owner);
+
+    /**
+     * Called once when the claim index finished loading, on the thread that loaded it.
+     * Anything built from the index before then was built from an incomplete one.
+     */
+    default void onClaimsLoaded() {
+    }
+}
@@ -2,10 +2,15 @@ package com.easyclaims.data;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 import com.google.gson.reflect.TypeToken;
+import com.easyclaims.metrics.ClaimEvents;
+import com.easyclaims.metrics.LatencyHistogram;
+import com.easyclaims.metrics.Metrics;
 import com.easyclaims.util.ChunkUtil;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Type;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -17,11 +22,14 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Manages persistent storage of claims using JSON files.
  */
 public class ClaimStorage {
+    private static final LatencyHistogram FLUSH_LATENCY = Metrics.histogram("storage.claims.flush");
+
     private final Path claimsDirectory;
     private final Path indexFile;
     private final Path namesFile;
@@ -29,8 +37,22 @@ public class ClaimStorage {
     private final Map<UUID, PlayerClaims> cache;
     private final Map<String, Map<String, UUID>> claimIndex; // world -> (chunkKey -> ownerUUID)
     private final Map<UUID, String> playerNames; // playerId -> username (for map display)
+    private final List<ClaimChangeListener> listeners = new CopyOnWriteArrayList<>();
+    // Until these are set the files on disk have data we don't, so they must not be overwritten
+    private volatile boolean indexLoaded;
+    private volatile boolean namesLoaded;
 
     public ClaimStorage(Path dataDirectory) {
+        this(dataDirectory, true);
+    }
+
+    /**
+     * @param loadNow Whether to load the claim index and player names right away. If false,
+     *                call {@link #loadIndex()} and {@link #loadNames()} later, e.g. on a
+     *                background thread; until then {@link #isIndexLoaded()} is false
+     * @throws UncheckedIOException if loadNow is set and the claim index can't be read
+     */
+    public ClaimStorage(Path dataDirectory, boolean loadNow) {
         this.claimsDirectory = dataDirectory.resolve("claims");
         this.indexFile = claimsDirectory.resolve("index.json");
         this.namesFile = claimsDirectory.resolve("names.json");
@@ -45,35 +67,70 @@ public class ClaimStorage {
             e.printStackTrace();
         }
 
-        loadIndex();
-        loadNames();
+        if (loadNow) {
+            try {
+                loadIndex();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            loadNames();
+        }
     }
 
-    private void loadIndex() {
+    /**
+     * Whether the claim index was loaded. Until it is, chunks look unclaimed, so protection
+     * has to deny everything rather than ask.
+     */
+    public boolean isIndexLoaded() {
+        return indexLoaded;
+    }
+
+    /**
+     * Loads the claim index (which chunk belongs to whom) and tells the change listeners.
+     * A missing index file counts as no claims.
+     *
+     * @throws IOException if the index file can't be read or parsed; the index then stays
+     *                     not loaded, so protection stays closed and the file isn't overwritten
+     */
+    public void loadIndex() throws IOException {
         if (Files.exists(indexFile)) {
+            Map<String, Map<String, String>> loaded;
             try {
                 String json = Files.readString(indexFile);
                 Type type = new TypeToken<Map<String, Map<String, String>>>() {}.getType();
-                Map<String, Map<String, String>> loaded = gson.fromJson(json, type);
-                if (loaded != null) {
-                    for (Map.Entry<String, Map<String, String>> worldEntry : loaded.entrySet()) {
-                        String world = worldEntry.getKey();
-                        Map<String, UUID> worldClaims = new ConcurrentHashMap<>();
-                        for (Map.Entry<String, String> claimEntry : worldEntry.getValue().entrySet()) {
-                            try {
-                                worldClaims.put(claimEntry.getKey(), UUID.fromString(claimEntry.getValue()));
-                            } catch (IllegalArgumentException ignored) {}
-                        }
-                        claimIndex.put(world, worldClaims);
+                loaded = gson.fromJson(json, type);
+            } catch (JsonParseException e) {
+                throw new IOException("Corrupt claim index " + indexFile, e);
+            }
+            if (loaded != null) {
+                for (Map.Entry<String, Map<String, String>> worldEntry : loaded.entrySet()) {
+                    String world = worldEntry.getKey();
+                    Map<String, UUID> worldClaims = new ConcurrentHashMap<>();
+                    for (Map.Entry<String, String> claimEntry : worldEntry.getValue().entrySet()) {
+                        try {
+                            worldClaims.put(claimEntry.getKey(), UUID.fromString(claimEntry.getValue()));
+                        } catch (IllegalArgumentException ignored) {}
                     }
+                    claimIndex.put(world, worldClaims);
                 }
-            } catch (IOException e) {
+            }
+        }
+        indexLoaded = true;
+
+        for (ClaimChangeListener listener : listeners) {
+            try {
+                listener.onClaimsLoaded();
+            } catch (Exception e) {
                 e.printStackTrace();
             }
         }
     }
 
     private void saveIndex() {
+        if (!indexLoaded) {
+            return;
+        }
+
         Map<String, Map<String, String>> toSave = new HashMap<>();
         for (Map.Entry<String, Map<String, UUID>> worldEntry : claimIndex.entrySet()) {
             Map<String, String> worldClaims = new HashMap<>();
@@ -84,13 +141,16 @@ public class ClaimStorage {
         }
 
         try {
-            Files.writeString(indexFile, gson.toJson(toSave));
+            StorageWrites.write(indexFile, gson.toJson(toSave));
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    private void loadNames() {
+    /**
+     * Loads the player names shown on the map. Names set in the meantime are kept.
+     */
+    public void loadNames() {
         if (Files.exists(namesFile)) {
             try {
                 String json = Files.readString(namesFile);
@@ -99,7 +159,7 @@ public class ClaimStorage {
                 if (loaded != null) {
                     for (Map.Entry<String, String> entry : loaded.entrySet()) {
                         try {
-                            playerNames.put(UUID.fromString(entry.getKey()), entry.getValue());
+                            playerNames.putIfAbsent(UUID.fromString(entry.getKey()), entry.getValue());
                         } catch (IllegalArgumentException ignored) {}
                     }
                 }
@@ -107,15 +167,20 @@ public class ClaimStorage {
                 e.printStackTrace();
             }
         }
+        namesLoaded = true;
     }
 
     private void saveNames() {
+        if (!namesLoaded) {
+            return;
+        }
+
         Map<String, String> toSave = new HashMap<>();
         for (Map.Entry<UUID, String> entry : playerNames.entrySet()) {
             toSave.put(entry.getKey().toString(), entry.getValue());
         }
         try {
-            Files.writeString(namesFile, gson.toJson(toSave));
+            StorageWrites.write(namesFile, gson.toJson(toSave));
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -140,6 +205,19 @@ public class ClaimStorage {
         return playerNames.getOrDefault(playerId, playerId.toString().substring(0, 8));
     }
 
+    /**
+     * Gets the names of all worlds that have claims.
+     */
+    public Set<String> getWorlds() {
+        Set<String> worlds = new HashSet<>();
+        for (Map.Entry<String, Map<String, UUID>> entry : claimIndex.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                worlds.add(entry.getKey());
+            }
+        }
+        return worlds;
+    }
+
     /**
      * Gets all claimed chunks in a specific world.
      * @return Map of chunk key ("x,z") to owner UUID
@@ -196,11 +274,42 @@ public class ClaimStorage {
         return cache.computeIfAbsent(playerId, this::loadPlayerClaims);
     }
 
+    /**
+     * Loads the claims of every owner in the index into the cache, so the first permission
+     * check in someone's claim doesn't wait for their file.
+     * @return the number of owners
+     */
+    public int warmCache() {
+        Set<UUID> owners = new HashSet<>();
+        for (Map<String, UUID> worldClaims : claimIndex.values()) {
+            owners.addAll(worldClaims.values());
+        }
+        for (UUID owner : owners) {
+            getPlayerClaims(owner);
+        }
+        return owners.size();
+    }
+
     private PlayerClaims loadPlayerClaims(UUID playerId) {
+        ClaimEvents.PlayerFileLoad event = new ClaimEvents.PlayerFileLoad();
+        event.begin();
+        PlayerClaims claims = readPlayerClaims(playerId, event);
+        if (event.shouldCommit()) {
+            event.storage = "claims";
+            event.owner = playerId.toString();
+            event.claims = claims.getClaimCount();
+            event.commit();
+        }
+        return claims;
+    }
+
+    private PlayerClaims readPlayerClaims(UUID playerId, ClaimEvents.PlayerFileLoad event) {
         Path file = claimsDirectory.resolve(playerId.toString() + ".json");
 
         if (Files.exists(file)) {
             try {
+                event.found = true;
+                event.bytes = Files.size(file);
                 String json = Files.readString(file);
                 PlayerClaimsJson data = gson.fromJson(json, PlayerClaimsJson.class);
 
@@ -282,22 +391,60 @@ public class ClaimStorage {
         }
 
         try {
-            Files.writeString(file, gson.toJson(data));
+            StorageWrites.write(file, gson.toJson(data));
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Registers a listener that is told about every claimed and unclaimed chunk.
+     */
+    public void addChangeListener(ClaimChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(ClaimChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void fireClaimAdded(String world, int chunkX, int chunkZ, UUID owner) {
+        for (ClaimChangeListener listener : listeners) {
+            try {
+                listener.onClaimAdded(world, chunkX, chunkZ, owner);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void fireClaimRemoved(String world, int chunkX, int chunkZ, UUID owner) {
+        for (ClaimChangeListener listener : listeners) {
+            try {
+                listener.onClaimRemoved(world, chunkX, chunkZ, owner);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     public void addClaim(UUID playerId, Claim claim) {
         PlayerClaims claims = getPlayerClaims(playerId);
         claims.addClaim(claim);
 
         // Update index
         String chunkKey = ChunkUtil.chunkKey(claim.getChunkX(), claim.getChunkZ());
-        claimIndex.computeIfAbsent(claim.getWorld(), k -> new ConcurrentHashMap<>()).put(chunkKey, playerId);
+        UUID previous = claimIndex.computeIfAbsent(claim.getWorld(), k -> new ConcurrentHashMap<>()).put(chunkKey, playerId);
 
         savePlayerClaims(playerId);
         saveIndex();
+
+        if (!playerId.equals(previous)) {
+            if (previous != null) {
+                fireClaimRemoved(claim.getWorld(), claim.getChunkX(), claim.getChunkZ(), previous);
+            }
+            fireClaimAdded(claim.getWorld(), claim.getChunkX(), claim.getChunkZ(), playerId);
+        }
     }
 
     public void removeClaim(UUID playerId, String world, int chunkX, int chunkZ) {
@@ -307,12 +454,14 @@ public class ClaimStorage {
         // Update index
         String chunkKey = ChunkUtil.chunkKey(chunkX, chunkZ);
         Map<String, UUID> worldClaims = claimIndex.get(world);
-        if (worldClaims != null) {
-            worldClaims.remove(chunkKey);
-        }
+        UUID removed = worldClaims != null ? worldClaims.remove(chunkKey) : null;
 
         savePlayerClaims(playerId);
         saveIndex();
+
+        if (removed != null) {
+            fireClaimRemoved(world, chunkX, chunkZ, removed);
+        }
     }
 
     /**
@@ -322,11 +471,12 @@ public class ClaimStorage {
         PlayerClaims claims = getPlayerClaims(playerId);
 
         // Remove from index
+        List<Claim> removed = new ArrayList<>();
         for (Claim claim : claims.getClaims()) {
             String chunkKey = ChunkUtil.chunkKey(claim.getChunkX(), claim.getChunkZ());
             Map<String, UUID> worldClaims = claimIndex.get(claim.getWorld());
-            if (worldClaims != null) {
-                worldClaims.remove(chunkKey);
+            if (worldClaims != null && worldClaims.remove(chunkKey, playerId)) {
+                removed.add(claim);
             }
         }
 
@@ -335,6 +485,10 @@ public class ClaimStorage {
 
         savePlayerClaims(playerId);
         saveIndex();
+
+        for (Claim claim : removed) {
+            fireClaimRemoved(claim.getWorld(), claim.getChunkX(), claim.getChunkZ(), playerId);
+        }
     }
 
     /**
@@ -389,11 +543,22 @@ public class ClaimStorage {
     }
 
     public void saveAll() {
+        ClaimEvents.StorageFlush event = new ClaimEvents.StorageFlush();
+        event.begin();
+        long start = System.nanoTime();
+        int players = 0;
         for (UUID playerId : cache.keySet()) {
             savePlayerClaims(playerId);
+            players++;
         }
         saveIndex();
         saveNames();
+        FLUSH_LATENCY.recordSince(start);
+        if (event.shouldCommit()) {
+            event.storage = "claims";
+            event.players = players;
+            event.commit();
+        }
     }
 
     // JSON data classes
@@ -63,6 +63,18 @@ public class PlayerClaims {
         return new HashMap<>(trustedPlayers);
     }
 
+    /**
+     * Gets the names of up to {@code limit} trusted players without copying the trust map.
+     */
+    public List<String> getTrustedPlayerNames(int limit) {
+        List<String> names = new ArrayList<>(Math.min(limit, trustedPlayers.size()));
+        for (TrustedPlayer trusted : trustedPlayers.values()) {
+            if (names.size() >= limit) break;
+            names.add(trusted.getName());
+        }
+        return names;
+    }
+
     /**
      * Gets trusted player names with their trust levels for display.
      * @return Map of UUID -> "name (level)"
@@ -2,6 +2,9 @@ package com.easyclaims.data;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.easyclaims.metrics.ClaimEvents;
+import com.easyclaims.metrics.LatencyHistogram;
+import com.easyclaims.metrics.Metrics;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -14,6 +17,8 @@ import java.util.concurrent.ConcurrentHashMap;
  * Manages persistent storage of player playtime using JSON files.
  */
 public class PlaytimeStorage {
+    private static final LatencyHistogram FLUSH_LATENCY = Metrics.histogram("storage.playtime.flush");
+
     private final Path playtimeDirectory;
     private final Gson gson;
     private final Map<UUID, PlaytimeData> cache;
@@ -35,10 +40,24 @@ public class PlaytimeStorage {
     }
 
     private PlaytimeData loadPlaytime(UUID playerId) {
+        ClaimEvents.PlayerFileLoad event = new ClaimEvents.PlayerFileLoad();
+        event.begin();
+        PlaytimeData data = readPlaytime(playerId, event);
+        if (event.shouldCommit()) {
+            event.storage = "playtime";
+            event.owner = playerId.toString();
+            event.commit();
+        }
+        return data;
+    }
+
+    private PlaytimeData readPlaytime(UUID playerId, ClaimEvents.PlayerFileLoad event) {
         Path file = playtimeDirectory.resolve(playerId.toString() + ".json");
 
         if (Files.exists(file)) {
             try {
+                event.found = true;
+                event.bytes = Files.size(file);
                 String json = Files.readString(file);
                 PlaytimeJson data = gson.fromJson(json, PlaytimeJson.class);
 
@@ -63,15 +82,26 @@ public class PlaytimeStorage {
         json.totalPlaytimeSeconds = data.getTotalPlaytimeSeconds();
 
         try {
-            Files.writeString(file, gson.toJson(json));
+            StorageWrites.write(file, gson.toJson(json));
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     public void saveAll() {
+        ClaimEvents.StorageFlush event = new ClaimEvents.StorageFlush();
+        event.begin();
+        long start = System.nanoTime();
+        int players = 0;
         for (UUID playerId : cache.keySet()) {
             savePlaytime(playerId);
+            players++;
+        }
+        FLUSH_LATENCY.recordSince(start);
+        if (event.shouldCommit()) {
+            event.storage = "playtime";
+            event.players = players;
+            event.commit();
         }
     }
 
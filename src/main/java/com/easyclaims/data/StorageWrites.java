@@ -0,0 +1,32 @@
+package com.easyclaims.data;
+
+import com.easyclaims.metrics.LatencyHistogram;
+import com.easyclaims.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes data files, counting them in {@link Metrics}: write latency, files and bytes written.
+ */
+final class StorageWrites {
+
+    private static final LatencyHistogram WRITE_LATENCY = Metrics.histogram("storage.write");
+    private static final LongAdder FILES_WRITTEN = Metrics.counter("storage.files_written");
+    private static final LongAdder BYTES_WRITTEN = Metrics.counter("storage.bytes_written");
+
+    private StorageWrites() {
+    }
+
+    static void write(Path file, String content) throws IOException {
+        long start = System.nanoTime();
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        Files.write(file, bytes);
+        WRITE_LATENCY.recordSince(start);
+        FILES_WRITTEN.increment();
+        BYTES_WRITTEN.add(bytes.length);
+    }
+}
@@ -2,6 +2,7 @@ package com.easyclaims.gui;
 
 import com.easyclaims.data.ClaimStorage;
 import com.easyclaims.managers.ClaimManager;
+import com.easyclaims.managers.ClaimRegionTracker;
 import static com.easyclaims.util.ChunkUtil.CHUNK_SIZE;
 import com.hypixel.hytale.codec.Codec;
 import com.hypixel.hytale.codec.KeyedCodec;
@@ -23,7 +24,6 @@ import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import javax.annotation.Nonnull;
 import java.awt.Color;
 import java.util.UUID;
-import java.util.function.Consumer;
 
 /**
  * Interactive GUI for visualizing and managing chunk claims.
@@ -43,11 +43,11 @@ public class ChunkVisualizerGui extends InteractiveCustomUIPage<ChunkVisualizerG
     private final ClaimManager claimManager;
     private final ClaimStorage claimStorage;
     private final boolean isAdmin;
-    private final Consumer<String> mapRefresher;
+    private final MapRefresher mapRefresher;
 
     public ChunkVisualizerGui(@Nonnull PlayerRef playerRef, String worldName, int centerChunkX, int centerChunkZ,
                                ClaimManager claimManager, ClaimStorage claimStorage, boolean isAdmin,
-                               Consumer<String> mapRefresher) {
+                               MapRefresher mapRefresher) {
         super(playerRef, CustomPageLifetime.CanDismiss, GuiData.CODEC);
         this.worldName = worldName;
         this.centerChunkX = centerChunkX;
@@ -94,7 +94,7 @@ public class ChunkVisualizerGui extends InteractiveCustomUIPage<ChunkVisualizerG
                     case SUCCESS:
                         player.sendMessage(Message.raw("Chunk claimed!").color(new Color(85, 255, 85)));
                         if (mapRefresher != null) {
-                            mapRefresher.accept(worldName);
+                            mapRefresher.refresh(worldName, chunkX, chunkZ);
                         }
                         break;
                     case LIMIT_REACHED:
@@ -103,6 +103,9 @@ public class ChunkVisualizerGui extends InteractiveCustomUIPage<ChunkVisualizerG
                     case TOO_CLOSE_TO_OTHER_CLAIM:
                         player.sendMessage(Message.raw("Too close to another player's claim!").color(new Color(255, 85, 85)));
                         break;
+                    case NOT_READY:
+                        player.sendMessage(Message.raw("Claims are still loading, try again in a moment.").color(new Color(255, 85, 85)));
+                        break;
                     default:
                         break;
                 }
@@ -127,7 +130,7 @@ public class ChunkVisualizerGui extends InteractiveCustomUIPage<ChunkVisualizerG
                 }
 
                 if (mapRefresher != null) {
-                    mapRefresher.accept(worldName);
+                    mapRefresher.refresh(worldName, chunkX, chunkZ);
                 }
             }
         }
@@ -208,15 +211,19 @@ public class ChunkVisualizerGui extends InteractiveCustomUIPage<ChunkVisualizerG
                     uiCommandBuilder.set("#ChunkCards[" + z + "][" + x + "].OutlineSize", 1);
 
                     // Build tooltip - use simple text since Message doesn't support append
-                    String tooltipText;
-                    if (owner.equals(playerId)) {
-                        tooltipText = "Your Claim\n\nRight Click to Unclaim";
-                    } else {
-                        tooltipText = "Owner: " + ownerName;
-                        if (isAdmin) {
-                            tooltipText += "\n\nRight Click to Unclaim (Admin)";
+                    String tooltipText = owner.equals(playerId) ? "Your Claim" : "Owner: " + ownerName;
+                    ClaimRegionTracker.Region region = claimManager.getRegionTracker().getRegion(worldName, chunkX, chunkZ);
+                    if (region != null && region.chunkCount > 1) {
+                        tooltipText += "\nPart of " + region.chunkCount + " connected chunks";
+                        if (region.owners.size() > 1) {
+                            tooltipText += " (" + region.owners.size() + " owners)";
                         }
                     }
+                    if (owner.equals(playerId)) {
+                        tooltipText += "\n\nRight Click to Unclaim";
+                    } else if (isAdmin) {
+                        tooltipText += "\n\nRight Click to Unclaim (Admin)";
+                    }
 
                     uiCommandBuilder.set("#ChunkCards[" + z + "][" + x + "].TooltipTextSpans",
                             Message.raw(tooltipText).color(owner.equals(playerId) ? new Color(85, 255, 255) : Color.WHITE));
@@ -279,6 +286,14 @@ public class ChunkVisualizerGui extends InteractiveCustomUIPage<ChunkVisualizerG
         return sb.toString().trim();
     }
 
+    /**
+     * Called after a chunk was claimed or unclaimed to redraw it on the world map.
+     */
+    @FunctionalInterface
+    public interface MapRefresher {
+        void refresh(String worldName, int chunkX, int chunkZ);
+    }
+
     /**
      * Data class for handling GUI events.
      */
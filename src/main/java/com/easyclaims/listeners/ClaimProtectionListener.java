@@ -14,11 +14,15 @@ import com.hypixel.hytale.protocol.InteractionType;
 import com.easyclaims.EasyClaims;
 import com.easyclaims.data.TrustLevel;
 import com.easyclaims.managers.ClaimManager;
+import com.easyclaims.metrics.Metrics;
+import com.easyclaims.systems.ProtectionEventLog;
+import com.easyclaims.systems.ProtectionEventRecorder;
 import com.easyclaims.util.Messages;
 
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Listens for player interaction events for protection checks.
@@ -33,6 +37,11 @@ public class ClaimProtectionListener {
     private static final Map<UUID, PlayerInteraction> playerLastInteraction = new ConcurrentHashMap<>();
 
     private static final long INTERACTION_TIMEOUT_MS = 5000;
+    // Cached decisions are only reused briefly - the ECS event follows the interaction almost immediately
+    private static final long DECISION_TIMEOUT_MS = 1000;
+
+    private static final LongAdder DECISION_CACHE_HITS = Metrics.counter("protection.decision_cache.hit");
+    private static final LongAdder DECISION_CACHE_MISSES = Metrics.counter("protection.decision_cache.miss");
 
     public ClaimProtectionListener(EasyClaims plugin) {
         this.plugin = plugin;
@@ -78,9 +87,10 @@ public class ClaimProtectionListener {
         Entity targetEntity = event.getTargetEntity();
 
         // Determine the position to check - either from block or entity
-        double checkX, checkZ;
+        double checkX, checkY, checkZ;
         if (targetBlock != null) {
             checkX = targetBlock.getX();
+            checkY = targetBlock.getY();
             checkZ = targetBlock.getZ();
         } else if (targetEntity != null) {
             // For entity interactions (like picking up dropped items), use entity position
@@ -89,21 +99,12 @@ public class ClaimProtectionListener {
             Vector3d entityPos = transformComponent.getPosition();
             if (entityPos == null) return;
             checkX = entityPos.getX();
+            checkY = entityPos.getY();
             checkZ = entityPos.getZ();
         } else {
             return; // No target to check
         }
 
-        // Track interaction for ECS event correlation (only for block interactions)
-        if (targetBlock != null) {
-            String blockKey = getBlockKey(targetBlock);
-            PlayerInteraction interaction = new PlayerInteraction(playerId, worldName, targetBlock, System.currentTimeMillis());
-            pendingInteractions.put(blockKey, interaction);
-            playerLastInteraction.put(playerId, interaction);
-        }
-
-        cleanupOldInteractions();
-
         // Determine required trust level based on action type
         // Pickup interactions on blocks (harvesting flowers, etc.) require BUILD trust
         // since they effectively destroy the block
@@ -118,6 +119,20 @@ public class ClaimProtectionListener {
 
         // Check if this location is protected
         boolean hasPermission = claimManager.hasPermissionAt(playerId, worldName, checkX, checkZ, requiredLevel);
+        ProtectionEventRecorder.record(ProtectionEventLog.Kind.INTERACT, playerId, worldName,
+                (int) Math.floor(checkX), (int) Math.floor(checkY), (int) Math.floor(checkZ), requiredLevel, hasPermission);
+
+        // Track interaction and its decision for ECS event correlation (only for block interactions),
+        // so the matching break/use event can reuse it instead of resolving permissions again
+        if (targetBlock != null) {
+            String blockKey = getBlockKey(targetBlock);
+            PlayerInteraction interaction = new PlayerInteraction(playerId, worldName, targetBlock,
+                    System.currentTimeMillis(), requiredLevel, hasPermission);
+            pendingInteractions.put(blockKey, interaction);
+            playerLastInteraction.put(playerId, interaction);
+        }
+
+        cleanupOldInteractions();
 
         if (!hasPermission) {
             logger.atFine().log("Blocked interaction: player=%s pos=[%.1f, %.1f] action=%s required=%s",
@@ -168,6 +183,48 @@ public class ClaimProtectionListener {
         return null;
     }
 
+    /**
+     * Looks up the permission decision the listener already made for this player and block.
+     * An allow at a higher trust level also covers lower ones, and a deny at a lower level
+     * also covers higher ones.
+     *
+     * @return TRUE/FALSE if a matching recent decision covers the required level, or null
+     *         if the caller has to resolve permissions itself
+     */
+    public static Boolean findDecision(UUID playerId, String worldName, Vector3i targetBlock, TrustLevel required) {
+        Boolean decision = lookupDecision(playerId, worldName, targetBlock, required);
+        (decision != null ? DECISION_CACHE_HITS : DECISION_CACHE_MISSES).increment();
+        return decision;
+    }
+
+    /**
+     * Checks a block permission, reusing the decision from the matching PlayerInteractEvent
+     * if there is one (see {@link #findDecision}), otherwise resolving it with the ClaimManager.
+     */
+    public static boolean hasPermission(ClaimManager claimManager, UUID playerId, String worldName,
+                                        Vector3i targetBlock, TrustLevel required) {
+        Boolean cached = findDecision(playerId, worldName, targetBlock, required);
+        if (cached != null) {
+            return cached;
+        }
+        return claimManager.hasPermissionAt(playerId, worldName, targetBlock.getX(), targetBlock.getZ(), required);
+    }
+
+    private static Boolean lookupDecision(UUID playerId, String worldName, Vector3i targetBlock, TrustLevel required) {
+        PlayerInteraction interaction = pendingInteractions.get(getBlockKey(targetBlock));
+        if (interaction == null || interaction.requiredLevel == null) return null;
+        if (!interaction.playerId.equals(playerId) || !interaction.worldName.equals(worldName)) return null;
+        if (System.currentTimeMillis() - interaction.timestamp > DECISION_TIMEOUT_MS) return null;
+
+        if (interaction.allowed && interaction.requiredLevel.hasPermission(required)) {
+            return Boolean.TRUE;
+        }
+        if (!interaction.allowed && required.hasPermission(interaction.requiredLevel)) {
+            return Boolean.FALSE;
+        }
+        return null;
+    }
+
     public static void removeInteraction(String blockKey) {
         pendingInteractions.remove(blockKey);
     }
@@ -200,19 +257,28 @@ public class ClaimProtectionListener {
     }
 
     /**
-     * Tracks a player's interaction with a block.
+     * Tracks a player's interaction with a block, and the permission decision made for it.
      */
     public static class PlayerInteraction {
         public final UUID playerId;
         public final String worldName;
         public final Vector3i blockPos;
         public final long timestamp;
+        public final TrustLevel requiredLevel; // null if no decision was recorded
+        public final boolean allowed;
 
         public PlayerInteraction(UUID playerId, String worldName, Vector3i blockPos, long timestamp) {
+            this(playerId, worldName, blockPos, timestamp, null, false);
+        }
+
+        public PlayerInteraction(UUID playerId, String worldName, Vector3i blockPos, long timestamp,
+                                 TrustLevel requiredLevel, boolean allowed) {
             this.playerId = playerId;
             this.worldName = worldName;
             this.blockPos = blockPos;
             this.timestamp = timestamp;
+            this.requiredLevel = requiredLevel;
+            this.allowed = allowed;
         }
 
         public boolean isExpired() {
@@ -8,24 +8,42 @@ import com.easyclaims.data.PlayerClaims;
 import com.easyclaims.data.PlaytimeData;
 import com.easyclaims.data.PlaytimeStorage;
 import com.easyclaims.data.TrustLevel;
+import com.easyclaims.metrics.ClaimEvents;
+import com.easyclaims.metrics.LatencyHistogram;
+import com.easyclaims.metrics.Metrics;
 import com.easyclaims.util.ChunkUtil;
+import it.unimi.dsi.fastutil.longs.Long2BooleanOpenHashMap;
 
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.hypixel.hytale.math.util.ChunkUtil.indexChunk;
 
 /**
  * Core claim logic and protection checks.
  */
 public class ClaimManager {
+    private static final int CHECK_SAMPLE_RATE = 16;
+    private static final LatencyHistogram CHECK_LATENCY = Metrics.histogram("protection.check");
+    // Checks denied because the claim index was still loading
+    private static final LongAdder NOT_READY = Metrics.counter("protection.not_ready");
+
     private final ClaimStorage claimStorage;
     private final PlaytimeStorage playtimeStorage;
     private final PluginConfig config;
     private final BlockGroups blockGroups;
+    private final ClaimRegionTracker regionTracker;
 
     public ClaimManager(ClaimStorage claimStorage, PlaytimeStorage playtimeStorage, PluginConfig config, BlockGroups blockGroups) {
         this.claimStorage = claimStorage;
         this.playtimeStorage = playtimeStorage;
         this.config = config;
         this.blockGroups = blockGroups;
+        this.regionTracker = new ClaimRegionTracker(claimStorage, false);
     }
 
     /**
@@ -42,11 +60,21 @@ public class ClaimManager {
         return claimStorage;
     }
 
+    /**
+     * Gets the tracker of contiguous claim regions (neighboring claims of any owner).
+     */
+    public ClaimRegionTracker getRegionTracker() {
+        return regionTracker;
+    }
+
     /**
      * Attempts to claim a chunk for a player.
      * @return ClaimResult indicating success or failure reason
      */
     public ClaimResult claimChunk(UUID playerId, String world, double x, double z) {
+        if (!claimStorage.isIndexLoaded()) {
+            return ClaimResult.NOT_READY;
+        }
         int chunkX = ChunkUtil.toChunkX(x);
         int chunkZ = ChunkUtil.toChunkZ(z);
 
@@ -108,9 +136,17 @@ public class ClaimManager {
      * @return the number of chunks unclaimed
      */
     public int unclaimAll(UUID playerId) {
+        ClaimEvents.BulkClaimOperation event = new ClaimEvents.BulkClaimOperation();
+        event.begin();
         PlayerClaims claims = claimStorage.getPlayerClaims(playerId);
         int count = claims.getClaimCount();
         claimStorage.removeAllClaims(playerId);
+        if (event.shouldCommit()) {
+            event.operation = "unclaim_all";
+            event.owner = playerId.toString();
+            event.count = count;
+            event.commit();
+        }
         return count;
     }
 
@@ -127,6 +163,40 @@ public class ClaimManager {
      * Returns true if: unclaimed, owner, or has sufficient trust level.
      */
     public boolean hasPermissionAt(UUID playerId, String world, double x, double z, TrustLevel required) {
+        ClaimEvents.PermissionCheck event = new ClaimEvents.PermissionCheck();
+        event.begin();
+        boolean allowed;
+        // Time one check in CHECK_SAMPLE_RATE; timing every one would cost as much as the check
+        if (ThreadLocalRandom.current().nextInt(CHECK_SAMPLE_RATE) == 0) {
+            long start = System.nanoTime();
+            allowed = resolvePermission(playerId, world, x, z, required);
+            CHECK_LATENCY.recordSince(start);
+        } else {
+            allowed = resolvePermission(playerId, world, x, z, required);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            // Only checks over the threshold get here, so looking up the owner again is fine
+            int chunkX = ChunkUtil.toChunkX(x);
+            int chunkZ = ChunkUtil.toChunkZ(z);
+            event.world = world;
+            event.chunkX = chunkX;
+            event.chunkZ = chunkZ;
+            event.owner = ClaimEvents.owner(claimStorage.getClaimOwner(world, chunkX, chunkZ));
+            event.player = playerId.toString();
+            event.required = required.name();
+            event.allowed = allowed;
+            event.commit();
+        }
+        return allowed;
+    }
+
+    private boolean resolvePermission(UUID playerId, String world, double x, double z, TrustLevel required) {
+        if (!claimStorage.isIndexLoaded()) {
+            // Fail closed: until the index is loaded every chunk looks unclaimed
+            NOT_READY.increment();
+            return false;
+        }
         int chunkX = ChunkUtil.toChunkX(x);
         int chunkZ = ChunkUtil.toChunkZ(z);
 
@@ -143,11 +213,83 @@ public class ClaimManager {
         return ownerClaims.hasPermission(playerId, required);
     }
 
+    /**
+     * Checks many block positions at once (explosions, builder tools, multi-block placement).
+     * Requires BUILD trust, like breaking or placing a block.
+     *
+     * @param packedBlocks Positions packed with {@link ChunkUtil#packBlock(int, int, int)}
+     * @return a bitset where bit i is set if the player is denied at packedBlocks[i]
+     */
+    public BitSet checkBatch(UUID playerId, String world, long[] packedBlocks) {
+        return checkBatch(playerId, world, packedBlocks, TrustLevel.BUILD);
+    }
+
+    /**
+     * Checks many block positions at once for the given trust level.
+     * Each distinct chunk, and each distinct owner, is resolved only once.
+     *
+     * Nothing in the plugin calls this yet; it is API for callers that touch many
+     * blocks in one action (explosions, builder tools, multi-block placement).
+     *
+     * @param packedBlocks Positions packed with {@link ChunkUtil#packBlock(int, int, int)}
+     * @return a bitset where bit i is set if the player is denied at packedBlocks[i]
+     */
+    public BitSet checkBatch(UUID playerId, String world, long[] packedBlocks, TrustLevel required) {
+        ClaimEvents.BulkClaimOperation event = new ClaimEvents.BulkClaimOperation();
+        event.begin();
+        BitSet denied = new BitSet(packedBlocks.length);
+        if (!claimStorage.isIndexLoaded()) {
+            NOT_READY.increment();
+            denied.set(0, packedBlocks.length);
+            return denied;
+        }
+        Long2BooleanOpenHashMap chunkDecisions = new Long2BooleanOpenHashMap();
+        Map<UUID, Boolean> ownerDecisions = new HashMap<>();
+
+        for (int i = 0; i < packedBlocks.length; i++) {
+            long packed = packedBlocks[i];
+            int chunkX = ChunkUtil.toChunkX(ChunkUtil.unpackX(packed));
+            int chunkZ = ChunkUtil.toChunkZ(ChunkUtil.unpackZ(packed));
+            long chunkIndex = indexChunk(chunkX, chunkZ);
+
+            boolean allowed;
+            if (chunkDecisions.containsKey(chunkIndex)) {
+                allowed = chunkDecisions.get(chunkIndex);
+            } else {
+                UUID owner = claimStorage.getClaimOwner(world, chunkX, chunkZ);
+                if (owner == null || owner.equals(playerId)) {
+                    allowed = true; // Unclaimed or owner
+                } else {
+                    allowed = ownerDecisions.computeIfAbsent(owner,
+                            o -> claimStorage.getPlayerClaims(o).hasPermission(playerId, required));
+                }
+                chunkDecisions.put(chunkIndex, allowed);
+            }
+
+            if (!allowed) {
+                denied.set(i);
+            }
+        }
+
+        if (event.shouldCommit()) {
+            event.operation = "check_batch";
+            event.world = world;
+            event.player = playerId.toString();
+            event.count = packedBlocks.length;
+            event.denied = denied.cardinality();
+            event.commit();
+        }
+        return denied;
+    }
+
     /**
      * Gets the trust level a player has at a location.
-     * @return BUILD if owner, the trust level if trusted, or NONE
+     * @return BUILD if owner, the trust level if trusted, or NONE (also while claims are loading)
      */
     public TrustLevel getTrustLevelAt(UUID playerId, String world, double x, double z) {
+        if (!claimStorage.isIndexLoaded()) {
+            return TrustLevel.NONE;
+        }
         int chunkX = ChunkUtil.toChunkX(x);
         int chunkZ = ChunkUtil.toChunkZ(z);
 
@@ -253,6 +395,7 @@ public class ClaimManager {
         ALREADY_OWN,
         CLAIMED_BY_OTHER,
         LIMIT_REACHED,
-        TOO_CLOSE_TO_OTHER_CLAIM
+        TOO_CLOSE_TO_OTHER_CLAIM,
+        NOT_READY
     }
 }
@@ -0,0 +1,494 @@
+package com.easyclaims.managers;
+
+import com.easyclaims.data.ClaimChangeListener;
+import com.easyclaims.data.ClaimStorage;
+import com.easyclaims.util.ChunkUtil;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of contiguous claim regions (claimed chunks connected through their edges).
+ *
+ * Every claimed chunk points at its region, so looking up the region of a chunk, and its
+ * bounds, size and owners, is a single map lookup. Claiming a chunk joins it to the regions
+ * next to it, moving the smaller regions' chunks into the largest one. Unclaiming a chunk
+ * only walks the region it was in, to find out whether it fell apart.
+ *
+ * Regions can either span owners (neighboring claims of different players form one region)
+ * or be split by owner, which is what the map markers use. A world is built from the claim
+ * index the first time it is queried and kept up to date through ClaimChangeListener.
+ */
+public class ClaimRegionTracker implements ClaimChangeListener {
+
+    private final ClaimStorage claimStorage;
+    private final boolean splitByOwner;
+    private final Map<String, WorldGraph> worlds = new ConcurrentHashMap<>();
+    // Shared by all worlds so a rebuilt world never repeats an old version
+    private final AtomicLong versions = new AtomicLong();
+    private final AtomicInteger regionIds = new AtomicInteger();
+
+    public ClaimRegionTracker(ClaimStorage claimStorage, boolean splitByOwner) {
+        this.claimStorage = claimStorage;
+        this.splitByOwner = splitByOwner;
+        claimStorage.addChangeListener(this);
+    }
+
+    /**
+     * Gets the region a chunk belongs to, or null if the chunk isn't claimed.
+     */
+    @Nullable
+    public Region getRegion(String world, int chunkX, int chunkZ) {
+        WorldGraph graph = getWorld(world);
+        synchronized (graph) {
+            MutableRegion region = graph.regionOf.get(pack(chunkX, chunkZ));
+            return region != null ? region.snapshot(world) : null;
+        }
+    }
+
+    /**
+     * Gets the id of the region a chunk belongs to, or -1 if the chunk isn't claimed.
+     * Ids are unique per tracker; a region keeps its id while it grows, and its largest
+     * part keeps it when it is split.
+     */
+    public int getRegionId(String world, int chunkX, int chunkZ) {
+        WorldGraph graph = getWorld(world);
+        synchronized (graph) {
+            MutableRegion region = graph.regionOf.get(pack(chunkX, chunkZ));
+            return region != null ? region.id : -1;
+        }
+    }
+
+    /**
+     * Gets all regions of a world.
+     */
+    public List<Region> getRegions(String world) {
+        WorldGraph graph = getWorld(world);
+        synchronized (graph) {
+            List<Region> result = new ArrayList<>(graph.regions.size());
+            for (MutableRegion region : graph.regions) {
+                result.add(region.snapshot(world));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Gets the chunks of the region a chunk belongs to, as {chunkX, chunkZ} pairs.
+     * Empty if the chunk isn't claimed.
+     */
+    public List<int[]> getRegionChunks(String world, int chunkX, int chunkZ) {
+        WorldGraph graph = getWorld(world);
+        synchronized (graph) {
+            MutableRegion region = graph.regionOf.get(pack(chunkX, chunkZ));
+            if (region == null) {
+                return Collections.emptyList();
+            }
+            List<int[]> result = new ArrayList<>(region.chunks.size());
+            LongIterator it = region.chunks.iterator();
+            while (it.hasNext()) {
+                long chunk = it.nextLong();
+                result.add(new int[] { unpackX(chunk), unpackZ(chunk) });
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Counter that changes whenever a region in the world changes, for callers that cache
+     * what they derived from the regions.
+     */
+    public long getVersion(String world) {
+        return getWorld(world).version;
+    }
+
+    /**
+     * Drops a world; it is rebuilt from the claim index on the next query.
+     */
+    public void invalidateWorld(String world) {
+        worlds.remove(world);
+    }
+
+    public void clear() {
+        worlds.clear();
+    }
+
+    @Override
+    public void onClaimsLoaded() {
+        clear();
+    }
+
+    @Override
+    public void onClaimAdded(String world, int chunkX, int chunkZ, UUID owner) {
+        // Worlds that were never queried are built from the index later
+        worlds.computeIfPresent(world, (k, graph) -> {
+            synchronized (graph) {
+                graph.add(pack(chunkX, chunkZ), owner);
+            }
+            return graph;
+        });
+    }
+
+    @Override
+    public void onClaimRemoved(String world, int chunkX, int chunkZ, UUID owner) {
+        worlds.computeIfPresent(world, (k, graph) -> {
+            synchronized (graph) {
+                graph.remove(pack(chunkX, chunkZ));
+            }
+            return graph;
+        });
+    }
+
+    private WorldGraph getWorld(String world) {
+        WorldGraph graph = worlds.get(world);
+        if (graph != null) {
+            return graph;
+        }
+        return worlds.computeIfAbsent(world, (k) -> {
+            WorldGraph built = new WorldGraph();
+            for (Map.Entry<String, UUID> entry : claimStorage.getClaimedChunksInWorld(k).entrySet()) {
+                int[] coords = ChunkUtil.parseChunkKey(entry.getKey());
+                if (coords != null) {
+                    built.add(pack(coords[0], coords[1]), entry.getValue());
+                }
+            }
+            return built;
+        });
+    }
+
+    private static long pack(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    private static int unpackX(long chunk) {
+        return (int) (chunk >> 32);
+    }
+
+    private static int unpackZ(long chunk) {
+        return (int) chunk;
+    }
+
+    /**
+     * Regions of one world. Guarded by itself.
+     */
+    private final class WorldGraph {
+        private final Long2ObjectOpenHashMap<MutableRegion> regionOf = new Long2ObjectOpenHashMap<>();
+        private final Long2ObjectOpenHashMap<UUID> owners = new Long2ObjectOpenHashMap<>();
+        private final Set<MutableRegion> regions = new HashSet<>();
+        private volatile long version = versions.incrementAndGet();
+
+        private void add(long chunk, UUID owner) {
+            UUID previous = owners.get(chunk);
+            if (owner.equals(previous)) {
+                return;
+            }
+            if (previous != null) {
+                remove(chunk);
+            }
+            owners.put(chunk, owner);
+
+            // Join the regions next to the chunk, keeping the largest
+            MutableRegion target = null;
+            List<MutableRegion> others = new ArrayList<>(4);
+            int x = unpackX(chunk);
+            int z = unpackZ(chunk);
+            long[] neighbors = { pack(x + 1, z), pack(x - 1, z), pack(x, z + 1), pack(x, z - 1) };
+            for (long neighbor : neighbors) {
+                MutableRegion region = connectedRegion(neighbor, owner);
+                if (region == null || region == target || others.contains(region)) {
+                    continue;
+                }
+                if (target == null || region.chunks.size() > target.chunks.size()) {
+                    if (target != null) {
+                        others.add(target);
+                    }
+                    target = region;
+                } else {
+                    others.add(region);
+                }
+            }
+            if (target == null) {
+                target = new MutableRegion(regionIds.getAndIncrement());
+                regions.add(target);
+            }
+
+            for (MutableRegion other : others) {
+                LongIterator it = other.chunks.iterator();
+                while (it.hasNext()) {
+                    long moved = it.nextLong();
+                    target.add(moved, owners.get(moved));
+                    regionOf.put(moved, target);
+                }
+                regions.remove(other);
+            }
+            target.add(chunk, owner);
+            regionOf.put(chunk, target);
+            version = versions.incrementAndGet();
+        }
+
+        private void remove(long chunk) {
+            UUID owner = owners.remove(chunk);
+            MutableRegion region = regionOf.remove(chunk);
+            if (owner == null || region == null) {
+                return;
+            }
+            version = versions.incrementAndGet();
+            region.remove(chunk, owner);
+            if (region.chunks.isEmpty()) {
+                regions.remove(region);
+                return;
+            }
+
+            // Only a chunk with two or more neighbors in the region can split it
+            int x = unpackX(chunk);
+            int z = unpackZ(chunk);
+            LongOpenHashSet starts = new LongOpenHashSet(4);
+            long[] neighbors = { pack(x + 1, z), pack(x - 1, z), pack(x, z + 1), pack(x, z - 1) };
+            for (long neighbor : neighbors) {
+                if (region.chunks.contains(neighbor)) {
+                    starts.add(neighbor);
+                }
+            }
+            if (starts.size() < 2) {
+                region.fixBounds(x, z);
+                return;
+            }
+
+            List<LongOpenHashSet> parts = new ArrayList<>();
+            LongOpenHashSet reached = new LongOpenHashSet();
+            int remaining = starts.size();
+            for (long start : neighbors) {
+                if (!starts.contains(start) || reached.contains(start)) {
+                    continue;
+                }
+                LongOpenHashSet part = flood(region, start);
+                for (long other : neighbors) {
+                    if (starts.contains(other) && part.contains(other)) {
+                        remaining--;
+                    }
+                }
+                if (parts.isEmpty() && remaining == 0) {
+                    // Still connected
+                    region.fixBounds(x, z);
+                    return;
+                }
+                reached.addAll(part);
+                parts.add(part);
+            }
+
+            // The largest part keeps the region (and its id), the others become new regions
+            LongOpenHashSet largest = parts.get(0);
+            for (LongOpenHashSet part : parts) {
+                if (part.size() > largest.size()) {
+                    largest = part;
+                }
+            }
+            for (LongOpenHashSet part : parts) {
+                if (part == largest) {
+                    continue;
+                }
+                MutableRegion split = new MutableRegion(regionIds.getAndIncrement());
+                LongIterator it = part.iterator();
+                while (it.hasNext()) {
+                    long moved = it.nextLong();
+                    UUID movedOwner = owners.get(moved);
+                    region.remove(moved, movedOwner);
+                    split.add(moved, movedOwner);
+                    regionOf.put(moved, split);
+                }
+                regions.add(split);
+            }
+            region.recomputeBounds();
+        }
+
+        /**
+         * Region of a chunk next to a chunk of the given owner, if they are connected.
+         */
+        @Nullable
+        private MutableRegion connectedRegion(long neighbor, UUID owner) {
+            MutableRegion region = regionOf.get(neighbor);
+            if (region == null || (splitByOwner && !owner.equals(owners.get(neighbor)))) {
+                return null;
+            }
+            return region;
+        }
+
+        /**
+         * Collects the chunks of a region connected to a start chunk.
+         */
+        private LongOpenHashSet flood(MutableRegion region, long start) {
+            LongOpenHashSet part = new LongOpenHashSet();
+            ArrayDeque<Long> queue = new ArrayDeque<>();
+            part.add(start);
+            queue.add(start);
+            while (!queue.isEmpty()) {
+                long chunk = queue.poll();
+                int x = unpackX(chunk);
+                int z = unpackZ(chunk);
+                visit(region, part, queue, pack(x + 1, z));
+                visit(region, part, queue, pack(x - 1, z));
+                visit(region, part, queue, pack(x, z + 1));
+                visit(region, part, queue, pack(x, z - 1));
+            }
+            return part;
+        }
+
+        private void visit(MutableRegion region, LongOpenHashSet part, ArrayDeque<Long> queue, long chunk) {
+            if (region.chunks.contains(chunk) && part.add(chunk)) {
+                queue.add(chunk);
+            }
+        }
+    }
+
+    /**
+     * Live state of a region; only touched while holding the world's lock.
+     */
+    private static final class MutableRegion {
+        private final int id;
+        private final LongOpenHashSet chunks = new LongOpenHashSet();
+        private final Map<UUID, Integer> ownerCounts = new HashMap<>();
+        private int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE;
+        private int minZ = Integer.MAX_VALUE, maxZ = Integer.MIN_VALUE;
+        private long sumX, sumZ;
+        // Cached until the region changes
+        private Region snapshot;
+
+        private MutableRegion(int id) {
+            this.id = id;
+        }
+
+        private void add(long chunk, UUID owner) {
+            if (!chunks.add(chunk)) {
+                return;
+            }
+            int x = unpackX(chunk);
+            int z = unpackZ(chunk);
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minZ = Math.min(minZ, z);
+            maxZ = Math.max(maxZ, z);
+            sumX += x;
+            sumZ += z;
+            ownerCounts.merge(owner, 1, Integer::sum);
+            snapshot = null;
+        }
+
+        /**
+         * Removes a chunk without fixing the bounds (see fixBounds/recomputeBounds).
+         */
+        private void remove(long chunk, UUID owner) {
+            if (!chunks.remove(chunk)) {
+                return;
+            }
+            sumX -= unpackX(chunk);
+            sumZ -= unpackZ(chunk);
+            ownerCounts.computeIfPresent(owner, (k, count) -> count > 1 ? count - 1 : null);
+            snapshot = null;
+        }
+
+        /**
+         * Fixes the bounds after removing a chunk; only needed if it was on the edge.
+         */
+        private void fixBounds(int removedX, int removedZ) {
+            if (removedX == minX || removedX == maxX || removedZ == minZ || removedZ == maxZ) {
+                recomputeBounds();
+            }
+        }
+
+        private void recomputeBounds() {
+            minX = Integer.MAX_VALUE;
+            maxX = Integer.MIN_VALUE;
+            minZ = Integer.MAX_VALUE;
+            maxZ = Integer.MIN_VALUE;
+            LongIterator it = chunks.iterator();
+            while (it.hasNext()) {
+                long chunk = it.nextLong();
+                int x = unpackX(chunk);
+                int z = unpackZ(chunk);
+                minX = Math.min(minX, x);
+                maxX = Math.max(maxX, x);
+                minZ = Math.min(minZ, z);
+                maxZ = Math.max(maxZ, z);
+            }
+            snapshot = null;
+        }
+
+        private Region snapshot(String world) {
+            if (snapshot == null) {
+                long center = centerChunk();
+                snapshot = new Region(id, world, minX, maxX, minZ, maxZ, chunks.size(),
+                        Collections.unmodifiableSet(new HashSet<>(ownerCounts.keySet())),
+                        unpackX(center), unpackZ(center));
+            }
+            return snapshot;
+        }
+
+        /**
+         * The chunk closest to the region's average position, so labels placed on it are
+         * inside the region even for L- or U-shaped regions. Ties go to the smallest chunk.
+         */
+        private long centerChunk() {
+            double centerX = (double) sumX / chunks.size();
+            double centerZ = (double) sumZ / chunks.size();
+            long best = 0;
+            double bestDistance = Double.MAX_VALUE;
+            LongIterator it = chunks.iterator();
+            while (it.hasNext()) {
+                long chunk = it.nextLong();
+                double dx = unpackX(chunk) - centerX;
+                double dz = unpackZ(chunk) - centerZ;
+                double distance = dx * dx + dz * dz;
+                if (distance < bestDistance || (distance == bestDistance && chunk < best)) {
+                    bestDistance = distance;
+                    best = chunk;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Snapshot of a region. Bounds are in chunk coordinates (inclusive).
+     */
+    public static final class Region {
+        public final int id;
+        public final String world;
+        public final int minChunkX, maxChunkX, minChunkZ, maxChunkZ;
+        public final int chunkCount;
+        public final Set<UUID> owners;
+        // A chunk of the region near its middle, e.g. for labels
+        public final int centerChunkX, centerChunkZ;
+
+        public Region(int id, String world, int minChunkX, int maxChunkX, int minChunkZ, int maxChunkZ,
+                      int chunkCount, Set<UUID> owners, int centerChunkX, int centerChunkZ) {
+            this.id = id;
+            this.world = world;
+            this.minChunkX = minChunkX;
+            this.maxChunkX = maxChunkX;
+            this.minChunkZ = minChunkZ;
+            this.maxChunkZ = maxChunkZ;
+            this.chunkCount = chunkCount;
+            this.owners = owners;
+            this.centerChunkX = centerChunkX;
+            this.centerChunkZ = centerChunkZ;
+        }
+
+        public boolean intersects(int minX, int maxX, int minZ, int maxZ) {
+            return maxChunkX >= minX && minChunkX <= maxX && maxChunkZ >= minZ && minChunkZ <= maxZ;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.easyclaims.map;
+
+import javax.annotation.Nullable;
+
+/**
+ * The chunk data map rendering reads: heights, block colors and fluids.
+ *
+ * The live renderer wraps a WorldChunk and its fluid sections (see WorldChunkSampleSource);
+ * anything else that can answer these questions, such as synthetic terrain in benchmarks,
+ * can be rendered with {@link MapTileRenderer} and {@link FluidSurfaceMap} the same way.
+ * Coordinates are local to the chunk.
+ */
+public interface ChunkSampleSource {
+
+    /**
+     * Y of the highest solid block in a column.
+     */
+    short getHeight(int x, int z);
+
+    /**
+     * Biome tint of a column, packed 0xRRGGBB.
+     */
+    int getTint(int x, int z);
+
+    int getBlock(int x, int y, int z);
+
+    int getEnvironment(int x, int y, int z);
+
+    /**
+     * Number of fluid sections, bottom to top.
+     */
+    int getFluidSectionCount();
+
+    /**
+     * A fluid section, or null if it holds no fluid.
+     */
+    @Nullable
+    Object getFluidSection(int sectionY);
+
+    /**
+     * Fluid at a block of a non-empty fluid section, 0 if none.
+     */
+    int getFluidId(int sectionY, int x, int y, int z);
+}
@@ -1,9 +1,9 @@
 package com.easyclaims.map;
 
 import java.awt.Color;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Generates unique, distinguishable colors for players based on their username.
@@ -15,8 +15,16 @@ public class ClaimColorGenerator {
     // Golden ratio conjugate for optimal hue distribution
     private static final double GOLDEN_RATIO_CONJUGATE = 0.618033988749895;
 
+    // Upper bound on cached username colors; colors are deterministic, so evicting is safe
+    private static final int MAX_CACHED_COLORS = 512;
+
     // Cache colors to ensure consistency
-    private static final Map<String, Color> colorCache = new ConcurrentHashMap<>();
+    private static final Map<String, Color> colorCache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Color> eldest) {
+            return size() > MAX_CACHED_COLORS;
+        }
+    };
 
     // Predefined distinct colors for the first few players (most visible)
     private static final Color[] PRESET_COLORS = {
@@ -39,17 +47,21 @@ public class ClaimColorGenerator {
             return Color.GRAY;
         }
 
-        return colorCache.computeIfAbsent(username.toLowerCase(), ClaimColorGenerator::generateColor);
+        synchronized (colorCache) {
+            return colorCache.computeIfAbsent(username.toLowerCase(), ClaimColorGenerator::generateColor);
+        }
     }
 
     /**
-     * Gets a unique color for a player based on their UUID.
+     * Gets the claim color of a player based on their UUID.
+     * Comes from {@link ClaimColorPalette}, so it may differ from the usual color if a
+     * neighboring claim has a similar one.
      */
     public static Color getPlayerColor(UUID playerId) {
         if (playerId == null) {
             return Color.GRAY;
         }
-        return colorCache.computeIfAbsent(playerId.toString(), ClaimColorGenerator::generateColor);
+        return new Color(ClaimColorPalette.getFill(playerId));
     }
 
     /**
@@ -84,6 +96,13 @@ public class ClaimColorGenerator {
         return (alpha << 24) | (color.getRed() << 16) | (color.getGreen() << 8) | color.getBlue();
     }
 
+    /**
+     * Generates the color for a key (username or UUID string), packed 0xRRGGBB.
+     */
+    static int generateRgb(String key) {
+        return generateColor(key).getRGB() & 0xFFFFFF;
+    }
+
     private static Color generateColor(String key) {
         // Use hash code to get a deterministic but well-distributed value
         int hash = betterHash(key);
@@ -127,6 +146,8 @@ public class ClaimColorGenerator {
      * Clears the color cache (useful if usernames change).
      */
     public static void clearCache() {
-        colorCache.clear();
+        synchronized (colorCache) {
+            colorCache.clear();
+        }
     }
 }
@@ -0,0 +1,338 @@
+package com.easyclaims.map;
+
+import com.easyclaims.data.Claim;
+import com.easyclaims.data.ClaimChangeListener;
+import com.easyclaims.data.ClaimStorage;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Claim colors per owner, as packed ints for the renderers.
+ *
+ * Every claim owner gets a small int id; fill and border colors are kept in arrays indexed
+ * by it, with id 0 standing for "unclaimed" (color 0), so a renderer can look up a color
+ * without checks. Ids are released when an owner's last claim is removed, which keeps the
+ * palette as large as the number of owners.
+ *
+ * Owners start with their usual color from {@link ClaimColorGenerator}. When two owners
+ * with claims next to each other get colors that are hard to tell apart, the owner with
+ * the larger UUID moves to the next candidate color. Owners are resolved in UUID order,
+ * so the result only depends on the claims, not on the order they were made in.
+ *
+ * Colors are picked without holding the lock, since that looks up the claims around each
+ * owner; the lock is only taken to publish them.
+ */
+public class ClaimColorPalette {
+
+    // Candidate colors tried per owner before settling for its usual one
+    private static final int MAX_CANDIDATES = 16;
+
+    // Squared RGB distance below which two colors count as the same on the map
+    private static final int MIN_DISTANCE_SQ = 64 * 64;
+
+    private static final Object lock = new Object();
+    private static final Map<UUID, Integer> ids = new ConcurrentHashMap<>();
+
+    // Indexed by id, guarded by lock; the color arrays are read without it
+    private static UUID[] owners = new UUID[16];
+    private static volatile boolean[] resolved = new boolean[16];
+    private static volatile int[] fills = new int[16];
+    private static volatile int[] borders = new int[16];
+    private static final ArrayDeque<Integer> freeIds = new ArrayDeque<>();
+    private static int nextId = 1;
+
+    @Nullable
+    private static ClaimStorage claimStorage;
+
+    public static void init(ClaimStorage storage) {
+        synchronized (lock) {
+            claimStorage = storage;
+            ids.clear();
+            Arrays.fill(owners, null);
+            Arrays.fill(resolved, false);
+            freeIds.clear();
+            nextId = 1;
+        }
+        storage.addChangeListener(new ClaimChangeListener() {
+            @Override
+            public void onClaimAdded(String world, int chunkX, int chunkZ, UUID owner) {
+                claimsChanged(world, chunkX, chunkZ, owner);
+            }
+
+            @Override
+            public void onClaimRemoved(String world, int chunkX, int chunkZ, UUID owner) {
+                claimsChanged(world, chunkX, chunkZ, owner);
+            }
+        });
+    }
+
+    /**
+     * Gets the palette id of a claim owner, or 0 for null (unclaimed).
+     */
+    public static int idOf(@Nullable UUID owner) {
+        if (owner == null) {
+            return 0;
+        }
+        Integer id = ids.get(owner);
+        if (id != null && resolved[id]) {
+            return id;
+        }
+        resolve(claimStorage, owner, false);
+        synchronized (lock) {
+            return intern(owner);
+        }
+    }
+
+    /**
+     * Fill color of an owner id, packed 0xRRGGBB (0 for id 0).
+     */
+    public static int getFill(int id) {
+        return fills[id];
+    }
+
+    /**
+     * Border color of an owner id, packed 0xRRGGBB (0 for id 0).
+     */
+    public static int getBorder(int id) {
+        return borders[id];
+    }
+
+    /**
+     * Fill color of an owner, packed 0xRRGGBB (0 if null).
+     */
+    public static int getFill(@Nullable UUID owner) {
+        return getFill(idOf(owner));
+    }
+
+    public static int size() {
+        return ids.size();
+    }
+
+    /**
+     * Re-resolves the owner of a changed chunk and the owners next to it. Owners whose color
+     * changes have their claims redrawn.
+     */
+    private static void claimsChanged(String world, int chunkX, int chunkZ, UUID owner) {
+        ClaimStorage storage = claimStorage;
+        if (storage == null) {
+            return;
+        }
+        TreeSet<UUID> pending = new TreeSet<>();
+        pending.add(owner);
+        addOwner(pending, storage.getClaimOwner(world, chunkX + 1, chunkZ));
+        addOwner(pending, storage.getClaimOwner(world, chunkX - 1, chunkZ));
+        addOwner(pending, storage.getClaimOwner(world, chunkX, chunkZ + 1));
+        addOwner(pending, storage.getClaimOwner(world, chunkX, chunkZ - 1));
+
+        if (storage.getPlayerClaims(owner).getClaimCount() == 0) {
+            synchronized (lock) {
+                release(owner);
+            }
+            pending.remove(owner);
+        }
+
+        // Ascending order: an owner only depends on neighbors with smaller UUIDs, so each
+        // is resolved at most once and changes only ripple towards larger ones
+        Set<UUID> recolored = new HashSet<>();
+        while (!pending.isEmpty()) {
+            UUID next = pending.pollFirst();
+            Integer id = ids.get(next);
+            if (id == null) {
+                continue; // Never drawn, resolved when it is
+            }
+            int before = fills[id];
+            Set<UUID> neighbors = resolve(storage, next, true);
+            if (fills[id] != before) {
+                recolored.add(next);
+                for (UUID neighbor : neighbors) {
+                    if (neighbor.compareTo(next) > 0) {
+                        pending.add(neighbor);
+                    }
+                }
+            }
+        }
+
+        for (UUID changed : recolored) {
+            for (Claim claim : storage.getPlayerClaims(changed).getClaims()) {
+                MapInvalidator.markChunk(claim.getWorld(), claim.getChunkX(), claim.getChunkZ());
+            }
+        }
+    }
+
+    private static void addOwner(Set<UUID> owners, @Nullable UUID owner) {
+        if (owner != null) {
+            owners.add(owner);
+        }
+    }
+
+    /**
+     * Picks the color of an owner, after those of the neighbors with smaller UUIDs that
+     * have none yet (and of their neighbors, and so on), then publishes them all.
+     * Must not hold the lock.
+     *
+     * @param refresh Pick the owner's color again even if it has one
+     * @return the owner's neighbors
+     */
+    private static Set<UUID> resolve(@Nullable ClaimStorage storage, UUID owner, boolean refresh) {
+        // Owners to pick a color for, with their neighbors, in ascending UUID order
+        TreeMap<UUID, Set<UUID>> unresolved = new TreeMap<>();
+        ArrayDeque<UUID> stack = new ArrayDeque<>();
+        stack.push(owner);
+        while (!stack.isEmpty()) {
+            UUID next = stack.pop();
+            if (unresolved.containsKey(next) || (isResolved(next) && !(refresh && next.equals(owner)))) {
+                continue;
+            }
+            Set<UUID> neighbors = storage != null ? neighborsOf(storage, next) : Set.of();
+            unresolved.put(next, neighbors);
+            for (UUID neighbor : neighbors) {
+                if (neighbor.compareTo(next) < 0) {
+                    stack.push(neighbor);
+                }
+            }
+        }
+
+        // Smaller UUIDs first, so every color an owner depends on is known when it is picked
+        Map<UUID, Integer> picked = new TreeMap<>();
+        for (Map.Entry<UUID, Set<UUID>> entry : unresolved.entrySet()) {
+            picked.put(entry.getKey(), pickColor(entry.getKey(), entry.getValue(), picked));
+        }
+
+        synchronized (lock) {
+            for (Map.Entry<UUID, Integer> entry : picked.entrySet()) {
+                UUID next = entry.getKey();
+                int id = intern(next);
+                if (resolved[id] && !(refresh && next.equals(owner))) {
+                    continue; // Published by another thread meanwhile
+                }
+                int color = entry.getValue();
+                fills[id] = color;
+                borders[id] = darker(darker(color));
+                resolved[id] = true;
+            }
+        }
+
+        Set<UUID> neighbors = unresolved.get(owner);
+        return neighbors != null ? neighbors : Set.of();
+    }
+
+    /**
+     * The first candidate color of an owner that stands out from its neighbors with smaller
+     * UUIDs, or its usual color if none does.
+     *
+     * @param picked Colors picked in this pass, for neighbors not published yet
+     */
+    private static int pickColor(UUID owner, Set<UUID> neighbors, Map<UUID, Integer> picked) {
+        for (int k = 0; k < MAX_CANDIDATES; ++k) {
+            int color = candidate(owner, k);
+            boolean distinct = true;
+            for (UUID neighbor : neighbors) {
+                // Smaller UUIDs keep their color, we move out of their way
+                if (neighbor.compareTo(owner) < 0 && isClose(color, colorOf(neighbor, picked))) {
+                    distinct = false;
+                    break;
+                }
+            }
+            if (distinct) {
+                return color;
+            }
+        }
+        return candidate(owner, 0);
+    }
+
+    private static int colorOf(UUID owner, Map<UUID, Integer> picked) {
+        Integer color = picked.get(owner);
+        if (color != null) {
+            return color;
+        }
+        Integer id = ids.get(owner);
+        return id != null ? fills[id] : 0;
+    }
+
+    private static boolean isResolved(UUID owner) {
+        Integer id = ids.get(owner);
+        return id != null && resolved[id];
+    }
+
+    private static int intern(UUID owner) {
+        Integer existing = ids.get(owner);
+        if (existing != null) {
+            return existing;
+        }
+        int id = !freeIds.isEmpty() ? freeIds.pop() : nextId++;
+        if (id >= owners.length) {
+            int length = owners.length * 2;
+            owners = Arrays.copyOf(owners, length);
+            resolved = Arrays.copyOf(resolved, length);
+            fills = Arrays.copyOf(fills, length);
+            borders = Arrays.copyOf(borders, length);
+        }
+        owners[id] = owner;
+        resolved[id] = false;
+        ids.put(owner, id);
+        return id;
+    }
+
+    private static void release(UUID owner) {
+        Integer id = ids.remove(owner);
+        if (id != null) {
+            owners[id] = null;
+            resolved[id] = false;
+            fills[id] = 0;
+            borders[id] = 0;
+            freeIds.push(id);
+        }
+    }
+
+    /**
+     * Owners of chunks sharing an edge with any of an owner's claims.
+     */
+    private static Set<UUID> neighborsOf(ClaimStorage storage, UUID owner) {
+        Set<UUID> neighbors = new HashSet<>();
+        for (Claim claim : storage.getPlayerClaims(owner).getClaims()) {
+            String world = claim.getWorld();
+            int x = claim.getChunkX();
+            int z = claim.getChunkZ();
+            addOwner(neighbors, storage.getClaimOwner(world, x + 1, z));
+            addOwner(neighbors, storage.getClaimOwner(world, x - 1, z));
+            addOwner(neighbors, storage.getClaimOwner(world, x, z + 1));
+            addOwner(neighbors, storage.getClaimOwner(world, x, z - 1));
+        }
+        neighbors.remove(owner);
+        return neighbors;
+    }
+
+    /**
+     * The k-th color choice for an owner; the first is its usual color.
+     */
+    private static int candidate(UUID owner, int k) {
+        String key = owner.toString();
+        return ClaimColorGenerator.generateRgb(k == 0 ? key : key + "#" + k);
+    }
+
+    private static boolean isClose(int a, int b) {
+        int dr = (a >> 16 & 255) - (b >> 16 & 255);
+        int dg = (a >> 8 & 255) - (b >> 8 & 255);
+        int db = (a & 255) - (b & 255);
+        return dr * dr + dg * dg + db * db < MIN_DISTANCE_SQ;
+    }
+
+    /**
+     * Same as {@link java.awt.Color#darker()} on a packed color.
+     */
+    private static int darker(int rgb) {
+        int r = Math.max((int) ((rgb >> 16 & 255) * 0.7), 0);
+        int g = Math.max((int) ((rgb >> 8 & 255) * 0.7), 0);
+        int b = Math.max((int) ((rgb & 255) * 0.7), 0);
+        return r << 16 | g << 8 | b;
+    }
+}
@@ -0,0 +1,608 @@
+package com.easyclaims.map;
+
+import com.easyclaims.data.ClaimStorage;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.math.util.ChunkUtil;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import javax.annotation.Nullable;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Exports the claim map of a world as a pyramid of PNG tiles, for slippy map viewers
+ * such as Leaflet (z/x/y.png, with a flat CRS).
+ *
+ * Works from the claim index and the stored terrain tiles (see {@link TerrainTileStore}),
+ * so it needs neither a running world nor the WorldMapManager and can also run offline
+ * through {@link #main}. Chunks without stored terrain are drawn flat if claimed and left
+ * transparent otherwise.
+ *
+ * At {@link #MAX_ZOOM} a tile covers 8x8 chunks at one pixel per block; every level below
+ * halves the scale, down to the level where the whole claimed area fits in 2x2 tiles. Only
+ * tiles containing claims are drawn.
+ *
+ * Tiles are rendered row by row on a worker pool, with a bounded number of tiles in flight,
+ * so memory does not grow with the size of the world. Exports are incremental: each tile's
+ * claim content is hashed into manifest.json, and only tiles whose hash changed (plus their
+ * parents on the lower levels) are written again.
+ */
+public class ClaimMapExporter {
+
+    public static final int TILE_SIZE = 256;
+
+    // Zoom level of the most detailed tiles, at one pixel per block
+    public static final int MAX_ZOOM = 8;
+
+    private static final int CHUNK_PIXELS = 32;
+    private static final int CHUNKS_PER_TILE = TILE_SIZE / CHUNK_PIXELS;
+
+    // Bumped when the drawing changes, so the next export redraws every tile
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String MANIFEST_FILE = "manifest.json";
+
+    private static final TerrainTile CLAIM_ONLY = TerrainLod.claimOnly(CHUNK_PIXELS, CHUNK_PIXELS);
+
+    private final ClaimStorage claimStorage;
+    private final Path outputDirectory;
+    private final int threads;
+    private final Gson gson;
+
+    @Nullable
+    private final HytaleLogger logger;
+
+    public ClaimMapExporter(ClaimStorage claimStorage, Path outputDirectory, int threads, @Nullable HytaleLogger logger) {
+        this.claimStorage = claimStorage;
+        this.outputDirectory = outputDirectory;
+        this.threads = Math.max(1, threads);
+        this.logger = logger;
+        this.gson = new GsonBuilder().setPrettyPrinting().create();
+    }
+
+    /**
+     * Exports every world that has claims.
+     */
+    public List<Result> exportAll() throws IOException {
+        List<Result> results = new ArrayList<>();
+        for (String worldName : new TreeSet<>(claimStorage.getWorlds())) {
+            results.add(export(worldName));
+        }
+        return results;
+    }
+
+    /**
+     * Exports one world into outputDirectory/&lt;world&gt;, updating a previous export.
+     */
+    public Result export(String worldName) throws IOException {
+        long start = System.currentTimeMillis();
+        Path worldDirectory = outputDirectory.resolve(sanitize(worldName));
+        Files.createDirectories(worldDirectory);
+        Manifest previous = readManifest(worldDirectory);
+
+        // Owner per chunk, and the tiles containing claims by row
+        Long2ObjectOpenHashMap<UUID> owners = new Long2ObjectOpenHashMap<>();
+        TreeMap<Integer, TreeSet<Integer>> rows = new TreeMap<>();
+        for (Map.Entry<String, UUID> entry : claimStorage.getClaimedChunksInWorld(worldName).entrySet()) {
+            int[] coords = com.easyclaims.util.ChunkUtil.parseChunkKey(entry.getKey());
+            if (coords == null) {
+                continue;
+            }
+            owners.put(ChunkUtil.indexChunk(coords[0], coords[1]), entry.getValue());
+            rows.computeIfAbsent(Math.floorDiv(coords[1], CHUNKS_PER_TILE), (k) -> new TreeSet<>())
+                    .add(Math.floorDiv(coords[0], CHUNKS_PER_TILE));
+        }
+
+        Manifest manifest = new Manifest();
+        manifest.world = worldName;
+        manifest.tileSize = TILE_SIZE;
+        manifest.chunksPerTile = CHUNKS_PER_TILE;
+        manifest.maxZoom = MAX_ZOOM;
+        manifest.tiles = new TreeMap<>();
+
+        int rendered = 0;
+        int unchanged = 0;
+        int removed = 0;
+        LongOpenHashSet dirty = new LongOpenHashSet();
+        // Every base tile, and below that every tile of the level being built
+        LongOpenHashSet present = new LongOpenHashSet();
+
+        try (WorkerPool pool = new WorkerPool(threads)) {
+            // Most detailed level, from the claims
+            for (Map.Entry<Integer, TreeSet<Integer>> row : rows.entrySet()) {
+                int tileY = row.getKey();
+                for (int tileX : row.getValue()) {
+                    String key = tileX + "," + tileY;
+                    String hash = hashTile(worldName, owners, tileX, tileY);
+                    manifest.tiles.put(key, hash);
+                    present.add(packTile(tileX, tileY));
+
+                    Path file = tilePath(worldDirectory, MAX_ZOOM, tileX, tileY);
+                    if (hash.equals(previous.tiles.get(key)) && Files.exists(file)) {
+                        unchanged++;
+                        continue;
+                    }
+                    dirty.add(packTile(tileX, tileY));
+                    rendered++;
+                    pool.submit(() -> writeTile(file, renderTile(worldName, owners, tileX, tileY)));
+                }
+            }
+
+            // Tiles whose claims are all gone
+            for (String key : previous.tiles.keySet()) {
+                if (manifest.tiles.containsKey(key)) {
+                    continue;
+                }
+                int[] coords = com.easyclaims.util.ChunkUtil.parseChunkKey(key);
+                if (coords != null) {
+                    Files.deleteIfExists(tilePath(worldDirectory, MAX_ZOOM, coords[0], coords[1]));
+                    dirty.add(packTile(coords[0], coords[1]));
+                    removed++;
+                }
+            }
+            pool.awaitAll();
+
+            // Lower levels, from the tiles above them. Levels the previous export didn't go
+            // down to have no tiles yet, so they are drawn in full.
+            manifest.minZoom = minZoom(rows);
+            for (int zoom = MAX_ZOOM - 1; zoom >= manifest.minZoom; --zoom) {
+                present = parentsOf(present);
+                dirty = zoom < previous.minZoom ? present : parentsOf(dirty);
+                for (LongIterator it = dirty.iterator(); it.hasNext(); ) {
+                    long tile = it.nextLong();
+                    int tileX = unpackX(tile);
+                    int tileY = unpackY(tile);
+                    int level = zoom;
+                    rendered++;
+                    pool.submit(() -> writeParentTile(worldDirectory, level, tileX, tileY));
+                }
+                pool.awaitAll();
+            }
+        }
+
+        // Levels a previous export went down to, now below the whole map
+        for (int zoom = 0; zoom < manifest.minZoom; ++zoom) {
+            deleteRecursively(worldDirectory.resolve(String.valueOf(zoom)));
+        }
+
+        manifest.exportedAt = System.currentTimeMillis();
+        writeManifest(worldDirectory, manifest);
+
+        Result result = new Result(worldName, worldDirectory, rendered, unchanged, removed,
+                manifest.minZoom, System.currentTimeMillis() - start);
+        if (logger != null) {
+            logger.atInfo().log("[MapExport] %s", result);
+        }
+        return result;
+    }
+
+    /**
+     * Hashes everything a base tile is drawn from: owners, their colors and borders, and
+     * the generation of the stored terrain.
+     */
+    private String hashTile(String worldName, Long2ObjectOpenHashMap<UUID> owners, int tileX, int tileY) {
+        long hash = 0xcbf29ce484222325L;
+        hash = mix(hash, FORMAT_VERSION);
+        for (int z = 0; z < CHUNKS_PER_TILE; ++z) {
+            for (int x = 0; x < CHUNKS_PER_TILE; ++x) {
+                int chunkX = tileX * CHUNKS_PER_TILE + x;
+                int chunkZ = tileY * CHUNKS_PER_TILE + z;
+                long index = ChunkUtil.indexChunk(chunkX, chunkZ);
+                UUID owner = owners.get(index);
+                if (owner != null) {
+                    hash = mix(hash, owner.getMostSignificantBits());
+                    hash = mix(hash, owner.getLeastSignificantBits());
+                    hash = mix(hash, ClaimColorPalette.getFill(ClaimColorPalette.idOf(owner)));
+                    hash = mix(hash, borderMask(owners, owner, chunkX, chunkZ));
+                } else {
+                    hash = mix(hash, 0);
+                }
+                hash = mix(hash, TerrainTileStore.getRenderedGeneration(worldName, index));
+            }
+        }
+        return Long.toHexString(hash);
+    }
+
+    private static long mix(long hash, long value) {
+        for (int i = 0; i < 8; ++i) {
+            hash ^= (value >>> (i * 8)) & 255;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Which sides of a claimed chunk border another owner: west, east, north, south.
+     */
+    private static int borderMask(Long2ObjectOpenHashMap<UUID> owners, UUID owner, int chunkX, int chunkZ) {
+        int mask = 0;
+        if (!owner.equals(owners.get(ChunkUtil.indexChunk(chunkX - 1, chunkZ)))) mask |= 1;
+        if (!owner.equals(owners.get(ChunkUtil.indexChunk(chunkX + 1, chunkZ)))) mask |= 2;
+        if (!owner.equals(owners.get(ChunkUtil.indexChunk(chunkX, chunkZ - 1)))) mask |= 4;
+        if (!owner.equals(owners.get(ChunkUtil.indexChunk(chunkX, chunkZ + 1)))) mask |= 8;
+        return mask;
+    }
+
+    /**
+     * Draws a base tile as ARGB pixels, each chunk the same way the world map draws it.
+     */
+    private int[] renderTile(String worldName, Long2ObjectOpenHashMap<UUID> owners, int tileX, int tileY) {
+        int[] pixels = new int[TILE_SIZE * TILE_SIZE];
+        int[] chunkPixels = new int[CHUNK_PIXELS * CHUNK_PIXELS];
+        UUID[] nearbyOwners = new UUID[4];
+
+        for (int z = 0; z < CHUNKS_PER_TILE; ++z) {
+            for (int x = 0; x < CHUNKS_PER_TILE; ++x) {
+                int chunkX = tileX * CHUNKS_PER_TILE + x;
+                int chunkZ = tileY * CHUNKS_PER_TILE + z;
+                long index = ChunkUtil.indexChunk(chunkX, chunkZ);
+                UUID owner = owners.get(index);
+                TerrainTile terrain = TerrainTileStore.load(worldName, index, CHUNK_PIXELS, CHUNK_PIXELS);
+                if (terrain == null) {
+                    if (owner == null) {
+                        continue; // Left transparent
+                    }
+                    terrain = CLAIM_ONLY;
+                }
+
+                nearbyOwners[0] = owners.get(ChunkUtil.indexChunk(chunkX, chunkZ + 1));
+                nearbyOwners[1] = owners.get(ChunkUtil.indexChunk(chunkX, chunkZ - 1));
+                nearbyOwners[2] = owners.get(ChunkUtil.indexChunk(chunkX + 1, chunkZ));
+                nearbyOwners[3] = owners.get(ChunkUtil.indexChunk(chunkX - 1, chunkZ));
+                MapTileRenderer.compositeClaim(terrain, owner, nearbyOwners, chunkPixels, CHUNK_PIXELS, CHUNK_PIXELS);
+
+                // The renderer writes RGBA, images want ARGB
+                for (int iz = 0; iz < CHUNK_PIXELS; ++iz) {
+                    int in = iz * CHUNK_PIXELS;
+                    int out = (z * CHUNK_PIXELS + iz) * TILE_SIZE + x * CHUNK_PIXELS;
+                    for (int ix = 0; ix < CHUNK_PIXELS; ++ix) {
+                        int rgba = chunkPixels[in + ix];
+                        pixels[out + ix] = rgba >>> 8 | rgba << 24;
+                    }
+                }
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Draws a tile of a lower level by scaling down the four tiles above it, or deletes it
+     * if none of them exist anymore.
+     */
+    private void writeParentTile(Path worldDirectory, int zoom, int tileX, int tileY) throws IOException {
+        int[] pixels = new int[TILE_SIZE * TILE_SIZE];
+        int[] child = new int[TILE_SIZE * TILE_SIZE];
+        int half = TILE_SIZE / 2;
+        boolean any = false;
+
+        for (int dy = 0; dy < 2; ++dy) {
+            for (int dx = 0; dx < 2; ++dx) {
+                Path file = tilePath(worldDirectory, zoom + 1, tileX * 2 + dx, tileY * 2 + dy);
+                if (!Files.exists(file)) {
+                    continue;
+                }
+                BufferedImage image = ImageIO.read(file.toFile());
+                if (image == null || image.getWidth() != TILE_SIZE || image.getHeight() != TILE_SIZE) {
+                    continue;
+                }
+                any = true;
+                image.getRGB(0, 0, TILE_SIZE, TILE_SIZE, child, 0, TILE_SIZE);
+
+                // 2x2 box filter, weighted by alpha so transparent pixels don't darken edges
+                for (int y = 0; y < half; ++y) {
+                    int out = (dy * half + y) * TILE_SIZE + dx * half;
+                    int in = y * 2 * TILE_SIZE;
+                    for (int x = 0; x < half; ++x, in += 2) {
+                        pixels[out + x] = average(child[in], child[in + 1], child[in + TILE_SIZE], child[in + TILE_SIZE + 1]);
+                    }
+                }
+            }
+        }
+
+        Path file = tilePath(worldDirectory, zoom, tileX, tileY);
+        if (any) {
+            writeTile(file, pixels);
+        } else {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static int average(int p0, int p1, int p2, int p3) {
+        int a = 0, r = 0, g = 0, b = 0;
+        for (int p : new int[] { p0, p1, p2, p3 }) {
+            int alpha = p >>> 24;
+            a += alpha;
+            r += (p >> 16 & 255) * alpha;
+            g += (p >> 8 & 255) * alpha;
+            b += (p & 255) * alpha;
+        }
+        if (a == 0) {
+            return 0;
+        }
+        return (a / 4) << 24 | (r / a) << 16 | (g / a) << 8 | (b / a);
+    }
+
+    /**
+     * Writes a tile through a temporary file, so a web server never serves half a PNG.
+     */
+    private static void writeTile(Path file, int[] pixels) throws IOException {
+        BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, TILE_SIZE, TILE_SIZE, pixels, 0, TILE_SIZE);
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        if (!ImageIO.write(image, "png", temp.toFile())) {
+            throw new IOException("No PNG writer available");
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * The lowest level at which all claimed tiles fit in 2x2 tiles (a single tile could
+     * take until level 0 when the claims straddle tile 0).
+     */
+    private static int minZoom(TreeMap<Integer, TreeSet<Integer>> rows) {
+        if (rows.isEmpty()) {
+            return MAX_ZOOM;
+        }
+        int minX = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        for (TreeSet<Integer> row : rows.values()) {
+            minX = Math.min(minX, row.first());
+            maxX = Math.max(maxX, row.last());
+        }
+        int minY = rows.firstKey();
+        int maxY = rows.lastKey();
+
+        int zoom = MAX_ZOOM;
+        while (zoom > 0 && (maxX - minX > 1 || maxY - minY > 1)) {
+            minX = Math.floorDiv(minX, 2);
+            maxX = Math.floorDiv(maxX, 2);
+            minY = Math.floorDiv(minY, 2);
+            maxY = Math.floorDiv(maxY, 2);
+            zoom--;
+        }
+        return zoom;
+    }
+
+    private static Path tilePath(Path worldDirectory, int zoom, int tileX, int tileY) {
+        return worldDirectory.resolve(String.valueOf(zoom)).resolve(String.valueOf(tileX)).resolve(tileY + ".png");
+    }
+
+    /**
+     * The tiles one level down that contain the given tiles.
+     */
+    private static LongOpenHashSet parentsOf(LongOpenHashSet tiles) {
+        LongOpenHashSet parents = new LongOpenHashSet();
+        for (LongIterator it = tiles.iterator(); it.hasNext(); ) {
+            long tile = it.nextLong();
+            parents.add(packTile(Math.floorDiv(unpackX(tile), 2), Math.floorDiv(unpackY(tile), 2)));
+        }
+        return parents;
+    }
+
+    private static long packTile(int tileX, int tileY) {
+        return (long) tileX << 32 | (tileY & 0xFFFFFFFFL);
+    }
+
+    private static int unpackX(long tile) {
+        return (int) (tile >> 32);
+    }
+
+    private static int unpackY(long tile) {
+        return (int) tile;
+    }
+
+    private Manifest readManifest(Path worldDirectory) {
+        Path file = worldDirectory.resolve(MANIFEST_FILE);
+        if (Files.exists(file)) {
+            try {
+                Manifest manifest = gson.fromJson(Files.readString(file), Manifest.class);
+                if (manifest != null && manifest.tiles != null && manifest.tileSize == TILE_SIZE
+                        && manifest.chunksPerTile == CHUNKS_PER_TILE && manifest.maxZoom == MAX_ZOOM) {
+                    return manifest;
+                }
+            } catch (Exception e) {
+                if (logger != null) {
+                    logger.atWarning().withCause(e).log("[MapExport] Failed to read %s, exporting all tiles", file);
+                }
+            }
+        }
+        // Nothing to compare against: every tile is drawn again
+        Manifest empty = new Manifest();
+        empty.tiles = new HashMap<>();
+        empty.minZoom = MAX_ZOOM;
+        return empty;
+    }
+
+    private void writeManifest(Path worldDirectory, Manifest manifest) throws IOException {
+        Path file = worldDirectory.resolve(MANIFEST_FILE);
+        Path temp = worldDirectory.resolve(MANIFEST_FILE + ".tmp");
+        Files.writeString(temp, gson.toJson(manifest));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static String sanitize(String worldName) {
+        return worldName.replaceAll("[^A-Za-z0-9_.-]", "_");
+    }
+
+    /**
+     * Exports claim maps without a running server.
+     * Usage: ClaimMapExporter &lt;pluginDataDir&gt; &lt;outputDir&gt; [--threads N] [world...]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: ClaimMapExporter <pluginDataDir> <outputDir> [--threads N] [world...]");
+            System.exit(1);
+        }
+        System.setProperty("java.awt.headless", "true");
+        Path dataDirectory = Paths.get(args[0]);
+        Path outputDirectory = Paths.get(args[1]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> worlds = new ArrayList<>();
+        for (int i = 2; i < args.length; ++i) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                worlds.add(args[i]);
+            }
+        }
+
+        ClaimStorage storage = new ClaimStorage(dataDirectory);
+        ClaimColorPalette.init(storage);
+        TerrainTileStore.init(dataDirectory, 0, null);
+        try {
+            ClaimMapExporter exporter = new ClaimMapExporter(storage, outputDirectory, threads, null);
+            List<Result> results = new ArrayList<>();
+            if (worlds.isEmpty()) {
+                results.addAll(exporter.exportAll());
+            } else {
+                for (String world : worlds) {
+                    results.add(exporter.export(world));
+                }
+            }
+            for (Result result : results) {
+                System.out.println(result);
+            }
+        } finally {
+            TerrainTileStore.close();
+        }
+    }
+
+    /**
+     * Outcome of exporting one world.
+     */
+    public static final class Result {
+        public final String worldName;
+        public final Path directory;
+        public final int tilesWritten;
+        public final int tilesUnchanged;
+        public final int tilesRemoved;
+        public final int minZoom;
+        public final long durationMs;
+
+        private Result(String worldName, Path directory, int tilesWritten, int tilesUnchanged,
+                       int tilesRemoved, int minZoom, long durationMs) {
+            this.worldName = worldName;
+            this.directory = directory;
+            this.tilesWritten = tilesWritten;
+            this.tilesUnchanged = tilesUnchanged;
+            this.tilesRemoved = tilesRemoved;
+            this.minZoom = minZoom;
+            this.durationMs = durationMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d tiles written, %d unchanged, %d removed, zoom %d-%d in %d ms (%s)",
+                    worldName, tilesWritten, tilesUnchanged, tilesRemoved, minZoom, MAX_ZOOM, durationMs, directory);
+        }
+    }
+
+    /**
+     * manifest.json: tile layout for viewers, and the hash of each base tile for the next export.
+     */
+    private static final class Manifest {
+        private String world;
+        private int tileSize;
+        private int chunksPerTile;
+        private int minZoom;
+        private int maxZoom;
+        private long exportedAt;
+        private Map<String, String> tiles;
+    }
+
+    private interface TileTask {
+        void run() throws IOException;
+    }
+
+    /**
+     * Fixed pool that blocks the submitter once a few tiles per thread are queued, so a
+     * large world doesn't turn into a queue of pending tiles.
+     */
+    private static final class WorkerPool implements AutoCloseable {
+        private final ExecutorService executor;
+        private final Semaphore permits;
+        private final int maxInFlight;
+        private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+        private WorkerPool(int threads) {
+            AtomicInteger counter = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(threads, (runnable) -> {
+                Thread thread = new Thread(runnable, "EasyClaims-MapExport-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.maxInFlight = threads * 2;
+            this.permits = new Semaphore(maxInFlight);
+        }
+
+        private void submit(TileTask task) throws IOException {
+            checkFailure();
+            permits.acquireUninterruptibly();
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        /**
+         * Waits until every submitted tile is done.
+         */
+        private void awaitAll() throws IOException {
+            permits.acquireUninterruptibly(maxInFlight);
+            permits.release(maxInFlight);
+            checkFailure();
+        }
+
+        private void checkFailure() throws IOException {
+            Exception e = failure.get();
+            if (e != null) {
+                throw e instanceof IOException io ? io : new IOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            executor.shutdownNow();
+        }
+    }
+}
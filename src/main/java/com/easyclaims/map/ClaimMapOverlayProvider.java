@@ -1,6 +1,7 @@
 package com.easyclaims.map;
 
 import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.math.vector.Vector3d;
 import com.hypixel.hytale.protocol.Transform;
 import com.hypixel.hytale.protocol.packets.worldmap.MapMarker;
 import com.hypixel.hytale.server.core.asset.type.gameplay.GameplayConfig;
@@ -9,42 +10,68 @@ import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.WorldMapTracker;
 import com.hypixel.hytale.server.core.universe.world.worldmap.WorldMapManager;
 import com.easyclaims.data.ClaimStorage;
+import com.easyclaims.managers.ClaimRegionTracker;
 import com.easyclaims.util.ChunkUtil;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Provides claim overlay visualization on the world map.
+ * Provides claim markers on the world map.
  * Implements WorldMapManager.MarkerProvider to integrate with Hytale's map system.
  *
- * This provider:
- * 1. Sends colored overlays for claimed chunks
- * 2. Adds markers at claim centers with owner names
- * 3. Uses unique colors per player for easy identification
+ * Claims are grouped into regions (connected chunks of one owner, see ClaimRegionTracker)
+ * and each region gets a single marker with the owner's name. Markers are only recreated
+ * for regions that changed.
+ *
+ * Every player keeps the list of markers in their view, so an update normally just offers
+ * the same markers again without any lookups or allocations. The list is only recomputed
+ * when the player moves to another chunk or the regions change. Which markers the client
+ * already has is left to the WorldMapTracker, which only sends new ones.
  */
 public class ClaimMapOverlayProvider implements WorldMapManager.MarkerProvider {
 
     private final ClaimStorage claimStorage;
     private final HytaleLogger logger;
 
-    // Track which chunks we've already sent overlays for per player
-    private final Map<UUID, Set<String>> sentOverlays = new ConcurrentHashMap<>();
-
-    // View radius in chunks for sending overlays
+    // View radius in chunks for sending markers
     private static final int VIEW_RADIUS = 100;
 
+    // viewRadius passed to the tracker; large so markers stay visible
+    private static final float MARKER_VIEW_RADIUS = 100.0f;
+
+    // Markers sit on the flat map, so their height doesn't matter
+    private static final double MARKER_Y = 0;
+
+    // Only called when the tracker actually sends a marker
+    private static final WorldMapTracker.MarkerFactory<Vector3d> MARKER_FACTORY = (id, name, pos) -> {
+        // Create the Transform using the same pattern as SpawnMarkerProvider
+        com.hypixel.hytale.math.vector.Transform mathTransform = new com.hypixel.hytale.math.vector.Transform(pos);
+        Transform protoTransform = com.hypixel.hytale.server.core.util.PositionUtil.toTransformPacket(mathTransform);
+
+        // Use "Spawn.png" as a known working marker icon, null for context menu
+        return new MapMarker(id, name, "Spawn.png", protoTransform, null);
+    };
+
+    // Regions split by owner, since each marker names one owner
+    private final ClaimRegionTracker regionTracker;
+
+    private final Map<String, WorldMarkers> markersByWorld = new ConcurrentHashMap<>();
+
+    // Markers currently shown to each player
+    private final Map<UUID, PlayerMarkers> sentOverlays = new ConcurrentHashMap<>();
+
     // Debug: only log once per player to avoid spam
     private final Map<UUID, Boolean> hasLoggedDebug = new ConcurrentHashMap<>();
 
     public ClaimMapOverlayProvider(ClaimStorage claimStorage, HytaleLogger logger) {
         this.claimStorage = claimStorage;
         this.logger = logger;
+        this.regionTracker = new ClaimRegionTracker(claimStorage, true);
     }
 
     @Override
@@ -61,159 +88,98 @@ public class ClaimMapOverlayProvider implements WorldMapManager.MarkerProvider {
             int playerChunkX = ChunkUtil.toChunkX(centerX);
             int playerChunkZ = ChunkUtil.toChunkZ(centerZ);
 
-            // Calculate view bounds
-            int minChunkX = playerChunkX - VIEW_RADIUS;
-            int maxChunkX = playerChunkX + VIEW_RADIUS;
-            int minChunkZ = playerChunkZ - VIEW_RADIUS;
-            int maxChunkZ = playerChunkZ + VIEW_RADIUS;
-
-            // Get all claims in the visible area
-            Map<String, UUID> worldClaims = claimStorage.getClaimedChunksInWorld(worldName);
-
-            // Debug logging (once per player)
-            if (logger != null && !hasLoggedDebug.getOrDefault(playerId, false)) {
-                hasLoggedDebug.put(playerId, true);
-                logger.atWarning().log("[ClaimMap] DEBUG: centerX=%d, centerY=%d, centerZ=%d, playerChunk=(%d,%d), worldClaims=%d",
-                    centerX, centerY, centerZ, playerChunkX, playerChunkZ, worldClaims.size());
+            WorldMarkers worldMarkers = getMarkers(worldName);
+            PlayerMarkers markers = sentOverlays.computeIfAbsent(playerId, (k) -> new PlayerMarkers());
+            if (!markers.isCurrent(worldName, worldMarkers.version, playerChunkX, playerChunkZ)) {
+                updateVisible(markers, worldMarkers, worldName, playerId, playerChunkX, playerChunkZ);
             }
 
-            if (worldClaims.isEmpty()) {
-                return;
+            // The tracker only sends markers the client doesn't have yet, and drops the
+            // ones that are no longer offered, so every visible marker is offered each time
+            for (RegionMarker marker : markers.visible) {
+                String displayName = marker.owner.equals(playerId) ? "Your Claim" : marker.displayName;
+                tracker.trySendMarker(
+                    centerX, centerY, centerZ,
+                    marker.position,
+                    MARKER_VIEW_RADIUS,
+                    marker.id,
+                    displayName,
+                    marker.position,
+                    MARKER_FACTORY
+                );
             }
-
-            // Collect claims that need markers
-            Map<UUID, List<int[]>> ownerClaimChunks = new HashMap<>();
-            int foundClaims = 0;
-
-            for (int cx = minChunkX; cx <= maxChunkX; cx++) {
-                for (int cz = minChunkZ; cz <= maxChunkZ; cz++) {
-                    String chunkKey = ChunkUtil.chunkKey(cx, cz);
-                    UUID ownerId = worldClaims.get(chunkKey);
-
-                    if (ownerId != null) {
-                        foundClaims++;
-                        // Track for marker placement
-                        ownerClaimChunks.computeIfAbsent(ownerId, k -> new ArrayList<>())
-                                       .add(new int[]{cx, cz});
-                    }
-                }
+        } catch (Exception e) {
+            if (logger != null) {
+                logger.atWarning().withCause(e).log("Error in ClaimMapOverlayProvider.update");
             }
+        }
+    }
 
-            if (logger != null && foundClaims > 0 && !hasLoggedDebug.getOrDefault(playerId, false)) {
-                logger.atWarning().log("[ClaimMap] DEBUG: Found %d claims in view for %d owners", foundClaims, ownerClaimChunks.size());
+    /**
+     * Recomputes the markers in a player's view. Which of them the client already has is
+     * tracked by the WorldMapTracker, not here.
+     */
+    private void updateVisible(PlayerMarkers markers, WorldMarkers worldMarkers, String worldName,
+                               UUID playerId, int playerChunkX, int playerChunkZ) {
+        int minChunkX = playerChunkX - VIEW_RADIUS;
+        int maxChunkX = playerChunkX + VIEW_RADIUS;
+        int minChunkZ = playerChunkZ - VIEW_RADIUS;
+        int maxChunkZ = playerChunkZ + VIEW_RADIUS;
+
+        List<RegionMarker> visible = new ArrayList<>();
+        for (RegionMarker marker : worldMarkers.markers) {
+            if (marker.region.intersects(minChunkX, maxChunkX, minChunkZ, maxChunkZ)) {
+                visible.add(marker);
             }
+        }
+        int previousCount = markers.visible.size();
 
-            // Create center markers for each owner's claims in view
-            for (Map.Entry<UUID, List<int[]>> entry : ownerClaimChunks.entrySet()) {
-                UUID ownerId = entry.getKey();
-                List<int[]> chunks = entry.getValue();
-                String ownerName = claimStorage.getPlayerName(ownerId);
-
-                // Find center of this owner's visible claims
-                int sumX = 0, sumZ = 0;
-                for (int[] chunk : chunks) {
-                    sumX += chunk[0];
-                    sumZ += chunk[1];
-                }
-                int centerChunkX = sumX / chunks.size();
-                int centerChunkZ = sumZ / chunks.size();
-
-                // Convert to block coordinates (center of chunk)
-                double markerX = (centerChunkX * 16) + 8;
-                double markerZ = (centerChunkZ * 16) + 8;
-
-                // Create marker ID unique to this owner in this area
-                String markerId = "claim_" + ownerId.toString().substring(0, 8) + "_" + centerChunkX + "_" + centerChunkZ;
-
-                // Determine display name
-                String displayName = ownerName + "'s Claim";
-                if (ownerId.equals(playerId)) {
-                    displayName = "Your Claim";
-                }
-
-                // Use the factory-based trySendMarker like built-in providers do
-                // Parameters: centerX, centerY, centerZ, position, viewRadius, markerId, markerName, data, factory
-                com.hypixel.hytale.math.vector.Vector3d markerPos = new com.hypixel.hytale.math.vector.Vector3d(markerX, centerY, markerZ);
-
-                // viewRadius controls how far the marker is visible - use a large value
-                float viewRadius = 100.0f;
-
-                final String finalDisplayName = displayName;
-                tracker.trySendMarker(
-                    centerX, centerY, centerZ,
-                    markerPos,
-                    viewRadius,
-                    markerId,
-                    finalDisplayName,
-                    markerPos,
-                    (id, name, pos) -> {
-                        // Create the Transform using the same pattern as SpawnMarkerProvider
-                        com.hypixel.hytale.math.vector.Transform mathTransform =
-                            new com.hypixel.hytale.math.vector.Transform(pos);
-                        Transform protoTransform = com.hypixel.hytale.server.core.util.PositionUtil.toTransformPacket(mathTransform);
-
-                        // Use "Spawn.png" as a known working marker icon, null for context menu
-                        return new MapMarker(id, name, "Spawn.png", protoTransform, null);
-                    }
-                );
-            }
+        markers.worldName = worldName;
+        markers.version = worldMarkers.version;
+        markers.chunkX = playerChunkX;
+        markers.chunkZ = playerChunkZ;
+        markers.visible = visible;
 
-            // Send corner markers for each claimed chunk to outline the boundaries
-            for (Map.Entry<UUID, List<int[]>> entry : ownerClaimChunks.entrySet()) {
-                UUID ownerId = entry.getKey();
-                List<int[]> chunks = entry.getValue();
-                String ownerName = claimStorage.getPlayerName(ownerId);
-
-                for (int[] chunk : chunks) {
-                    int cx = chunk[0];
-                    int cz = chunk[1];
-
-                    // Create markers at all 4 corners of this chunk
-                    // Chunk is 16 blocks, so corners are at (cx*16, cz*16) to (cx*16+15, cz*16+15)
-                    int blockX = cx * 16;
-                    int blockZ = cz * 16;
-
-                    // Send corner markers
-                    String[] cornerNames = {"NW", "NE", "SW", "SE"};
-                    int[][] corners = {
-                        {blockX, blockZ},           // NW corner
-                        {blockX + 15, blockZ},      // NE corner
-                        {blockX, blockZ + 15},      // SW corner
-                        {blockX + 15, blockZ + 15}  // SE corner
-                    };
-
-                    for (int i = 0; i < 4; i++) {
-                        String cornerMarkerId = "claim_corner_" + cx + "_" + cz + "_" + cornerNames[i];
-                        String cornerDisplayName = ownerName + "'s Claim";
-
-                        com.hypixel.hytale.math.vector.Vector3d cornerPos =
-                            new com.hypixel.hytale.math.vector.Vector3d(corners[i][0], centerY, corners[i][1]);
-
-                        float cornerViewRadius = 100.0f;
-
-                        tracker.trySendMarker(
-                            centerX, centerY, centerZ,
-                            cornerPos,
-                            cornerViewRadius,
-                            cornerMarkerId,
-                            cornerDisplayName,
-                            cornerPos,
-                            (id, name, pos) -> {
-                                com.hypixel.hytale.math.vector.Transform mathTransform =
-                                    new com.hypixel.hytale.math.vector.Transform(pos);
-                                Transform protoTransform = com.hypixel.hytale.server.core.util.PositionUtil.toTransformPacket(mathTransform);
-                                return new MapMarker(id, name, "Spawn.png", protoTransform, null);
-                            }
-                        );
-                    }
-                }
+        if (logger != null) {
+            if (!hasLoggedDebug.getOrDefault(playerId, false)) {
+                hasLoggedDebug.put(playerId, true);
+                logger.atFine().log("[ClaimMap] playerChunk=(%d,%d), regions in view=%d", playerChunkX, playerChunkZ, visible.size());
+            } else if (visible.size() != previousCount) {
+                logger.atFine().log("[ClaimMap] Markers in view for %s: %d -> %d", playerId, previousCount, visible.size());
             }
+        }
+    }
 
-        } catch (Exception e) {
-            if (logger != null) {
-                logger.atWarning().withCause(e).log("Error in ClaimMapOverlayProvider.update");
+    /**
+     * Gets the markers of a world, recreating those of regions that changed.
+     */
+    private WorldMarkers getMarkers(String worldName) {
+        long version = regionTracker.getVersion(worldName);
+        WorldMarkers current = markersByWorld.get(worldName);
+        if (current != null && current.version == version) {
+            return current;
+        }
+
+        // Unchanged regions keep their snapshot, and so their marker
+        Map<ClaimRegionTracker.Region, RegionMarker> previous = new IdentityHashMap<>();
+        if (current != null) {
+            for (RegionMarker marker : current.markers) {
+                previous.put(marker.region, marker);
+            }
+        }
+        List<RegionMarker> markers = new ArrayList<>();
+        for (ClaimRegionTracker.Region region : regionTracker.getRegions(worldName)) {
+            RegionMarker marker = previous.get(region);
+            if (marker == null) {
+                UUID owner = region.owners.iterator().next();
+                marker = new RegionMarker(region, owner, claimStorage.getPlayerName(owner) + "'s Claim");
             }
+            markers.add(marker);
         }
+
+        WorldMarkers updated = new WorldMarkers(version, markers);
+        markersByWorld.put(worldName, updated);
+        return updated;
     }
 
     /**
@@ -221,6 +187,7 @@ public class ClaimMapOverlayProvider implements WorldMapManager.MarkerProvider {
      */
     public void clearPlayerCache(UUID playerId) {
         sentOverlays.remove(playerId);
+        hasLoggedDebug.remove(playerId);
     }
 
     /**
@@ -228,30 +195,76 @@ public class ClaimMapOverlayProvider implements WorldMapManager.MarkerProvider {
      */
     public void clearAllCaches() {
         sentOverlays.clear();
+        markersByWorld.clear();
+        regionTracker.clear();
     }
 
     /**
-     * Invalidates cached overlays for specific chunks (call when claims change).
+     * Invalidates markers for specific chunks (call when claims change without going
+     * through ClaimStorage). The world's regions are rebuilt on the next update.
      */
     public void invalidateChunks(String world, int... chunkCoords) {
-        for (int i = 0; i < chunkCoords.length; i += 2) {
-            String chunkKey = ChunkUtil.chunkKey(chunkCoords[i], chunkCoords[i + 1]);
-            String overlayKey = world + ":" + chunkKey;
-
-            // Remove from all player caches so it gets resent
-            for (Set<String> cache : sentOverlays.values()) {
-                cache.remove(overlayKey);
-            }
+        if (chunkCoords.length > 0) {
+            invalidateWorld(world);
         }
     }
 
     /**
-     * Invalidates all cached overlays for a world.
+     * Drops the regions of a world; they are rebuilt from ClaimStorage on the next update.
      */
     public void invalidateWorld(String world) {
-        String prefix = world + ":";
-        for (Set<String> cache : sentOverlays.values()) {
-            cache.removeIf(key -> key.startsWith(prefix));
+        regionTracker.invalidateWorld(world);
+        markersByWorld.remove(world);
+    }
+
+    /**
+     * The markers of a world, for one version of its regions.
+     */
+    private static final class WorldMarkers {
+        private final long version;
+        private final List<RegionMarker> markers;
+
+        private WorldMarkers(long version, List<RegionMarker> markers) {
+            this.version = version;
+            this.markers = markers;
+        }
+    }
+
+    /**
+     * One marker for a connected region of an owner's claims.
+     */
+    private static final class RegionMarker {
+        private final ClaimRegionTracker.Region region;
+        private final UUID owner;
+        private final String id;
+        private final String displayName;
+        private final Vector3d position;
+
+        private RegionMarker(ClaimRegionTracker.Region region, UUID owner, String displayName) {
+            this.region = region;
+            this.owner = owner;
+            this.id = "claim_" + owner.toString().substring(0, 8) + "_" + region.centerChunkX + "_" + region.centerChunkZ;
+            this.displayName = displayName;
+            // Center of the region's center chunk in block coordinates
+            this.position = new Vector3d(
+                    ChunkUtil.getChunkMinX(region.centerChunkX) + ChunkUtil.CHUNK_SIZE / 2.0,
+                    MARKER_Y,
+                    ChunkUtil.getChunkMinZ(region.centerChunkZ) + ChunkUtil.CHUNK_SIZE / 2.0);
+        }
+    }
+
+    /**
+     * The markers shown to one player and where they were computed.
+     */
+    private static final class PlayerMarkers {
+        private String worldName;
+        private long version = -1;
+        private int chunkX, chunkZ;
+        private List<RegionMarker> visible = List.of();
+
+        private boolean isCurrent(String worldName, long version, int chunkX, int chunkZ) {
+            return worldName.equals(this.worldName) && version == this.version
+                    && chunkX == this.chunkX && chunkZ == this.chunkZ;
         }
     }
 }
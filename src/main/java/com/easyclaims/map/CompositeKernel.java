@@ -0,0 +1,225 @@
+package com.easyclaims.map;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Per-row pixel math for map tiles: claim tint, shading, fluid tint and packing,
+ * plus the alpha blend used by {@link MapImageCompositor}.
+ *
+ * This class is the scalar implementation. When the server runs with
+ * {@code --add-modules jdk.incubator.vector}, {@link #init} switches to a SIMD
+ * version that processes whole rows with the Vector API. Before it is used, the
+ * SIMD version is checked pixel by pixel against this one on random input, and
+ * rejected if anything differs.
+ */
+public class CompositeKernel {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNEL_CLASS = "com.easyclaims.map.VectorCompositeKernel";
+
+    private static volatile CompositeKernel instance = new CompositeKernel();
+
+    /**
+     * Selects the kernel. Called during plugin startup.
+     *
+     * @param allowVector Whether the Vector API kernel may be used if available
+     */
+    public static void init(boolean allowVector, @Nullable HytaleLogger logger) {
+        CompositeKernel scalar = new CompositeKernel();
+        instance = scalar;
+        if (!allowVector) {
+            return;
+        }
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            if (logger != null) {
+                logger.atInfo().log("[Map] Using scalar map renderer (start the server with --add-modules %s for SIMD)", VECTOR_MODULE);
+            }
+            return;
+        }
+
+        try {
+            // Loaded by name so the incubator classes are only linked when the module is present
+            CompositeKernel vector = (CompositeKernel) Class.forName(VECTOR_KERNEL_CLASS)
+                    .getDeclaredConstructor().newInstance();
+            String mismatch = selfCheck(scalar, vector);
+            if (mismatch != null) {
+                if (logger != null) {
+                    logger.atWarning().log("[Map] SIMD map renderer disabled, output differs from scalar: %s", mismatch);
+                }
+                return;
+            }
+            instance = vector;
+            if (logger != null) {
+                logger.atInfo().log("[Map] Using SIMD map renderer (%s)", vector.describe());
+            }
+        } catch (ClassNotFoundException e) {
+            if (logger != null) {
+                logger.atInfo().log("[Map] Using scalar map renderer (this jar was built without -Psimd)");
+            }
+        } catch (Throwable e) {
+            if (logger != null) {
+                logger.atWarning().withCause(e).log("[Map] Could not load SIMD map renderer, using scalar");
+            }
+        }
+    }
+
+    public static CompositeKernel get() {
+        return instance;
+    }
+
+    public String describe() {
+        return "scalar";
+    }
+
+    /**
+     * Composites one row of a map tile into packed RGBA pixels.
+     *
+     * @param base       Unshaded terrain color per pixel, 0xRRGGBB
+     * @param blend      How strongly the claim color is mixed in per pixel (0 = unclaimed)
+     * @param claimColor Claim color, 0xRRGGBB
+     * @param shades     Lighting multipliers, read from shadeOffset
+     * @param fluidTints Fluid tint per pixel 0xRRGGBB, or null if the row has no fluid
+     * @param fluidMix   How much terrain shows through the fluid per pixel (1 = no fluid)
+     * @param out        Output pixels, written from outOffset
+     */
+    public void compositeRow(int[] base, float[] blend, int claimColor, float[] shades, int shadeOffset,
+                             @Nullable int[] fluidTints, @Nullable float[] fluidMix,
+                             int[] out, int outOffset, int length) {
+        compositeRange(base, blend, claimColor, shades, shadeOffset, fluidTints, fluidMix, out, outOffset, 0, length);
+    }
+
+    /**
+     * Scalar loop over part of a row, also used for the tail of the SIMD loop.
+     */
+    protected final void compositeRange(int[] base, float[] blend, int claimColor, float[] shades, int shadeOffset,
+                                        @Nullable int[] fluidTints, @Nullable float[] fluidMix,
+                                        int[] out, int outOffset, int from, int to) {
+        int claimR = claimColor >> 16 & 255;
+        int claimG = claimColor >> 8 & 255;
+        int claimB = claimColor & 255;
+
+        for (int i = from; i < to; ++i) {
+            int color = base[i];
+            int r = color >> 16 & 255;
+            int g = color >> 8 & 255;
+            int b = color & 255;
+
+            // Claim tint
+            float blendFactor = blend[i];
+            if (blendFactor != 0.0F) {
+                r = (int) (r * (1 - blendFactor) + claimR * blendFactor);
+                g = (int) (g * (1 - blendFactor) + claimG * blendFactor);
+                b = (int) (b * (1 - blendFactor) + claimB * blendFactor);
+            }
+
+            // Lighting/shading
+            float shade = shades[shadeOffset + i];
+            r = Math.min(255, Math.max(0, (int) ((float) r * shade)));
+            g = Math.min(255, Math.max(0, (int) ((float) g * shade)));
+            b = Math.min(255, Math.max(0, (int) ((float) b * shade)));
+
+            // Fluid tinting
+            if (fluidTints != null) {
+                int fluidTint = fluidTints[i];
+                float depthMultiplier = fluidMix[i];
+                int tintColorR = fluidTint >> 16 & 255;
+                int tintColorG = fluidTint >> 8 & 255;
+                int tintColorB = fluidTint & 255;
+                r = (int) ((float) tintColorR + (float) ((r & 255) - tintColorR) * depthMultiplier) & 255;
+                g = (int) ((float) tintColorG + (float) ((g & 255) - tintColorG) * depthMultiplier) & 255;
+                b = (int) ((float) tintColorB + (float) ((b & 255) - tintColorB) * depthMultiplier) & 255;
+            }
+
+            out[outOffset + i] = (r & 255) << 24 | (g & 255) << 16 | (b & 255) << 8 | 255;
+        }
+    }
+
+    /**
+     * Alpha-blends an ARGB overlay color over a run of ARGB pixels.
+     */
+    public void blendRow(int[] base, int baseOffset, int overlay, int[] out, int outOffset, int length) {
+        blendRange(base, baseOffset, overlay, out, outOffset, 0, length);
+    }
+
+    protected final void blendRange(int[] base, int baseOffset, int overlay, int[] out, int outOffset, int from, int to) {
+        int overlayA = (overlay >> 24) & 0xFF;
+        int overlayR = (overlay >> 16) & 0xFF;
+        int overlayG = (overlay >> 8) & 0xFF;
+        int overlayB = overlay & 0xFF;
+        float alpha = overlayA / 255f;
+        float invAlpha = 1f - alpha;
+
+        for (int i = from; i < to; ++i) {
+            int pixel = base[baseOffset + i];
+            int baseA = (pixel >> 24) & 0xFF;
+            int baseR = (pixel >> 16) & 0xFF;
+            int baseG = (pixel >> 8) & 0xFF;
+            int baseB = pixel & 0xFF;
+
+            int resultR = (int) (overlayR * alpha + baseR * invAlpha);
+            int resultG = (int) (overlayG * alpha + baseG * invAlpha);
+            int resultB = (int) (overlayB * alpha + baseB * invAlpha);
+            int resultA = Math.max(baseA, overlayA);
+
+            out[outOffset + i] = (resultA << 24) | (resultR << 16) | (resultG << 8) | resultB;
+        }
+    }
+
+    /**
+     * Runs both kernels on the same random rows and returns a description of the
+     * first differing pixel, or null if they match.
+     */
+    @Nullable
+    static String selfCheck(CompositeKernel expected, CompositeKernel actual) {
+        Random random = new Random(0x45436C61L);
+        float[] blendFactors = {0.0F, 0.4F, 0.7F};
+
+        for (int round = 0; round < 64; ++round) {
+            int length = 1 + random.nextInt(160);
+            int[] base = new int[length];
+            float[] blend = new float[length];
+            float[] shades = new float[length + 7];
+            int[] fluidTints = new int[length];
+            float[] fluidMix = new float[length];
+            for (int i = 0; i < length; ++i) {
+                base[i] = random.nextInt() & 0xFFFFFF;
+                blend[i] = blendFactors[random.nextInt(blendFactors.length)];
+                fluidTints[i] = random.nextInt() & 0xFFFFFF;
+                fluidMix[i] = random.nextBoolean() ? 1.0F : 1.0F / (1 + random.nextInt(12));
+            }
+            for (int i = 0; i < shades.length; ++i) {
+                shades[i] = 0.4F + 0.6F * random.nextFloat();
+            }
+            int claimColor = random.nextInt() & 0xFFFFFF;
+            boolean fluid = random.nextBoolean();
+
+            int[] expectedOut = new int[length + 3];
+            int[] actualOut = new int[length + 3];
+            expected.compositeRow(base, blend, claimColor, shades, 7, fluid ? fluidTints : null, fluid ? fluidMix : null,
+                    expectedOut, 3, length);
+            actual.compositeRow(base, blend, claimColor, shades, 7, fluid ? fluidTints : null, fluid ? fluidMix : null,
+                    actualOut, 3, length);
+            int mismatch = Arrays.mismatch(expectedOut, actualOut);
+            if (mismatch >= 0) {
+                return String.format("compositeRow pixel %d: %08x != %08x", mismatch, expectedOut[mismatch], actualOut[mismatch]);
+            }
+
+            int overlay = random.nextInt();
+            int[] pixels = new int[length + 5];
+            for (int i = 0; i < pixels.length; ++i) {
+                pixels[i] = random.nextInt();
+            }
+            expected.blendRow(pixels, 5, overlay, expectedOut, 0, length);
+            actual.blendRow(pixels, 5, overlay, actualOut, 0, length);
+            mismatch = Arrays.mismatch(expectedOut, actualOut);
+            if (mismatch >= 0) {
+                return String.format("blendRow pixel %d: %08x != %08x", mismatch, expectedOut[mismatch], actualOut[mismatch]);
+            }
+        }
+        return null;
+    }
+}
@@ -36,9 +36,15 @@ public class EasyClaimsChunkWorldMap implements IWorldMap {
         CompletableFuture<ClaimImageBuilder>[] futures = new CompletableFuture[chunksToGenerate.size()];
         int futureIndex = 0;
 
+        // Tiles share their sampled heights, so neighbors in the batch aren't fetched again for shading
+        HeightSampleBatch batch = new HeightSampleBatch(world, imageWidth, imageHeight);
+        for (LongIterator iterator = chunksToGenerate.iterator(); iterator.hasNext(); ) {
+            batch.register(iterator.nextLong());
+        }
+
         for (LongIterator iterator = chunksToGenerate.iterator(); iterator.hasNext(); ) {
             long chunkIndex = iterator.nextLong();
-            futures[futureIndex++] = ClaimImageBuilder.build(chunkIndex, imageWidth, imageHeight, world);
+            futures[futureIndex++] = ClaimImageBuilder.build(chunkIndex, imageWidth, imageHeight, world, batch);
         }
 
         return CompletableFuture.allOf(futures).thenApply((unused) -> {
@@ -0,0 +1,166 @@
+package com.easyclaims.map;
+
+import com.hypixel.hytale.math.util.ChunkUtil;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * Per-chunk summary of the visible fluid in each sampled column: which fluid is on
+ * top, where its surface is and how deep it is.
+ *
+ * Computed section by section from the top of the world down, so empty sections are
+ * skipped for all columns at once and chunks without fluid cost almost nothing.
+ * Fluid sections change in place without telling us, so every render walks them again
+ * and no reference to them is kept.
+ */
+public class FluidSurfaceMap {
+
+    // Surface height used for columns without fluid (matches the renderer's environment lookup)
+    public static final int NO_FLUID_TOP = 320;
+
+    private static final byte SEARCHING_TOP = 0;
+    private static final byte SEARCHING_BOTTOM = 1;
+    private static final byte DONE = 2;
+
+    private final int[] fluidIds;
+    private final short[] tops;
+    private final short[] depths;
+    private final boolean hasFluid;
+
+    private FluidSurfaceMap(int[] fluidIds, short[] tops, short[] depths, boolean hasFluid) {
+        this.fluidIds = fluidIds;
+        this.tops = tops;
+        this.depths = depths;
+        this.hasFluid = hasFluid;
+    }
+
+    /**
+     * Computes the fluid summary of a chunk.
+     *
+     * @param chunk   The chunk, read for its fluid sections
+     * @param heights Ground height per sample
+     */
+    @Nonnull
+    public static FluidSurfaceMap compute(@Nonnull ChunkSampleSource chunk, @Nonnull short[] heights,
+                                          int sampleWidth, int sampleHeight, int blockStepX, int blockStepZ) {
+        int count = sampleWidth * sampleHeight;
+        Object[] sections = new Object[chunk.getFluidSectionCount()];
+        boolean anySection = false;
+        for (int chunkY = 0; chunkY < sections.length; ++chunkY) {
+            sections[chunkY] = chunk.getFluidSection(chunkY);
+            anySection |= sections[chunkY] != null;
+        }
+
+        int[] fluidIds = new int[count];
+        short[] tops = new short[count];
+        short[] depths = new short[count];
+        Arrays.fill(tops, (short) NO_FLUID_TOP);
+
+        // Dry chunk: nothing to walk
+        if (!anySection) {
+            return new FluidSurfaceMap(fluidIds, tops, depths, false);
+        }
+
+        // Scratch for the walk, reused between chunks rendered on this thread
+        RenderBuffers buffers = RenderBuffers.get();
+        byte[] state = buffers.fluidState(count);
+        short[] bottoms = buffers.fluidBottoms(count);
+        for (int i = 0; i < count; ++i) {
+            bottoms[i] = heights[i];
+            state[i] = SEARCHING_TOP;
+        }
+
+        // Walk sections top-down; each column moves from finding its surface to finding its bottom
+        for (int chunkY = sections.length - 1; chunkY >= 0; --chunkY) {
+            boolean empty = sections[chunkY] == null;
+            int sectionMin = ChunkUtil.minBlock(chunkY);
+            int sectionMax = ChunkUtil.maxBlock(chunkY);
+
+            for (int i = 0; i < count; ++i) {
+                if (state[i] == DONE) {
+                    continue;
+                }
+                short height = heights[i];
+                if (chunkY < ChunkUtil.chunkCoordinate(height)) {
+                    // Reached the ground: no fluid, or fluid reaching all the way down
+                    state[i] = DONE;
+                    continue;
+                }
+
+                int x = (i % sampleWidth) * blockStepX;
+                int z = (i / sampleWidth) * blockStepZ;
+                int minBlockY = Math.max(sectionMin, height);
+
+                if (state[i] == SEARCHING_TOP) {
+                    if (empty) {
+                        continue;
+                    }
+                    for (int blockY = sectionMax; blockY >= minBlockY; --blockY) {
+                        int fluidId = chunk.getFluidId(chunkY, x, blockY, z);
+                        if (fluidId != 0) {
+                            fluidIds[i] = fluidId;
+                            tops[i] = (short) blockY;
+                            state[i] = SEARCHING_BOTTOM;
+                            break;
+                        }
+                    }
+                    if (state[i] == SEARCHING_TOP) {
+                        continue;
+                    }
+                }
+
+                // Searching for the bottom, continuing in the section the surface was found in
+                if (empty) {
+                    bottoms[i] = (short) Math.min(sectionMax + 1, tops[i]);
+                    state[i] = DONE;
+                    continue;
+                }
+                int fluidId = fluidIds[i];
+                int maxBlockY = Math.min(sectionMax, tops[i] - 1);
+                for (int blockY = maxBlockY; blockY >= minBlockY; --blockY) {
+                    if (!MapColorTables.sameFluidColor(fluidId, chunk.getFluidId(chunkY, x, blockY, z))) {
+                        bottoms[i] = (short) (blockY + 1);
+                        state[i] = DONE;
+                        break;
+                    }
+                }
+            }
+        }
+
+        boolean hasFluid = false;
+        for (int i = 0; i < count; ++i) {
+            if (fluidIds[i] != 0) {
+                depths[i] = (short) (tops[i] - bottoms[i] + 1);
+                hasFluid = true;
+            }
+        }
+
+        return new FluidSurfaceMap(fluidIds, tops, depths, hasFluid);
+    }
+
+    /**
+     * Fluid on top of a sample, or 0 if none.
+     */
+    public int getFluidId(int sampleIndex) {
+        return fluidIds[sampleIndex];
+    }
+
+    /**
+     * Surface height of the fluid in a sample, or {@link #NO_FLUID_TOP} if none.
+     */
+    public int getTop(int sampleIndex) {
+        return tops[sampleIndex];
+    }
+
+    /**
+     * Depth of the fluid in a sample, 0 if none.
+     */
+    public short getDepth(int sampleIndex) {
+        return depths[sampleIndex];
+    }
+
+    public boolean hasFluid() {
+        return hasFluid;
+    }
+}
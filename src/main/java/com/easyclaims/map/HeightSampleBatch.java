@@ -0,0 +1,171 @@
+package com.easyclaims.map;
+
+import com.hypixel.hytale.math.util.ChunkUtil;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.chunk.WorldChunk;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Shares sampled heightmaps between the tiles of one generate() batch.
+ *
+ * Shading a tile needs one row or column of heights from each of its eight neighbors.
+ * Most neighbors are tiles of the same batch, so every builder publishes its own
+ * heights here and reads its neighbors' edges from the shared set. Chunks outside
+ * the batch are fetched once and shared by all tiles bordering them.
+ */
+public class HeightSampleBatch {
+    private final World world;
+    private final int sampleWidth;
+    private final int sampleHeight;
+    private final int blockStepX;
+    private final int blockStepZ;
+
+    // Sampled heights per chunk index, sampleWidth * sampleHeight values (null if the chunk isn't available)
+    private final Long2ObjectOpenHashMap<CompletableFuture<short[]>> samples = new Long2ObjectOpenHashMap<>();
+
+    public HeightSampleBatch(World world, int imageWidth, int imageHeight) {
+        this.world = world;
+        this.sampleWidth = Math.min(32, imageWidth);
+        this.sampleHeight = Math.min(32, imageHeight);
+        this.blockStepX = Math.max(1, 32 / imageWidth);
+        this.blockStepZ = Math.max(1, 32 / imageHeight);
+    }
+
+    /**
+     * Registers a chunk that is rendered in this batch. Must be called for all
+     * chunks of the batch before any builder starts.
+     */
+    public void register(long index) {
+        synchronized (this.samples) {
+            this.samples.put(index, new CompletableFuture<>());
+        }
+    }
+
+    /**
+     * Publishes the sampled heights of a chunk in this batch.
+     *
+     * @param heights sampleWidth * sampleHeight values, or null if the chunk couldn't be loaded
+     */
+    public void complete(long index, @Nullable short[] heights) {
+        CompletableFuture<short[]> future;
+        synchronized (this.samples) {
+            future = this.samples.get(index);
+        }
+        if (future != null) {
+            future.complete(heights);
+        }
+    }
+
+    /**
+     * Publishes the heights of a chunk whose terrain came from the cache.
+     */
+    public void complete(long index, @Nonnull TerrainTile terrain) {
+        if (terrain.getSampleWidth() != this.sampleWidth || terrain.getSampleHeight() != this.sampleHeight) {
+            complete(index, (short[]) null);
+            return;
+        }
+
+        // The tile stores heights with a one-sample border, strip it
+        short[] grid = terrain.getHeights();
+        short[] heights = new short[this.sampleWidth * this.sampleHeight];
+        for (int iz = 0; iz < this.sampleHeight; ++iz) {
+            System.arraycopy(grid, (iz + 1) * (this.sampleWidth + 2) + 1, heights, iz * this.sampleWidth, this.sampleWidth);
+        }
+        complete(index, heights);
+    }
+
+    /**
+     * Samples the heights of a chunk at the batch's sample spacing.
+     * Must run on the world thread.
+     */
+    @Nonnull
+    public short[] sample(@Nonnull ChunkSampleSource chunk) {
+        return MapTileRenderer.sampleHeights(chunk, this.sampleWidth, this.sampleHeight, this.blockStepX, this.blockStepZ);
+    }
+
+    /**
+     * Fills the one-sample border of a height grid from the eight neighbors of a chunk.
+     * Where a neighbor is unavailable (unloaded, dropped or drawn without terrain) the
+     * chunk's own edge is repeated, so the shading doesn't fall off towards height 0 in
+     * a tile that gets cached.
+     *
+     * @param grid (sampleWidth + 2) * (sampleHeight + 2) heights, the chunk's own already inside the border
+     */
+    @Nonnull
+    public CompletableFuture<Void> fillNeighbors(int chunkX, int chunkZ, @Nonnull short[] grid) {
+        int sw = this.sampleWidth;
+        int sh = this.sampleHeight;
+        int stride = sw + 2;
+        int lastRow = (sh + 1) * stride;
+
+        int firstRow = stride;
+        int lastInnerRow = sh * stride;
+
+        CompletableFuture<Void> north = get(chunkX, chunkZ - 1).thenAccept((heights) -> {
+            if (heights != null) System.arraycopy(heights, (sh - 1) * sw, grid, 1, sw);
+            else System.arraycopy(grid, firstRow + 1, grid, 1, sw);
+        });
+        CompletableFuture<Void> south = get(chunkX, chunkZ + 1).thenAccept((heights) -> {
+            if (heights != null) System.arraycopy(heights, 0, grid, lastRow + 1, sw);
+            else System.arraycopy(grid, lastInnerRow + 1, grid, lastRow + 1, sw);
+        });
+        CompletableFuture<Void> west = get(chunkX - 1, chunkZ).thenAccept((heights) -> {
+            for (int iz = 0; iz < sh; ++iz) {
+                int row = (iz + 1) * stride;
+                grid[row] = heights != null ? heights[iz * sw + sw - 1] : grid[row + 1];
+            }
+        });
+        CompletableFuture<Void> east = get(chunkX + 1, chunkZ).thenAccept((heights) -> {
+            for (int iz = 0; iz < sh; ++iz) {
+                int row = (iz + 1) * stride;
+                grid[row + sw + 1] = heights != null ? heights[iz * sw] : grid[row + sw];
+            }
+        });
+        CompletableFuture<Void> northwest = get(chunkX - 1, chunkZ - 1).thenAccept((heights) -> {
+            grid[0] = heights != null ? heights[(sh - 1) * sw + sw - 1] : grid[firstRow + 1];
+        });
+        CompletableFuture<Void> northeast = get(chunkX + 1, chunkZ - 1).thenAccept((heights) -> {
+            grid[sw + 1] = heights != null ? heights[(sh - 1) * sw] : grid[firstRow + sw];
+        });
+        CompletableFuture<Void> southwest = get(chunkX - 1, chunkZ + 1).thenAccept((heights) -> {
+            grid[lastRow] = heights != null ? heights[sw - 1] : grid[lastInnerRow + 1];
+        });
+        CompletableFuture<Void> southeast = get(chunkX + 1, chunkZ + 1).thenAccept((heights) -> {
+            grid[lastRow + sw + 1] = heights != null ? heights[0] : grid[lastInnerRow + sw];
+        });
+
+        return CompletableFuture.allOf(north, south, west, east, northwest, northeast, southwest, southeast);
+    }
+
+    /**
+     * Gets the heights of a chunk, fetching it once if it isn't part of the batch.
+     */
+    @Nonnull
+    private CompletableFuture<short[]> get(int chunkX, int chunkZ) {
+        long index = ChunkUtil.indexChunk(chunkX, chunkZ);
+        CompletableFuture<short[]> future;
+        synchronized (this.samples) {
+            future = this.samples.get(index);
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            this.samples.put(index, future);
+        }
+
+        CompletableFuture<short[]> result = future;
+        this.world.getChunkStore().getChunkReferenceAsync(index).thenAcceptAsync((ref) -> {
+            if (ref != null && ref.isValid()) {
+                WorldChunk chunk = ref.getStore().getComponent(ref, WorldChunk.getComponentType());
+                result.complete(chunk != null ? sample(new WorldChunkSampleSource(chunk, null)) : null);
+            } else {
+                result.complete(null);
+            }
+        }, this.world).whenComplete((unused, error) -> result.complete(null));
+        return result;
+    }
+}
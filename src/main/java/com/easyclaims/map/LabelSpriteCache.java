@@ -0,0 +1,162 @@
+package com.easyclaims.map;
+
+import com.easyclaims.metrics.Metrics;
+
+import javax.annotation.Nonnull;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of pre-rendered name labels for map tiles.
+ *
+ * The same few names are drawn on every tile of a claim, so instead of rasterizing
+ * each glyph with its outline every time, the outlined text is rendered once per
+ * (text, color) into a small sprite. Drawing a label then only copies the opaque runs
+ * of each sprite row into the image.
+ */
+public class LabelSpriteCache {
+
+    // Upper bound on cached sprites; least recently used sprites are evicted first
+    private static final int MAX_SPRITES = 1024;
+
+    private static final LongAdder HITS = Metrics.counter("map.label_cache.hit");
+    private static final LongAdder MISSES = Metrics.counter("map.label_cache.miss");
+
+    private static final Map<SpriteKey, Sprite> sprites = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<SpriteKey, Sprite> eldest) {
+            return size() > MAX_SPRITES;
+        }
+    };
+
+    /**
+     * Gets the sprite for a text with a black outline, rendering it if needed.
+     */
+    @Nonnull
+    public static Sprite get(@Nonnull String text, int textColor) {
+        SpriteKey key = new SpriteKey(text, textColor);
+        synchronized (sprites) {
+            Sprite sprite = sprites.get(key);
+            if (sprite == null) {
+                MISSES.increment();
+                sprite = new Sprite(text, textColor, BitmapFont.BLACK);
+                sprites.put(key, sprite);
+            } else {
+                HITS.increment();
+            }
+            return sprite;
+        }
+    }
+
+    public static void clear() {
+        synchronized (sprites) {
+            sprites.clear();
+        }
+    }
+
+    /**
+     * Outlined text rendered once; transparent pixels are 0 (all font colors are opaque).
+     */
+    public static final class Sprite {
+        private final int width;
+        private final int height;
+        private final int[] pixels;
+        // Per row: start and length of each opaque run, -1 terminated
+        private final int[][] runs;
+
+        private Sprite(String text, int textColor, int outlineColor) {
+            // The outline extends the text by one pixel on every side
+            this.width = BitmapFont.getTextWidth(text) + 2;
+            this.height = BitmapFont.CHAR_HEIGHT + 2;
+            this.pixels = new int[this.width * this.height];
+            BitmapFont.drawTextWithOutline(this.pixels, this.width, this.height, text, 1, 1, textColor, outlineColor);
+
+            this.runs = new int[this.height][];
+            int[] rowRuns = new int[this.width + 1];
+            for (int y = 0; y < this.height; y++) {
+                int count = 0;
+                int x = 0;
+                while (x < this.width) {
+                    if (this.pixels[y * this.width + x] == 0) {
+                        x++;
+                        continue;
+                    }
+                    int start = x;
+                    while (x < this.width && this.pixels[y * this.width + x] != 0) {
+                        x++;
+                    }
+                    rowRuns[count++] = start;
+                    rowRuns[count++] = x - start;
+                }
+                int[] result = new int[count + 1];
+                System.arraycopy(rowRuns, 0, result, 0, count);
+                result[count] = -1;
+                this.runs[y] = result;
+            }
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * Draws the label centered horizontally, at the same place
+         * {@link BitmapFont#drawTextCenteredWithOutline} would draw the text.
+         */
+        public void drawCentered(int[] imageData, int imageWidth, int imageHeight, int textY) {
+            int textWidth = this.width - 2;
+            draw(imageData, imageWidth, imageHeight, (imageWidth - textWidth) / 2 - 1, textY - 1);
+        }
+
+        /**
+         * Copies the opaque pixels of the sprite into an image, clipped to its bounds.
+         */
+        public void draw(int[] imageData, int imageWidth, int imageHeight, int x, int y) {
+            for (int row = 0; row < this.height; row++) {
+                int py = y + row;
+                if (py < 0 || py >= imageHeight) {
+                    continue;
+                }
+                int[] rowRuns = this.runs[row];
+                for (int i = 0; rowRuns[i] >= 0; i += 2) {
+                    int start = x + rowRuns[i];
+                    int end = start + rowRuns[i + 1];
+                    int clippedStart = Math.max(start, 0);
+                    int clippedEnd = Math.min(end, imageWidth);
+                    if (clippedStart < clippedEnd) {
+                        System.arraycopy(this.pixels, row * this.width + (clippedStart - x),
+                                imageData, py * imageWidth + clippedStart, clippedEnd - clippedStart);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class SpriteKey {
+        private final String text;
+        private final int color;
+
+        private SpriteKey(String text, int color) {
+            this.text = text;
+            this.color = color;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof SpriteKey)) return false;
+            SpriteKey other = (SpriteKey) o;
+            return color == other.color && text.equals(other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * text.hashCode() + color;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.easyclaims.map;
+
+import com.hypixel.hytale.assetstore.map.IndexedAssetMap;
+import com.hypixel.hytale.server.core.asset.type.blocktype.config.BlockType;
+import com.hypixel.hytale.server.core.asset.type.environment.config.Environment;
+import com.hypixel.hytale.server.core.asset.type.fluid.Fluid;
+
+import java.util.Arrays;
+
+/**
+ * Lookup tables for the asset colors used by map rendering.
+ *
+ * Block, fluid and environment colors only depend on their asset, so they are
+ * resolved once per id and stored packed, instead of looking up the asset and
+ * its tint colors for every sample. Entries are filled lazily the first time an
+ * id is seen. The tables are rebuilt when an asset map is replaced and can be
+ * dropped explicitly with {@link #invalidate()}.
+ *
+ * Colors are packed 0xRRGGBB. A missing tint is stored as white, which leaves the
+ * color unchanged under the x * c / 255 tint math used by the renderer.
+ */
+public class MapColorTables {
+
+    private static final int WHITE = 0xFFFFFF;
+
+    // Marks an entry as filled
+    private static final long BLOCK_LOADED = 1L << 63;
+    private static final int COLOR_LOADED = 1 << 24;
+    private static final int HAS_COLOR = 1 << 25;
+
+    private static volatile Tables tables = new Tables(null, null, null);
+
+    /**
+     * Drops all entries (e.g. after an asset reload).
+     */
+    public static void invalidate() {
+        tables = new Tables(null, null, null);
+    }
+
+    /**
+     * Gets the map color of a block with the given biome tint, packed 0xRRGGBB.
+     */
+    public static int getBlockColor(int blockId, int biomeTintColor) {
+        long entry = blockEntry(blockId);
+        int selfTint = (int) (entry & WHITE);
+        int particle = (int) (entry >>> 24 & WHITE);
+        float biomeTintMultiplier = (float) (int) (entry << 1 >> 49) / 100.0F;
+
+        int biomeTintR = biomeTintColor >> 16 & 255;
+        int biomeTintG = biomeTintColor >> 8 & 255;
+        int biomeTintB = biomeTintColor & 255;
+        int selfTintR = selfTint >> 16 & 255;
+        int selfTintG = selfTint >> 8 & 255;
+        int selfTintB = selfTint & 255;
+        int tintColorR = (int) ((float) selfTintR + (float) (biomeTintR - selfTintR) * biomeTintMultiplier);
+        int tintColorG = (int) ((float) selfTintG + (float) (biomeTintG - selfTintG) * biomeTintMultiplier);
+        int tintColorB = (int) ((float) selfTintB + (float) (biomeTintB - selfTintB) * biomeTintMultiplier);
+        if (particle != WHITE) {
+            tintColorR = tintColorR * (particle >> 16 & 255) / 255;
+            tintColorG = tintColorG * (particle >> 8 & 255) / 255;
+            tintColorB = tintColorB * (particle & 255) / 255;
+        }
+
+        return (tintColorR & 255) << 16 | (tintColorG & 255) << 8 | (tintColorB & 255);
+    }
+
+    /**
+     * Gets the color a fluid tints the terrain towards in the given environment, packed 0xRRGGBB.
+     */
+    public static int getFluidTint(int fluidId, int environmentId) {
+        int waterTint = environmentEntry(environmentId) & WHITE;
+        int particle = fluidEntry(fluidId) & WHITE;
+
+        int tintColorR = 255 * (waterTint >> 16 & 255) / 255;
+        int tintColorG = 255 * (waterTint >> 8 & 255) / 255;
+        int tintColorB = 255 * (waterTint & 255) / 255;
+        tintColorR = tintColorR * (particle >> 16 & 255) / 255;
+        tintColorG = tintColorG * (particle >> 8 & 255) / 255;
+        tintColorB = tintColorB * (particle & 255) / 255;
+
+        return tintColorR << 16 | tintColorG << 8 | tintColorB;
+    }
+
+    /**
+     * Checks whether two fluids have the same particle color (and so look the same on the map).
+     */
+    public static boolean sameFluidColor(int fluidId, int otherFluidId) {
+        return fluidId == otherFluidId || fluidEntry(fluidId) == fluidEntry(otherFluidId);
+    }
+
+    /**
+     * Rebuilds the tables if an asset map was replaced since they were built.
+     * Called once per tile rather than per sample.
+     */
+    public static void validate() {
+        Tables current = tables;
+        if (current.blockMap != BlockType.getAssetMap()
+                || current.fluidMap != Fluid.getAssetMap()
+                || current.environmentMap != Environment.getAssetMap()) {
+            tables = new Tables(BlockType.getAssetMap(), Fluid.getAssetMap(), Environment.getAssetMap());
+        }
+    }
+
+    /**
+     * Sets the colors of a block directly instead of reading its asset, for rendering without
+     * assets (benchmarks, tools). Dropped like any other entry when the asset maps change.
+     */
+    public static void putBlockColor(int blockId, int selfTint, int particleColor, int biomeTintPercent) {
+        tables.putBlock(blockId, BLOCK_LOADED | (long) (biomeTintPercent & 0x7FFF) << 48
+                | (long) (particleColor & WHITE) << 24 | (selfTint & WHITE));
+    }
+
+    /**
+     * Sets the particle color of a fluid directly, see {@link #putBlockColor}.
+     */
+    public static void putFluidColor(int fluidId, int particleColor) {
+        tables.putFluid(fluidId, COLOR_LOADED | HAS_COLOR | (particleColor & WHITE));
+    }
+
+    /**
+     * Sets the water tint of an environment directly, see {@link #putBlockColor}.
+     */
+    public static void putEnvironmentWaterTint(int environmentId, int waterTint) {
+        tables.putEnvironment(environmentId, COLOR_LOADED | (waterTint & WHITE));
+    }
+
+    // Packed as: bits 0-23 self tint, 24-47 particle color, 48-62 biome tint percentage, 63 loaded
+    private static long blockEntry(int blockId) {
+        Tables current = tables;
+        long[] blocks = current.blocks;
+        if (blockId >= 0 && blockId < blocks.length && blocks[blockId] != 0) {
+            return blocks[blockId];
+        }
+
+        BlockType block = BlockType.getAssetMap().getAsset(blockId);
+        com.hypixel.hytale.protocol.Color[] tintUp = block.getTintUp();
+        boolean hasTint = tintUp != null && tintUp.length > 0;
+        int selfTint = hasTint ? pack(tintUp[0]) : WHITE;
+        int biomeTintUp = block.getBiomeTintUp();
+        com.hypixel.hytale.protocol.Color particleColor = block.getParticleColor();
+        // The particle color only applies when the biome tint doesn't fully replace the block tint
+        int particle = particleColor != null && (float) biomeTintUp / 100.0F < 1.0F ? pack(particleColor) : WHITE;
+
+        long entry = BLOCK_LOADED | (long) (biomeTintUp & 0x7FFF) << 48 | (long) particle << 24 | selfTint;
+        current.putBlock(blockId, entry);
+        return entry;
+    }
+
+    private static int fluidEntry(int fluidId) {
+        Tables current = tables;
+        int[] fluids = current.fluids;
+        if (fluidId >= 0 && fluidId < fluids.length && fluids[fluidId] != 0) {
+            return fluids[fluidId];
+        }
+
+        Fluid fluid = Fluid.getAssetMap().getAsset(fluidId);
+        com.hypixel.hytale.protocol.Color particleColor = fluid.getParticleColor();
+        int entry = COLOR_LOADED | (particleColor != null ? HAS_COLOR | pack(particleColor) : WHITE);
+        current.putFluid(fluidId, entry);
+        return entry;
+    }
+
+    private static int environmentEntry(int environmentId) {
+        Tables current = tables;
+        int[] environments = current.environments;
+        if (environmentId >= 0 && environmentId < environments.length && environments[environmentId] != 0) {
+            return environments[environmentId];
+        }
+
+        Environment environment = Environment.getAssetMap().getAsset(environmentId);
+        com.hypixel.hytale.protocol.Color waterTint = environment.getWaterTint();
+        int entry = COLOR_LOADED | (waterTint != null ? pack(waterTint) : WHITE);
+        current.putEnvironment(environmentId, entry);
+        return entry;
+    }
+
+    private static int pack(com.hypixel.hytale.protocol.Color color) {
+        return (color.red & 255) << 16 | (color.green & 255) << 8 | (color.blue & 255);
+    }
+
+    /**
+     * One generation of tables, tied to the asset maps they were built from.
+     * Entries are single words so readers never see a partly written entry.
+     */
+    private static final class Tables {
+        private final IndexedAssetMap<String, BlockType> blockMap;
+        private final IndexedAssetMap<String, Fluid> fluidMap;
+        private final IndexedAssetMap<String, Environment> environmentMap;
+        private volatile long[] blocks = new long[256];
+        private volatile int[] fluids = new int[16];
+        private volatile int[] environments = new int[64];
+
+        private Tables(IndexedAssetMap<String, BlockType> blockMap, IndexedAssetMap<String, Fluid> fluidMap,
+                       IndexedAssetMap<String, Environment> environmentMap) {
+            this.blockMap = blockMap;
+            this.fluidMap = fluidMap;
+            this.environmentMap = environmentMap;
+        }
+
+        private void putBlock(int id, long entry) {
+            if (id < 0) {
+                return;
+            }
+            synchronized (this) {
+                long[] table = this.blocks;
+                long[] result = id < table.length ? table : Arrays.copyOf(table, Math.max(id + 1, table.length * 2));
+                result[id] = entry;
+                this.blocks = result;
+            }
+        }
+
+        private void putFluid(int id, int entry) {
+            if (id < 0) {
+                return;
+            }
+            synchronized (this) {
+                this.fluids = put(this.fluids, id, entry);
+            }
+        }
+
+        private void putEnvironment(int id, int entry) {
+            if (id < 0) {
+                return;
+            }
+            synchronized (this) {
+                this.environments = put(this.environments, id, entry);
+            }
+        }
+
+        private static int[] put(int[] table, int id, int entry) {
+            int[] result = id < table.length ? table : Arrays.copyOf(table, Math.max(id + 1, table.length * 2));
+            result[id] = entry;
+            return result;
+        }
+    }
+}
@@ -2,9 +2,15 @@ package com.easyclaims.map;
 
 import com.hypixel.hytale.protocol.packets.worldmap.MapImage;
 
+import java.util.Arrays;
+
 /**
  * Composites claim overlays onto map images.
  * Draws semi-transparent fills with solid borders to show claim boundaries.
+ *
+ * Each overlay can also be drawn into a caller-provided pixel buffer (the {@code draw*}
+ * and {@code compositeOverlayInto} methods), so renderers can reuse their buffers; the
+ * {@code create*} methods allocate a new image around them.
  */
 public class MapImageCompositor {
 
@@ -32,7 +38,24 @@ public class MapImageCompositor {
      */
     public static MapImage createClaimOverlay(String ownerName, int width, int height) {
         int[] pixels = new int[width * height];
+        drawClaimOverlay(ownerName, pixels, 0, width, width, height);
+        return new MapImage(width, height, pixels);
+    }
+
+    /**
+     * Creates a claim overlay with the default chunk size.
+     */
+    public static MapImage createClaimOverlay(String ownerName) {
+        return createClaimOverlay(ownerName, DEFAULT_CHUNK_SIZE, DEFAULT_CHUNK_SIZE);
+    }
 
+    /**
+     * Draws a claim overlay (fill and border) into a pixel buffer.
+     *
+     * @param pixels ARGB pixels, the overlay's top left pixel at offset
+     * @param stride Pixels per row of the buffer
+     */
+    public static void drawClaimOverlay(String ownerName, int[] pixels, int offset, int stride, int width, int height) {
         int fillColor;
         int borderColor;
 
@@ -46,21 +69,10 @@ public class MapImageCompositor {
         }
 
         // Fill the entire area with semi-transparent color
-        for (int i = 0; i < pixels.length; i++) {
-            pixels[i] = fillColor;
-        }
+        fillRect(pixels, offset, stride, width, height, fillColor);
 
         // Draw border on all edges
-        drawBorder(pixels, width, height, borderColor, BORDER_WIDTH);
-
-        return new MapImage(width, height, pixels);
-    }
-
-    /**
-     * Creates a claim overlay with the default chunk size.
-     */
-    public static MapImage createClaimOverlay(String ownerName) {
-        return createClaimOverlay(ownerName, DEFAULT_CHUNK_SIZE, DEFAULT_CHUNK_SIZE);
+        drawBorder(pixels, offset, stride, width, height, borderColor, BORDER_WIDTH);
     }
 
     /**
@@ -76,29 +88,36 @@ public class MapImageCompositor {
             return createClaimOverlay(ownerName);
         }
 
-        int width = base.width;
-        int height = base.height;
-        int[] result = new int[width * height];
+        int[] result = new int[base.width * base.height];
+        compositeOverlayInto(base.data, base.width, base.height, ownerName, result);
+        return new MapImage(base.width, base.height, result);
+    }
 
+    /**
+     * Blends a claim overlay over base pixels into a caller-provided buffer.
+     * The result may be the base array itself to composite in place.
+     *
+     * @param base   Base ARGB pixels, width * height values
+     * @param result Output pixels, at least width * height values
+     */
+    public static void compositeOverlayInto(int[] base, int width, int height, String ownerName, int[] result) {
         int fillColor = ClaimColorGenerator.getPlayerColorARGB(ownerName, FILL_ALPHA);
         int borderColor = ClaimColorGenerator.getBorderColorARGB(ownerName, BORDER_ALPHA);
 
-        // Copy base image and blend overlay
+        // Copy base image and blend overlay, a row at a time
+        CompositeKernel kernel = CompositeKernel.get();
         for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int idx = y * width + x;
-                int basePixel = base.data[idx];
-
-                // Check if this pixel is on the border
-                boolean isBorder = x < BORDER_WIDTH || x >= width - BORDER_WIDTH ||
-                                   y < BORDER_WIDTH || y >= height - BORDER_WIDTH;
-
-                int overlayColor = isBorder ? borderColor : fillColor;
-                result[idx] = blendPixels(basePixel, overlayColor);
+            int rowStart = y * width;
+            if (y < BORDER_WIDTH || y >= height - BORDER_WIDTH || width <= 2 * BORDER_WIDTH) {
+                kernel.blendRow(base, rowStart, borderColor, result, rowStart, width);
+            } else {
+                int fillStart = rowStart + BORDER_WIDTH;
+                int rightStart = rowStart + width - BORDER_WIDTH;
+                kernel.blendRow(base, rowStart, borderColor, result, rowStart, BORDER_WIDTH);
+                kernel.blendRow(base, fillStart, fillColor, result, fillStart, width - 2 * BORDER_WIDTH);
+                kernel.blendRow(base, rightStart, borderColor, result, rightStart, BORDER_WIDTH);
             }
         }
-
-        return new MapImage(width, height, result);
     }
 
     /**
@@ -107,78 +126,42 @@ public class MapImageCompositor {
      */
     public static MapImage createBorderOnlyOverlay(String ownerName, int width, int height) {
         int[] pixels = new int[width * height];
-
-        int borderColor = ClaimColorGenerator.getBorderColorARGB(ownerName, BORDER_ALPHA);
-
-        // Initialize with transparent
-        for (int i = 0; i < pixels.length; i++) {
-            pixels[i] = 0; // Fully transparent
-        }
-
-        // Draw border only
-        drawBorder(pixels, width, height, borderColor, BORDER_WIDTH);
-
+        drawBorderOnlyOverlay(ownerName, pixels, 0, width, width, height);
         return new MapImage(width, height, pixels);
     }
 
     /**
-     * Draws a rectangular border on the pixel array.
+     * Draws a border-only overlay into a pixel buffer; the inside is made transparent.
      */
-    private static void drawBorder(int[] pixels, int width, int height, int color, int borderWidth) {
-        // Top border
-        for (int y = 0; y < borderWidth; y++) {
-            for (int x = 0; x < width; x++) {
-                pixels[y * width + x] = color;
-            }
-        }
+    public static void drawBorderOnlyOverlay(String ownerName, int[] pixels, int offset, int stride, int width, int height) {
+        int borderColor = ClaimColorGenerator.getBorderColorARGB(ownerName, BORDER_ALPHA);
 
-        // Bottom border
-        for (int y = height - borderWidth; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                pixels[y * width + x] = color;
-            }
-        }
+        // Initialize with transparent
+        fillRect(pixels, offset, stride, width, height, 0);
 
-        // Left border
-        for (int y = borderWidth; y < height - borderWidth; y++) {
-            for (int x = 0; x < borderWidth; x++) {
-                pixels[y * width + x] = color;
-            }
-        }
+        // Draw border only
+        drawBorder(pixels, offset, stride, width, height, borderColor, BORDER_WIDTH);
+    }
 
-        // Right border
-        for (int y = borderWidth; y < height - borderWidth; y++) {
-            for (int x = width - borderWidth; x < width; x++) {
-                pixels[y * width + x] = color;
-            }
+    private static void fillRect(int[] pixels, int offset, int stride, int width, int height, int color) {
+        for (int y = 0; y < height; y++) {
+            int rowStart = offset + y * stride;
+            Arrays.fill(pixels, rowStart, rowStart + width, color);
         }
     }
 
     /**
-     * Blends two ARGB pixels using standard alpha blending.
-     * The overlay is blended on top of the base.
+     * Draws a rectangular border on the pixel array.
      */
-    private static int blendPixels(int base, int overlay) {
-        int baseA = (base >> 24) & 0xFF;
-        int baseR = (base >> 16) & 0xFF;
-        int baseG = (base >> 8) & 0xFF;
-        int baseB = base & 0xFF;
-
-        int overlayA = (overlay >> 24) & 0xFF;
-        int overlayR = (overlay >> 16) & 0xFF;
-        int overlayG = (overlay >> 8) & 0xFF;
-        int overlayB = overlay & 0xFF;
-
-        // Alpha blending formula
-        float alpha = overlayA / 255f;
-        float invAlpha = 1f - alpha;
-
-        int resultR = (int) (overlayR * alpha + baseR * invAlpha);
-        int resultG = (int) (overlayG * alpha + baseG * invAlpha);
-        int resultB = (int) (overlayB * alpha + baseB * invAlpha);
-        int resultA = Math.max(baseA, overlayA);
-
-        return (resultA << 24) | (resultR << 16) | (resultG << 8) | resultB;
+    private static void drawBorder(int[] pixels, int offset, int stride, int width, int height, int color, int borderWidth) {
+        // Top and bottom borders
+        fillRect(pixels, offset, stride, width, borderWidth, color);
+        fillRect(pixels, offset + (height - borderWidth) * stride, stride, width, borderWidth, color);
+
+        // Left and right borders
+        int sideOffset = offset + borderWidth * stride;
+        fillRect(pixels, sideOffset, stride, borderWidth, height - 2 * borderWidth, color);
+        fillRect(pixels, sideOffset + width - borderWidth, stride, borderWidth, height - 2 * borderWidth, color);
     }
 
     /**
@@ -190,66 +173,38 @@ public class MapImageCompositor {
      * @return Combined MapImage for the entire grid
      */
     public static MapImage createMultiChunkOverlay(String[][] chunkOwners, int chunkSize) {
+        int width = chunkOwners.length * chunkSize;
+        int height = chunkOwners[0].length * chunkSize;
+        int[] pixels = new int[width * height];
+        drawMultiChunkOverlay(chunkOwners, chunkSize, pixels);
+        return new MapImage(width, height, pixels);
+    }
+
+    /**
+     * Draws a multi-chunk overlay into a buffer of (chunksX * chunkSize) * (chunksZ * chunkSize)
+     * pixels. Unclaimed chunks are made transparent.
+     */
+    public static void drawMultiChunkOverlay(String[][] chunkOwners, int chunkSize, int[] pixels) {
         int chunksX = chunkOwners.length;
         int chunksZ = chunkOwners[0].length;
         int width = chunksX * chunkSize;
-        int height = chunksZ * chunkSize;
-        int[] pixels = new int[width * height];
 
         for (int cx = 0; cx < chunksX; cx++) {
             for (int cz = 0; cz < chunksZ; cz++) {
+                int chunkOffset = cz * chunkSize * width + cx * chunkSize;
                 String owner = chunkOwners[cx][cz];
-                if (owner == null) continue;
+                if (owner == null) {
+                    fillRect(pixels, chunkOffset, width, chunkSize, chunkSize, 0);
+                    continue;
+                }
 
                 int fillColor = ClaimColorGenerator.getPlayerColorARGB(owner, FILL_ALPHA);
                 int borderColor = ClaimColorGenerator.getBorderColorARGB(owner, BORDER_ALPHA);
 
-                int startX = cx * chunkSize;
-                int startZ = cz * chunkSize;
-
-                // Fill this chunk's area
-                for (int y = 0; y < chunkSize; y++) {
-                    for (int x = 0; x < chunkSize; x++) {
-                        int px = startX + x;
-                        int py = startZ + y;
-                        int idx = py * width + px;
-
-                        // Check for border
-                        boolean isBorder = x < BORDER_WIDTH || x >= chunkSize - BORDER_WIDTH ||
-                                           y < BORDER_WIDTH || y >= chunkSize - BORDER_WIDTH;
-
-                        // Also check if adjacent chunk has different owner (draw border between claims)
-                        if (!isBorder && x < BORDER_WIDTH && cx > 0) {
-                            String leftOwner = chunkOwners[cx - 1][cz];
-                            if (leftOwner == null || !leftOwner.equals(owner)) {
-                                isBorder = true;
-                            }
-                        }
-                        if (!isBorder && x >= chunkSize - BORDER_WIDTH && cx < chunksX - 1) {
-                            String rightOwner = chunkOwners[cx + 1][cz];
-                            if (rightOwner == null || !rightOwner.equals(owner)) {
-                                isBorder = true;
-                            }
-                        }
-                        if (!isBorder && y < BORDER_WIDTH && cz > 0) {
-                            String topOwner = chunkOwners[cx][cz - 1];
-                            if (topOwner == null || !topOwner.equals(owner)) {
-                                isBorder = true;
-                            }
-                        }
-                        if (!isBorder && y >= chunkSize - BORDER_WIDTH && cz < chunksZ - 1) {
-                            String bottomOwner = chunkOwners[cx][cz + 1];
-                            if (bottomOwner == null || !bottomOwner.equals(owner)) {
-                                isBorder = true;
-                            }
-                        }
-
-                        pixels[idx] = isBorder ? borderColor : fillColor;
-                    }
-                }
+                // Every chunk gets its own border, also between chunks of the same owner
+                fillRect(pixels, chunkOffset, width, chunkSize, chunkSize, fillColor);
+                drawBorder(pixels, chunkOffset, width, chunkSize, chunkSize, borderColor, BORDER_WIDTH);
             }
         }
-
-        return new MapImage(width, height, pixels);
     }
 }
@@ -0,0 +1,247 @@
+package com.easyclaims.map;
+
+import com.easyclaims.EasyClaims;
+import com.easyclaims.EasyClaimsAccess;
+import com.easyclaims.data.Claim;
+import com.easyclaims.metrics.Metrics;
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.math.util.ChunkUtil;
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.universe.world.World;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects map chunks that need to be redrawn after claim changes and clears them in one go.
+ *
+ * Changed chunks (plus their neighbors, whose borders depend on them) are gathered for a
+ * short window after the first change, then each world gets a single clearImagesInChunks
+ * and one clearChunks per player, on the world thread. Clicking through several chunks in
+ * the claim GUI therefore costs one refresh instead of one per click, and never clears the
+ * whole world map; that is left to explicit admin commands.
+ *
+ * Trust changes are collected per owner the same way. Since only the first two trusted
+ * names are drawn, the owner's tiles are only cleared if the names they show changed.
+ */
+public class MapInvalidator {
+
+    // How long changes are collected before the map is cleared
+    private static final long DEBOUNCE_MS = 250;
+
+    // Dirty chunk indexes per world, guarded by itself
+    private static final Map<String, LongSet> dirty = new HashMap<>();
+    // Owners whose trusted players changed (guarded by dirty)
+    private static final Set<UUID> dirtyOwners = new HashSet<>();
+    private static boolean flushScheduled;
+
+    // Label texts drawn on each owner's tiles since they were last invalidated. Two differing
+    // texts already mean some tile is outdated, so no more than two are kept per owner.
+    private static final int MAX_LABELS = 2;
+    private static final Map<UUID, Set<String>> renderedLabels = new ConcurrentHashMap<>();
+
+    private static ScheduledExecutorService timer;
+    private static HytaleLogger logger;
+
+    public static void init(HytaleLogger log) {
+        logger = log;
+        Metrics.gauge("map.invalidator.pending", MapInvalidator::getPendingCount);
+        timer = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "EasyClaims-MapInvalidator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Clears everything still pending and stops the timer.
+     */
+    public static void shutdown() {
+        ScheduledExecutorService current = timer;
+        timer = null;
+        if (current != null) {
+            current.shutdownNow();
+        }
+        flush();
+    }
+
+    /**
+     * Marks a chunk and its neighbors for redrawing.
+     */
+    public static void markChunk(String worldName, int chunkX, int chunkZ) {
+        synchronized (dirty) {
+            LongSet chunks = dirty.computeIfAbsent(worldName, (k) -> new LongOpenHashSet());
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    chunks.add(ChunkUtil.indexChunk(chunkX + dx, chunkZ + dz));
+                }
+            }
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Marks the claims of an owner whose trusted players changed. Their tiles are only
+     * redrawn if the names shown on them (owner and first two trusted players) differ
+     * from what was drawn.
+     */
+    public static void markOwnerLabels(UUID owner) {
+        synchronized (dirty) {
+            dirtyOwners.add(owner);
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Records the names drawn on a tile of an owner's claim.
+     */
+    public static void recordLabel(UUID owner, List<String> names) {
+        String label = String.join("\n", names);
+        renderedLabels.compute(owner, (k, drawn) -> {
+            if (drawn == null) {
+                return Set.of(label);
+            }
+            if (drawn.size() >= MAX_LABELS || drawn.contains(label)) {
+                return drawn;
+            }
+            Set<String> labels = new HashSet<>(drawn);
+            labels.add(label);
+            return Set.copyOf(labels);
+        });
+    }
+
+    /**
+     * Forgets the labels drawn so far (e.g. on config reload).
+     */
+    public static void clearLabels() {
+        renderedLabels.clear();
+    }
+
+    /**
+     * Number of chunks waiting to be cleared.
+     */
+    public static int getPendingCount() {
+        synchronized (dirty) {
+            int count = 0;
+            for (LongSet chunks : dirty.values()) {
+                count += chunks.size();
+            }
+            return count;
+        }
+    }
+
+    private static void scheduleFlush() {
+        ScheduledExecutorService current = timer;
+        if (current == null) {
+            // Not started (or shutting down): clear right away
+            flush();
+            return;
+        }
+        synchronized (dirty) {
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        try {
+            current.schedule(MapInvalidator::flush, DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            flush();
+        }
+    }
+
+    /**
+     * Clears all collected chunks now.
+     */
+    public static void flush() {
+        Map<String, LongSet> batch;
+        List<UUID> owners;
+        synchronized (dirty) {
+            flushScheduled = false;
+            if (dirty.isEmpty() && dirtyOwners.isEmpty()) {
+                return;
+            }
+            batch = new HashMap<>(dirty);
+            dirty.clear();
+            owners = new ArrayList<>(dirtyOwners);
+            dirtyOwners.clear();
+        }
+
+        for (UUID owner : owners) {
+            addChangedLabels(owner, batch);
+        }
+
+        for (Map.Entry<String, LongSet> entry : batch.entrySet()) {
+            World world = EasyClaims.WORLDS.get(entry.getKey());
+            if (world == null) {
+                continue;
+            }
+            LongSet chunks = entry.getValue();
+            try {
+                world.execute(() -> clear(world, chunks));
+            } catch (Exception e) {
+                if (logger != null) {
+                    logger.atWarning().withCause(e).log("[Map] Could not schedule map refresh for world %s", entry.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the claims of an owner to the batch if any of their tiles shows outdated names.
+     */
+    private static void addChangedLabels(UUID owner, Map<String, LongSet> batch) {
+        Set<String> drawn = renderedLabels.get(owner);
+        if (drawn == null) {
+            return; // Nothing of this owner on the map yet
+        }
+        // A tile drawn after the change may show the new names while others still show the old
+        String current = String.join("\n", EasyClaimsAccess.getClaimLabelNames(owner, 2));
+        if (drawn.size() == 1 && drawn.contains(current)) {
+            return; // e.g. a third trusted player was added, which isn't shown
+        }
+
+        renderedLabels.remove(owner);
+        for (Claim claim : EasyClaimsAccess.getClaims(owner)) {
+            batch.computeIfAbsent(claim.getWorld(), (k) -> new LongOpenHashSet())
+                    .add(ChunkUtil.indexChunk(claim.getChunkX(), claim.getChunkZ()));
+        }
+    }
+
+    private static void clear(World world, LongSet chunks) {
+        try {
+            // Clear server-side cached images
+            world.getWorldMapManager().clearImagesInChunks(chunks);
+
+            // Clear each player's client-side cache
+            for (Player player : world.getPlayers()) {
+                try {
+                    player.getWorldMapTracker().clearChunks(chunks);
+                } catch (Exception e) {
+                    if (logger != null) {
+                        logger.atFine().withCause(e).log("[Map] Error clearing chunks for player");
+                    }
+                }
+            }
+
+            if (logger != null) {
+                logger.atFine().log("[Map] Refreshed %d chunks in world %s", chunks.size(), world.getName());
+            }
+        } catch (Exception e) {
+            if (logger != null) {
+                logger.atWarning().withCause(e).log("[Map] Error refreshing chunks in world %s", world.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package com.easyclaims.map;
+
+import com.easyclaims.metrics.Metrics;
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.math.util.ChunkUtil;
+import com.hypixel.hytale.server.core.universe.world.World;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Schedules map tile renders on a dedicated thread pool.
+ *
+ * Requests wait in a bounded queue and are started nearest-first, measured from the
+ * players currently in the world (positions are reported by ClaimTitleSystem). The queue
+ * is kept sorted by that distance and only re-sorted when a player moves to another chunk.
+ * Only a few requests are in their start phase (cache lookup and chunk fetch) at once, so
+ * a full map refresh doesn't flood the world thread with chunk loads.
+ *
+ * - A request for a tile that is already queued or rendering shares that render.
+ * - When the queue is full, the request farthest from every player is dropped.
+ * - If enabled, a request whose chunk is no longer near any player when it is started
+ *   (e.g. the player teleported away) is cancelled.
+ * Dropped and cancelled tiles complete with null; the client asks for them again when
+ * it needs them.
+ */
+public class MapRenderScheduler {
+
+    private static final Object lock = new Object();
+
+    // Queued and running requests, for sharing renders of the same tile
+    private static final Map<RequestKey, Request> requests = new HashMap<>();
+    // Waiting requests, nearest first, then oldest first
+    private static final TreeSet<Request> queue = new TreeSet<>(Comparator
+            .comparingInt((Request request) -> request.distance)
+            .thenComparingLong((request) -> request.sequence));
+    private static long nextSequence;
+    private static int starting;
+
+    // Last known chunk of each player; the version changes whenever one moves to another chunk
+    private static final Map<UUID, Viewer> viewers = new ConcurrentHashMap<>();
+    private static final AtomicLong viewersVersion = new AtomicLong();
+
+    // Player positions the queued distances were measured from, guarded by lock
+    private static Map<String, int[]> positions = Map.of();
+    private static long positionsVersion = -1;
+
+    private static Executor executor = ForkJoinPool.commonPool();
+    private static int maxStarting = 4;
+    private static int maxQueued = 1024;
+    private static int cancelDistance = 0;
+    private static HytaleLogger logger;
+
+    private static final AtomicLong shared = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final AtomicLong cancelled = new AtomicLong();
+
+    static {
+        Metrics.gauge("map.queue.depth", MapRenderScheduler::getQueuedCount);
+        Metrics.gauge("map.queue.active", MapRenderScheduler::getActiveCount);
+        Metrics.gauge("map.queue.shared", MapRenderScheduler::getSharedCount);
+        Metrics.gauge("map.queue.dropped", MapRenderScheduler::getDroppedCount);
+        Metrics.gauge("map.queue.cancelled", MapRenderScheduler::getCancelledCount);
+    }
+
+    /**
+     * Creates the render threads. Until this is called renders run on the common pool.
+     *
+     * @param threads        Render threads, also the number of tiles fetching chunks at once
+     * @param queueSize      Maximum number of waiting requests
+     * @param cancelChunks   Requests farther than this (in chunks) from every player are cancelled, 0 to never cancel
+     */
+    public static void init(int threads, int queueSize, int cancelChunks, HytaleLogger log) {
+        int threadCount = Math.max(1, threads);
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threadCount, threadCount, 30L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), (runnable) -> {
+            Thread thread = new Thread(runnable, "EasyClaims-MapRender-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+
+        synchronized (lock) {
+            executor = pool;
+            maxStarting = threadCount;
+            maxQueued = Math.max(1, queueSize);
+            cancelDistance = Math.max(0, cancelChunks);
+            logger = log;
+        }
+        log.atInfo().log("[Map] Rendering map tiles on %d threads (queue %d)", threadCount, maxQueued);
+    }
+
+    /**
+     * Executor for the CPU-bound steps of a render.
+     */
+    @Nonnull
+    public static Executor executor() {
+        return executor;
+    }
+
+    /**
+     * Stops the render threads. Waiting requests complete with null.
+     */
+    public static void shutdown() {
+        List<Request> pending;
+        Executor current;
+        synchronized (lock) {
+            pending = new ArrayList<>(queue);
+            queue.clear();
+            for (Request request : pending) {
+                requests.remove(request.key);
+            }
+            current = executor;
+            executor = ForkJoinPool.commonPool();
+        }
+        for (Request request : pending) {
+            request.future.complete(null);
+        }
+        if (current instanceof ExecutorService) {
+            ((ExecutorService) current).shutdownNow();
+        }
+    }
+
+    /**
+     * Records where a player is, for prioritizing tiles near them.
+     */
+    public static void updateViewer(UUID playerId, String worldName, int chunkX, int chunkZ) {
+        Viewer viewer = viewers.get(playerId);
+        if (viewer == null || viewer.chunkX != chunkX || viewer.chunkZ != chunkZ || !viewer.worldName.equals(worldName)) {
+            viewers.put(playerId, new Viewer(worldName, chunkX, chunkZ));
+            viewersVersion.incrementAndGet();
+        }
+    }
+
+    public static void removeViewer(UUID playerId) {
+        if (viewers.remove(playerId) != null) {
+            viewersVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * Schedules a tile render.
+     *
+     * @param task Starts the render. It receives a callback to run once the chunk has been
+     *             fetched, which lets the next request start while this one finishes rendering.
+     * @return The render result, or null if the request was dropped or cancelled
+     */
+    @Nonnull
+    public static CompletableFuture<ClaimImageBuilder> submit(@Nonnull World world, long chunkIndex,
+                                                              int imageWidth, int imageHeight,
+                                                              @Nonnull Function<Runnable, CompletableFuture<ClaimImageBuilder>> task) {
+        RequestKey key = new RequestKey(world.getName(), chunkIndex, imageWidth, imageHeight);
+        Request request = new Request(key, task);
+        Request dropRequest = null;
+        List<Request> toStart;
+        synchronized (lock) {
+            Request existing = requests.get(key);
+            if (existing != null) {
+                shared.incrementAndGet();
+                return existing.future;
+            }
+
+            requests.put(key, request);
+            refreshPositions();
+            request.distance = distance(key, positions);
+            request.sequence = nextSequence++;
+            queue.add(request);
+
+            // Queue full: drop whatever is farthest from the players, possibly this request
+            if (queue.size() > maxQueued) {
+                dropRequest = queue.pollLast();
+                requests.remove(dropRequest.key);
+                dropped.incrementAndGet();
+            }
+
+            toStart = takeStartable();
+        }
+
+        if (dropRequest != null) {
+            dropRequest.future.complete(null);
+        }
+        startAll(toStart);
+        return request.future;
+    }
+
+    public static int getQueuedCount() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    public static int getActiveCount() {
+        synchronized (lock) {
+            return requests.size() - queue.size();
+        }
+    }
+
+    public static long getSharedCount() {
+        return shared.get();
+    }
+
+    public static long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public static long getCancelledCount() {
+        return cancelled.get();
+    }
+
+    /**
+     * Picks queued requests to start, nearest first, while start slots are free.
+     * Must hold the lock.
+     */
+    private static List<Request> takeStartable() {
+        if (starting >= maxStarting || queue.isEmpty()) {
+            return List.of();
+        }
+        List<Request> result = new ArrayList<>();
+        refreshPositions();
+        while (starting < maxStarting && !queue.isEmpty()) {
+            Request request = queue.pollFirst();
+            request.hasViewers = positions.containsKey(request.key.worldName);
+            starting++;
+            result.add(request);
+        }
+        return result;
+    }
+
+    /**
+     * Takes a new snapshot of the player positions if a player moved since the last one,
+     * and re-sorts the queue by the new distances. Must hold the lock.
+     */
+    private static void refreshPositions() {
+        long version = viewersVersion.get();
+        if (version == positionsVersion) {
+            return;
+        }
+        positionsVersion = version;
+        positions = viewerPositions();
+
+        List<Request> waiting = new ArrayList<>(queue);
+        queue.clear();
+        for (Request request : waiting) {
+            request.distance = distance(request.key, positions);
+            queue.add(request);
+        }
+    }
+
+    private static void startAll(List<Request> toStart) {
+        for (Request request : toStart) {
+            executor.execute(() -> start(request));
+        }
+    }
+
+    private static void start(Request request) {
+        if (cancelDistance > 0 && request.hasViewers && request.distance > cancelDistance) {
+            cancelled.incrementAndGet();
+            finish(request, null, null);
+            return;
+        }
+
+        try {
+            request.task.apply(() -> release(request))
+                    .whenComplete((result, error) -> finish(request, result, error));
+        } catch (Throwable t) {
+            finish(request, null, t);
+        }
+    }
+
+    /**
+     * Frees the request's start slot (once) and starts the next requests.
+     */
+    private static void release(Request request) {
+        List<Request> toStart;
+        synchronized (lock) {
+            if (request.released) {
+                return;
+            }
+            request.released = true;
+            starting--;
+            toStart = takeStartable();
+        }
+        startAll(toStart);
+    }
+
+    private static void finish(Request request, @Nullable ClaimImageBuilder result, @Nullable Throwable error) {
+        release(request);
+        synchronized (lock) {
+            requests.remove(request.key, request);
+        }
+        if (error != null) {
+            if (logger != null) {
+                logger.atWarning().withCause(error).log("[Map] Failed to render chunk %d,%d",
+                        ChunkUtil.xOfChunkIndex(request.key.chunkIndex), ChunkUtil.zOfChunkIndex(request.key.chunkIndex));
+            }
+            request.future.complete(null);
+        } else {
+            request.future.complete(result);
+        }
+    }
+
+    /**
+     * Player chunk positions per world, flattened as x, z pairs.
+     */
+    private static Map<String, int[]> viewerPositions() {
+        Map<String, int[]> positions = new HashMap<>();
+        for (Viewer viewer : viewers.values()) {
+            int[] existing = positions.get(viewer.worldName);
+            int length = existing != null ? existing.length : 0;
+            int[] updated = existing != null ? Arrays.copyOf(existing, length + 2) : new int[2];
+            updated[length] = viewer.chunkX;
+            updated[length + 1] = viewer.chunkZ;
+            positions.put(viewer.worldName, updated);
+        }
+        return positions;
+    }
+
+    /**
+     * Chebyshev distance in chunks to the nearest player in the request's world;
+     * requests in worlds without players sort last.
+     */
+    private static int distance(RequestKey key, Map<String, int[]> positions) {
+        int[] worldPositions = positions.get(key.worldName);
+        if (worldPositions == null) {
+            return Integer.MAX_VALUE - 1;
+        }
+        int chunkX = ChunkUtil.xOfChunkIndex(key.chunkIndex);
+        int chunkZ = ChunkUtil.zOfChunkIndex(key.chunkIndex);
+        int nearest = Integer.MAX_VALUE - 1;
+        for (int i = 0; i < worldPositions.length; i += 2) {
+            int distance = Math.max(Math.abs(worldPositions[i] - chunkX), Math.abs(worldPositions[i + 1] - chunkZ));
+            nearest = Math.min(nearest, distance);
+        }
+        return nearest;
+    }
+
+    private static final class Request {
+        private final RequestKey key;
+        private final Function<Runnable, CompletableFuture<ClaimImageBuilder>> task;
+        private final CompletableFuture<ClaimImageBuilder> future = new CompletableFuture<>();
+        // Distance to the nearest player when last measured; only changed while not in the queue
+        private int distance;
+        private long sequence;
+        // Set when the request is taken from the queue
+        private boolean hasViewers;
+        private boolean released;
+
+        private Request(RequestKey key, Function<Runnable, CompletableFuture<ClaimImageBuilder>> task) {
+            this.key = key;
+            this.task = task;
+        }
+    }
+
+    private static final class Viewer {
+        private final String worldName;
+        private final int chunkX;
+        private final int chunkZ;
+
+        private Viewer(String worldName, int chunkX, int chunkZ) {
+            this.worldName = worldName;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+    }
+
+    private static final class RequestKey {
+        private final String worldName;
+        private final long chunkIndex;
+        private final int imageWidth;
+        private final int imageHeight;
+
+        private RequestKey(String worldName, long chunkIndex, int imageWidth, int imageHeight) {
+            this.worldName = worldName;
+            this.chunkIndex = chunkIndex;
+            this.imageWidth = imageWidth;
+            this.imageHeight = imageHeight;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof RequestKey)) return false;
+            RequestKey other = (RequestKey) o;
+            return chunkIndex == other.chunkIndex && imageWidth == other.imageWidth
+                    && imageHeight == other.imageHeight && worldName.equals(other.worldName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(worldName, chunkIndex, imageWidth, imageHeight);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.easyclaims.map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * The stages of drawing a map tile, without the world around them.
+ *
+ * ClaimImageBuilder fetches chunks, looks up claims and caches results; the work in
+ * between happens here, on plain arrays and a {@link ChunkSampleSource}:
+ *
+ * 1. sampling: heights, then block colors and fluid tints per sample
+ * 2. shading: lighting per pixel from the heights
+ * 3. claim overlay: terrain, claim tint and borders composited into pixels
+ * 4. text: owner and trusted names drawn on top
+ *
+ * Each stage can be run and measured on its own with synthetic chunks.
+ */
+public final class MapTileRenderer {
+
+    // How strongly the claim color is mixed into the terrain
+    public static final float FILL_BLEND = 0.4f;
+    public static final float BORDER_BLEND = 0.7f;
+
+    // Width of the border drawn where a neighboring chunk has another owner
+    private static final int BORDER_SIZE = 2;
+
+    // Normalized light direction for terrain shading
+    private static final float LIGHT_INV_LENGTH = 1.0F / (float) Math.sqrt(-0.2F * -0.2F + 0.8F * 0.8F + 0.5F * 0.5F);
+    private static final float LIGHT_X = -0.2F * LIGHT_INV_LENGTH;
+    private static final float LIGHT_Y = 0.8F * LIGHT_INV_LENGTH;
+    private static final float LIGHT_Z = 0.5F * LIGHT_INV_LENGTH;
+
+    private MapTileRenderer() {
+    }
+
+    /**
+     * Samples the heights of a chunk at the given spacing.
+     */
+    @Nonnull
+    public static short[] sampleHeights(@Nonnull ChunkSampleSource chunk, int sampleWidth, int sampleHeight,
+                                        int blockStepX, int blockStepZ) {
+        short[] heights = new short[sampleWidth * sampleHeight];
+        for (int iz = 0; iz < sampleHeight; ++iz) {
+            int z = iz * blockStepZ;
+            for (int ix = 0; ix < sampleWidth; ++ix) {
+                heights[iz * sampleWidth + ix] = chunk.getHeight(ix * blockStepX, z);
+            }
+        }
+        return heights;
+    }
+
+    /**
+     * Samples the block color of every sample, and the fluid tint of samples under fluid.
+     * Block colors must already be resolvable (see {@link MapColorTables#validate()}).
+     *
+     * @param baseColors Receives the unshaded color per sample, 0xRRGGBB
+     * @param fluidTints Receives the fluid tint per sample, or null if fluids.hasFluid() is false
+     * @param fluidMix   Receives how much terrain shows through the fluid, or null with fluidTints
+     */
+    public static void sampleColors(@Nonnull ChunkSampleSource chunk, @Nonnull short[] heights, @Nonnull FluidSurfaceMap fluids,
+                                    int sampleWidth, int sampleHeight, int blockStepX, int blockStepZ,
+                                    @Nonnull int[] baseColors, @Nullable int[] fluidTints, @Nullable float[] fluidMix) {
+        int sampleCount = sampleWidth * sampleHeight;
+        if (fluidMix != null) {
+            Arrays.fill(fluidMix, 0, sampleCount, 1.0F);
+        }
+        for (int sampleIndex = 0; sampleIndex < sampleCount; ++sampleIndex) {
+            int x = sampleIndex % sampleWidth * blockStepX;
+            int z = sampleIndex / sampleWidth * blockStepZ;
+            short height = heights[sampleIndex];
+            int tint = chunk.getTint(x, z);
+            int blockId = chunk.getBlock(x, height, z);
+            baseColors[sampleIndex] = MapColorTables.getBlockColor(blockId, tint);
+
+            int fluidId = fluids.getFluidId(sampleIndex);
+            if (fluidTints != null && height < 320 && fluidId != 0) {
+                int environmentId = chunk.getEnvironment(x, fluids.getTop(sampleIndex), z);
+                fluidTints[sampleIndex] = MapColorTables.getFluidTint(fluidId, environmentId);
+                fluidMix[sampleIndex] = Math.min(1.0F, 1.0F / (float) fluids.getDepth(sampleIndex));
+            }
+        }
+    }
+
+    /**
+     * Computes the lighting multiplier for every pixel of an image from sampled heights.
+     *
+     * @param heights Sampled heights with a one-sample border, (sampleWidth + 2) * (sampleHeight + 2) values
+     */
+    @Nonnull
+    public static float[] computeShades(@Nonnull short[] heights, int sampleWidth, int sampleHeight, int imageWidth, int imageHeight) {
+        float imageToSampleRatioWidth = (float) sampleWidth / (float) imageWidth;
+        float imageToSampleRatioHeight = (float) sampleHeight / (float) imageHeight;
+        int blockPixelWidth = Math.max(1, imageWidth / sampleWidth);
+        int blockPixelHeight = Math.max(1, imageHeight / sampleHeight);
+        int stride = sampleWidth + 2;
+
+        float[] shades = new float[imageWidth * imageHeight];
+        for (int ix = 0; ix < imageWidth; ++ix) {
+            for (int iz = 0; iz < imageHeight; ++iz) {
+                int sampleX = Math.min((int) ((float) ix * imageToSampleRatioWidth), sampleWidth - 1);
+                int sampleZ = Math.min((int) ((float) iz * imageToSampleRatioHeight), sampleHeight - 1);
+                int blockPixelX = ix % blockPixelWidth;
+                int blockPixelZ = iz % blockPixelHeight;
+                short height = heights[(sampleZ + 1) * stride + sampleX + 1];
+
+                short north = heights[sampleZ * stride + sampleX + 1];
+                short south = heights[(sampleZ + 2) * stride + sampleX + 1];
+                short west = heights[(sampleZ + 1) * stride + sampleX];
+                short east = heights[(sampleZ + 1) * stride + sampleX + 2];
+                short northWest = heights[sampleZ * stride + sampleX];
+                short northEast = heights[sampleZ * stride + sampleX + 2];
+                short southWest = heights[(sampleZ + 2) * stride + sampleX];
+                short southEast = heights[(sampleZ + 2) * stride + sampleX + 2];
+
+                shades[iz * imageWidth + ix] = shadeFromHeights(blockPixelX, blockPixelZ, blockPixelWidth, blockPixelHeight,
+                        height, north, south, west, east, northWest, northEast, southWest, southEast);
+            }
+        }
+        return shades;
+    }
+
+    private static float shadeFromHeights(int blockPixelX, int blockPixelZ, int blockPixelWidth, int blockPixelHeight,
+                                          short height, short north, short south, short west, short east,
+                                          short northWest, short northEast, short southWest, short southEast) {
+        float u = ((float) blockPixelX + 0.5F) / (float) blockPixelWidth;
+        float v = ((float) blockPixelZ + 0.5F) / (float) blockPixelHeight;
+        float ud = (u + v) / 2.0F;
+        float vd = (1.0F - u + v) / 2.0F;
+        float dhdx1 = (float) (height - west) * (1.0F - u) + (float) (east - height) * u;
+        float dhdz1 = (float) (height - north) * (1.0F - v) + (float) (south - height) * v;
+        float dhdx2 = (float) (height - northWest) * (1.0F - ud) + (float) (southEast - height) * ud;
+        float dhdz2 = (float) (height - northEast) * (1.0F - vd) + (float) (southWest - height) * vd;
+        float dhdx = dhdx1 * 2.0F + dhdx2;
+        float dhdz = dhdz1 * 2.0F + dhdz2;
+        float dy = 3.0F;
+        float invS = 1.0F / (float) Math.sqrt(dhdx * dhdx + dy * dy + dhdz * dhdz);
+        float nx = dhdx * invS;
+        float ny = dy * invS;
+        float nz = dhdz * invS;
+        float lambert = Math.max(0.0F, nx * LIGHT_X + ny * LIGHT_Y + nz * LIGHT_Z);
+        float ambient = 0.4F;
+        float diffuse = 0.6F;
+        return ambient + diffuse * lambert;
+    }
+
+    /**
+     * Draws terrain with the claim overlay into RGBA pixels: the owner's color mixed in,
+     * stronger along edges where the neighboring chunk has another owner.
+     *
+     * @param claimOwner   Owner of the chunk, or null if unclaimed
+     * @param nearbyOwners Owners of the chunks to the south, north, east and west
+     * @param out          Receives width * height packed RGBA pixels
+     */
+    public static void compositeClaim(@Nonnull TerrainTile terrain, @Nullable UUID claimOwner, @Nonnull UUID[] nearbyOwners,
+                                      @Nonnull int[] out, int width, int height) {
+        int sampleWidth = terrain.getSampleWidth();
+        int sampleHeight = terrain.getSampleHeight();
+        float imageToSampleRatioWidth = (float) sampleWidth / (float) width;
+        float imageToSampleRatioHeight = (float) sampleHeight / (float) height;
+        int claimRgb = ClaimColorPalette.getFill(ClaimColorPalette.idOf(claimOwner));
+
+        int[] baseColors = terrain.getBaseColors();
+        float[] shades = terrain.getShades();
+        int[] fluidTints = terrain.getFluidTints();
+        float[] fluidMix = terrain.getFluidMix();
+
+        // Which sample each image column reads from
+        RenderBuffers buffers = RenderBuffers.get();
+        int[] sampleXs = buffers.columnSamples(width);
+        for (int ix = 0; ix < width; ++ix) {
+            sampleXs[ix] = Math.min((int) ((float) ix * imageToSampleRatioWidth), sampleWidth - 1);
+        }
+
+        // Row inputs for the kernel, reused between tiles on this thread
+        int[] rowBase = buffers.rowBase(width);
+        float[] rowBlend = buffers.rowBlend(width);
+        int[] rowFluidTints = fluidTints != null ? buffers.rowFluidTints(width) : null;
+        float[] rowFluidMix = fluidTints != null ? buffers.rowFluidMix(width) : null;
+        if (claimOwner == null) {
+            Arrays.fill(rowBlend, 0, width, 0.0F);
+        }
+        CompositeKernel kernel = CompositeKernel.get();
+
+        // Generate the image row by row
+        for (int iz = 0; iz < height; ++iz) {
+            int sampleZ = Math.min((int) ((float) iz * imageToSampleRatioHeight), sampleHeight - 1);
+            int sampleRow = sampleZ * sampleWidth;
+
+            for (int ix = 0; ix < width; ++ix) {
+                int sampleIndex = sampleRow + sampleXs[ix];
+                rowBase[ix] = baseColors[sampleIndex];
+                if (rowFluidTints != null) {
+                    rowFluidTints[ix] = fluidTints[sampleIndex];
+                    rowFluidMix[ix] = fluidMix[sampleIndex];
+                }
+
+                // Apply claim overlay if this chunk is claimed
+                if (claimOwner != null) {
+                    boolean isBorder = false;
+
+                    // Check if this pixel is on a border where the adjacent chunk has a different owner
+                    if ((ix <= BORDER_SIZE && !Objects.equals(claimOwner, nearbyOwners[3])) // WEST border
+                            || (ix >= width - BORDER_SIZE - 1 && !Objects.equals(claimOwner, nearbyOwners[2])) // EAST border
+                            || (iz <= BORDER_SIZE && !Objects.equals(claimOwner, nearbyOwners[1])) // NORTH border
+                            || (iz >= height - BORDER_SIZE - 1 && !Objects.equals(claimOwner, nearbyOwners[0]))) { // SOUTH border
+                        isBorder = true;
+                    }
+
+                    // Border pixels get a stronger tint
+                    rowBlend[ix] = isBorder ? BORDER_BLEND : FILL_BLEND;
+                }
+            }
+
+            // Claim tint, shading and fluid tint for the whole row
+            kernel.compositeRow(rowBase, rowBlend, claimRgb, shades, iz * width,
+                    rowFluidTints, rowFluidMix, out, iz * width, width);
+        }
+    }
+
+    /**
+     * Draws the owner name (white) and trusted names (yellow) centered on RGBA pixels.
+     * Text may extend beyond the tile.
+     */
+    public static void drawLabels(@Nonnull List<String> names, @Nonnull int[] pixels, int width, int height) {
+        // Calculate vertical positioning
+        int lineHeight = BitmapFont.CHAR_HEIGHT + 2; // 7 + 2 = 9 pixels per line
+        int totalLines = names.size(); // Owner + up to 2 trusted
+        int y = (height - (totalLines * lineHeight)) / 2;
+
+        // Owner in white, trusted players in yellow, all with a black outline
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            if (name != null) {
+                LabelSpriteCache.get(name, i == 0 ? BitmapFont.WHITE : BitmapFont.YELLOW)
+                        .drawCentered(pixels, width, height, y);
+            }
+            y += lineHeight;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.easyclaims.map;
+
+/**
+ * Scratch buffers for map rendering, one set per thread.
+ *
+ * Rendering a map view draws thousands of tiles, and each one used to allocate its row and
+ * sample buffers. Those arrays only live for the duration of a single call on a single
+ * thread, so each render thread keeps one of each and grows it when a larger tile comes
+ * along. Contents are not cleared between uses; callers overwrite what they read.
+ *
+ * Arrays that outlive the call (tile images, TerrainTile data) are still allocated per tile.
+ */
+public final class RenderBuffers {
+
+    // Buffers above this many elements are not kept, so a one-off huge image can't pin memory
+    private static final int MAX_KEPT_LENGTH = 64 * 1024;
+
+    private static final ThreadLocal<RenderBuffers> BUFFERS = ThreadLocal.withInitial(RenderBuffers::new);
+
+    private int[] rowBase = new int[0];
+    private float[] rowBlend = new float[0];
+    private int[] rowFluidTints = new int[0];
+    private float[] rowFluidMix = new float[0];
+    private int[] columnSamples = new int[0];
+    private byte[] fluidState = new byte[0];
+    private short[] fluidBottoms = new short[0];
+
+    private RenderBuffers() {
+    }
+
+    /**
+     * Gets the buffers of the current thread.
+     */
+    public static RenderBuffers get() {
+        return BUFFERS.get();
+    }
+
+    /**
+     * Unshaded color per pixel of the row being composited.
+     */
+    public int[] rowBase(int length) {
+        if (rowBase.length < length) {
+            int[] buffer = new int[length];
+            if (length > MAX_KEPT_LENGTH) return buffer;
+            rowBase = buffer;
+        }
+        return rowBase;
+    }
+
+    /**
+     * Claim blend factor per pixel of the row being composited.
+     */
+    public float[] rowBlend(int length) {
+        if (rowBlend.length < length) {
+            float[] buffer = new float[length];
+            if (length > MAX_KEPT_LENGTH) return buffer;
+            rowBlend = buffer;
+        }
+        return rowBlend;
+    }
+
+    public int[] rowFluidTints(int length) {
+        if (rowFluidTints.length < length) {
+            int[] buffer = new int[length];
+            if (length > MAX_KEPT_LENGTH) return buffer;
+            rowFluidTints = buffer;
+        }
+        return rowFluidTints;
+    }
+
+    public float[] rowFluidMix(int length) {
+        if (rowFluidMix.length < length) {
+            float[] buffer = new float[length];
+            if (length > MAX_KEPT_LENGTH) return buffer;
+            rowFluidMix = buffer;
+        }
+        return rowFluidMix;
+    }
+
+    /**
+     * Sample column for each image column.
+     */
+    public int[] columnSamples(int length) {
+        if (columnSamples.length < length) {
+            int[] buffer = new int[length];
+            if (length > MAX_KEPT_LENGTH) return buffer;
+            columnSamples = buffer;
+        }
+        return columnSamples;
+    }
+
+    /**
+     * Per-sample walk state for {@link FluidSurfaceMap#compute}.
+     */
+    public byte[] fluidState(int length) {
+        if (fluidState.length < length) {
+            byte[] buffer = new byte[length];
+            if (length > MAX_KEPT_LENGTH) return buffer;
+            fluidState = buffer;
+        }
+        return fluidState;
+    }
+
+    /**
+     * Per-sample fluid bottom for {@link FluidSurfaceMap#compute}.
+     */
+    public short[] fluidBottoms(int length) {
+        if (fluidBottoms.length < length) {
+            short[] buffer = new short[length];
+            if (length > MAX_KEPT_LENGTH) return buffer;
+            fluidBottoms = buffer;
+        }
+        return fluidBottoms;
+    }
+}
@@ -0,0 +1,123 @@
+package com.easyclaims.map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Lower levels of detail for zoomed-out map views.
+ *
+ * A tile for a smaller image samples every n-th block, which is a subset of the samples of
+ * a finer tile of the same chunk. So a coarse tile can be taken from any cached finer tile
+ * (in memory or on disk) without touching the chunk; only the shading is recomputed. The
+ * result matches a direct render except for the shading of the outermost pixels, which
+ * uses the finer tile's neighbor heights.
+ *
+ * Below a configurable image size, chunks without any cached terrain are drawn as
+ * claim-only tiles (a flat background with the claim overlay), so a zoomed-out view of a
+ * large area doesn't load every chunk in it.
+ */
+public class TerrainLod {
+
+    // Background of claim-only tiles
+    private static final int CLAIM_ONLY_BACKGROUND = 0x4A5A3C;
+
+    // Images smaller than this (in pixels) use claim-only tiles when no terrain is cached, 0 = never
+    private static volatile int claimOnlyBelowSize = 0;
+
+    public static void init(int claimOnlyBelow) {
+        claimOnlyBelowSize = Math.max(0, claimOnlyBelow);
+    }
+
+    /**
+     * Checks whether tiles of this size may be drawn without terrain.
+     */
+    public static boolean isClaimOnly(int imageWidth, int imageHeight) {
+        int threshold = claimOnlyBelowSize;
+        return imageWidth < threshold || imageHeight < threshold;
+    }
+
+    /**
+     * Checks whether a tile with the given samples can be downsampled for an image size.
+     */
+    public static boolean canDownsample(int sampleWidth, int sampleHeight, int imageWidth, int imageHeight) {
+        int targetWidth = Math.min(32, imageWidth);
+        int targetHeight = Math.min(32, imageHeight);
+        return sampleWidth >= targetWidth && sampleHeight >= targetHeight
+                && sampleWidth % targetWidth == 0 && sampleHeight % targetHeight == 0;
+    }
+
+    /**
+     * Takes a coarser tile from a finer one. Check {@link #canDownsample} first.
+     * The coarser tile is as old as the finer one, so it expires with it.
+     */
+    @Nonnull
+    public static TerrainTile downsample(@Nonnull TerrainTile fine, int imageWidth, int imageHeight) {
+        return downsample(fine.getHeights(), fine.getBaseColors(), fine.getFluidTints(), fine.getFluidMix(),
+                fine.getSampleWidth(), fine.getSampleHeight(), imageWidth, imageHeight, fine.getCreatedAt());
+    }
+
+    /**
+     * Takes a coarser tile from finer sample data. Check {@link #canDownsample} first.
+     *
+     * @param heights   Heights with a one-sample border, (sampleWidth + 2) * (sampleHeight + 2) values
+     * @param createdAt When the sample data was rendered
+     */
+    @Nonnull
+    public static TerrainTile downsample(@Nonnull short[] heights, @Nonnull int[] baseColors,
+                                         @Nullable int[] fluidTints, @Nullable float[] fluidMix,
+                                         int sampleWidth, int sampleHeight, int imageWidth, int imageHeight,
+                                         long createdAt) {
+        int targetWidth = Math.min(32, imageWidth);
+        int targetHeight = Math.min(32, imageHeight);
+        int stepX = sampleWidth / targetWidth;
+        int stepZ = sampleHeight / targetHeight;
+        int stride = sampleWidth + 2;
+        int targetStride = targetWidth + 2;
+
+        // Heights including the border: the border rows and columns map onto the fine border
+        short[] targetHeights = new short[targetStride * (targetHeight + 2)];
+        for (int gz = 0; gz < targetHeight + 2; ++gz) {
+            int fineZ = gz == 0 ? 0 : gz == targetHeight + 1 ? sampleHeight + 1 : (gz - 1) * stepZ + 1;
+            for (int gx = 0; gx < targetWidth + 2; ++gx) {
+                int fineX = gx == 0 ? 0 : gx == targetWidth + 1 ? sampleWidth + 1 : (gx - 1) * stepX + 1;
+                targetHeights[gz * targetStride + gx] = heights[fineZ * stride + fineX];
+            }
+        }
+
+        int targetCount = targetWidth * targetHeight;
+        int[] targetColors = new int[targetCount];
+        int[] targetTints = fluidTints != null ? new int[targetCount] : null;
+        float[] targetMix = fluidTints != null ? new float[targetCount] : null;
+        for (int iz = 0; iz < targetHeight; ++iz) {
+            for (int ix = 0; ix < targetWidth; ++ix) {
+                int fineIndex = iz * stepZ * sampleWidth + ix * stepX;
+                int index = iz * targetWidth + ix;
+                targetColors[index] = baseColors[fineIndex];
+                if (targetTints != null) {
+                    targetTints[index] = fluidTints[fineIndex];
+                    targetMix[index] = fluidMix[fineIndex];
+                }
+            }
+        }
+
+        float[] shades = MapTileRenderer.computeShades(targetHeights, targetWidth, targetHeight, imageWidth, imageHeight);
+        return new TerrainTile(imageWidth, imageHeight, targetWidth, targetHeight,
+                targetHeights, targetColors, shades, targetTints, targetMix, createdAt);
+    }
+
+    /**
+     * A flat, unshaded tile for drawing claims without terrain.
+     */
+    @Nonnull
+    public static TerrainTile claimOnly(int imageWidth, int imageHeight) {
+        int sampleWidth = Math.min(32, imageWidth);
+        int sampleHeight = Math.min(32, imageHeight);
+        int[] baseColors = new int[sampleWidth * sampleHeight];
+        Arrays.fill(baseColors, CLAIM_ONLY_BACKGROUND);
+        float[] shades = new float[imageWidth * imageHeight];
+        Arrays.fill(shades, 1.0F);
+        return new TerrainTile(imageWidth, imageHeight, sampleWidth, sampleHeight,
+                new short[(sampleWidth + 2) * (sampleHeight + 2)], baseColors, shades, null, null, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,102 @@
+package com.easyclaims.map;
+
+import javax.annotation.Nullable;
+
+/**
+ * The terrain part of a rendered map tile, kept separately from the claim overlay.
+ *
+ * Holds everything ClaimImageBuilder needs to redraw a tile without touching the chunk:
+ * the unshaded block color per sample, the shade per pixel, and the fluid tint per sample.
+ * Claim colors are blended in before shading and fluid tinting, so keeping those steps
+ * apart lets a recomposite produce exactly the same pixels as a full render.
+ */
+public class TerrainTile {
+    private final int imageWidth;
+    private final int imageHeight;
+    private final int sampleWidth;
+    private final int sampleHeight;
+    private final short[] heights;
+    private final int[] baseColors;
+    private final float[] shades;
+    @Nullable
+    private final int[] fluidTints;
+    @Nullable
+    private final float[] fluidMix;
+    private final long createdAt;
+
+    /**
+     * @param heights    Sampled heights including a one-sample border from the neighboring chunks,
+     *                   (sampleWidth + 2) * (sampleHeight + 2) values
+     * @param baseColors Unshaded block color per sample, packed 0xRRGGBB
+     * @param shades     Lighting multiplier per pixel
+     * @param fluidTints Fluid tint per sample packed 0xRRGGBB, or null if the tile has no fluid
+     * @param fluidMix   How much of the terrain shows through the fluid per sample (1 = no fluid)
+     */
+    public TerrainTile(int imageWidth, int imageHeight, int sampleWidth, int sampleHeight,
+                       short[] heights, int[] baseColors, float[] shades, @Nullable int[] fluidTints, @Nullable float[] fluidMix,
+                       long createdAt) {
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        this.sampleWidth = sampleWidth;
+        this.sampleHeight = sampleHeight;
+        this.heights = heights;
+        this.baseColors = baseColors;
+        this.shades = shades;
+        this.fluidTints = fluidTints;
+        this.fluidMix = fluidMix;
+        this.createdAt = createdAt;
+    }
+
+    public int getImageWidth() {
+        return imageWidth;
+    }
+
+    public int getImageHeight() {
+        return imageHeight;
+    }
+
+    public int getSampleWidth() {
+        return sampleWidth;
+    }
+
+    public int getSampleHeight() {
+        return sampleHeight;
+    }
+
+    public short[] getHeights() {
+        return heights;
+    }
+
+    public int[] getBaseColors() {
+        return baseColors;
+    }
+
+    public float[] getShades() {
+        return shades;
+    }
+
+    @Nullable
+    public int[] getFluidTints() {
+        return fluidTints;
+    }
+
+    @Nullable
+    public float[] getFluidMix() {
+        return fluidMix;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public boolean hasFluid() {
+        return fluidTints != null;
+    }
+
+    /**
+     * Checks whether this tile was rendered for the given image size.
+     */
+    public boolean matches(int width, int height) {
+        return imageWidth == width && imageHeight == height;
+    }
+}
@@ -0,0 +1,192 @@
+package com.easyclaims.map;
+
+import com.hypixel.hytale.math.util.ChunkUtil;
+
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * In-memory cache of rendered terrain per chunk, shared by all map builders.
+ *
+ * Claim changes only need the overlay redrawn, so ClaimImageBuilder composites the
+ * claim colors, borders and names on top of a cached TerrainTile instead of sampling
+ * the chunk again. Tiles are dropped when blocks in (or on the edge of) the chunk
+ * change, and also expire after a while to pick up changes we don't see as events.
+ *
+ * Renders read {@link #getGeneration} before sampling the chunk and pass it back to
+ * {@link #put}, so a tile rendered while its chunk changed is not cached.
+ */
+public class TerrainTileCache {
+
+    // Upper bound on cached tiles; least recently used tiles are evicted first
+    private static final int MAX_TILES = 2048;
+
+    // Tiles older than this are re-rendered
+    private static final long MAX_AGE_MS = 10 * 60 * 1000L;
+
+    private static final Map<TileKey, TerrainTile> tiles = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TileKey, TerrainTile> eldest) {
+            return size() > MAX_TILES;
+        }
+    };
+
+    // Chunks invalidated recently, with the invalidation count at that time (oldest first)
+    private static final int MAX_INVALIDATED = 4096;
+    private static final Map<TileKey, Long> invalidated = new LinkedHashMap<>(256, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TileKey, Long> eldest) {
+            if (size() > MAX_INVALIDATED) {
+                evictedGeneration = eldest.getValue();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    // Number of invalidations so far, and the latest one no longer in the invalidated map
+    private static long generation;
+    private static long evictedGeneration;
+
+    /**
+     * Gets the cached terrain for a chunk, or null if it has to be rendered.
+     * A tile cached for a larger image is downsampled (see {@link TerrainLod}).
+     */
+    @Nullable
+    public static TerrainTile get(String worldName, long chunkIndex, int imageWidth, int imageHeight) {
+        TileKey key = new TileKey(worldName, chunkIndex);
+        TerrainTile tile;
+        synchronized (tiles) {
+            tile = tiles.get(key);
+            if (tile == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() - tile.getCreatedAt() > MAX_AGE_MS) {
+                tiles.remove(key);
+                return null;
+            }
+        }
+        if (tile.matches(imageWidth, imageHeight)) {
+            return tile;
+        }
+        if (TerrainLod.canDownsample(tile.getSampleWidth(), tile.getSampleHeight(), imageWidth, imageHeight)) {
+            return TerrainLod.downsample(tile, imageWidth, imageHeight);
+        }
+        return null;
+    }
+
+    /**
+     * Gets the current generation of the cache, to pass to {@link #put} once rendered.
+     */
+    public static long getGeneration() {
+        synchronized (tiles) {
+            return generation;
+        }
+    }
+
+    /**
+     * Caches the terrain of a chunk. A finer tile already cached for the chunk is kept,
+     * since coarser tiles can be taken from it.
+     *
+     * @param renderGeneration The generation read with {@link #getGeneration} before rendering started
+     */
+    public static void put(String worldName, long chunkIndex, long renderGeneration, TerrainTile tile) {
+        TileKey key = new TileKey(worldName, chunkIndex);
+        synchronized (tiles) {
+            Long lastInvalidated = invalidated.get(key);
+            if ((lastInvalidated != null ? lastInvalidated : evictedGeneration) > renderGeneration) {
+                return; // Chunk was modified while rendering
+            }
+            TerrainTile existing = tiles.get(key);
+            if (existing != null && !existing.matches(tile.getImageWidth(), tile.getImageHeight())
+                    && existing.getSampleWidth() >= tile.getSampleWidth()
+                    && existing.getSampleHeight() >= tile.getSampleHeight()
+                    && System.currentTimeMillis() - existing.getCreatedAt() <= MAX_AGE_MS) {
+                return;
+            }
+            tiles.put(key, tile);
+        }
+    }
+
+    /**
+     * Drops the cached terrain for a chunk, in memory and on disk.
+     */
+    public static void invalidateChunk(String worldName, int chunkX, int chunkZ) {
+        long chunkIndex = ChunkUtil.indexChunk(chunkX, chunkZ);
+        TileKey key = new TileKey(worldName, chunkIndex);
+        synchronized (tiles) {
+            tiles.remove(key);
+            invalidated.remove(key);
+            invalidated.put(key, ++generation);
+        }
+        TerrainTileStore.invalidate(worldName, chunkIndex);
+    }
+
+    /**
+     * Drops the cached terrain affected by a block change.
+     * Blocks on a chunk edge also affect the shading of the neighboring tile.
+     */
+    public static void invalidateBlock(String worldName, int blockX, int blockZ) {
+        int chunkX = ChunkUtil.chunkCoordinate(blockX);
+        int chunkZ = ChunkUtil.chunkCoordinate(blockZ);
+
+        int minDx = blockX == ChunkUtil.minBlock(chunkX) ? -1 : 0;
+        int maxDx = blockX == ChunkUtil.maxBlock(chunkX) ? 1 : 0;
+        int minDz = blockZ == ChunkUtil.minBlock(chunkZ) ? -1 : 0;
+        int maxDz = blockZ == ChunkUtil.maxBlock(chunkZ) ? 1 : 0;
+
+        for (int dx = minDx; dx <= maxDx; dx++) {
+            for (int dz = minDz; dz <= maxDz; dz++) {
+                invalidateChunk(worldName, chunkX + dx, chunkZ + dz);
+            }
+        }
+    }
+
+    /**
+     * Drops all cached terrain for a world (e.g. when it is removed).
+     */
+    public static void clearWorld(String worldName) {
+        synchronized (tiles) {
+            tiles.keySet().removeIf((key) -> key.worldName.equals(worldName));
+            evictedGeneration = ++generation; // Renders still running are not cached
+        }
+    }
+
+    public static void clear() {
+        synchronized (tiles) {
+            tiles.clear();
+            evictedGeneration = ++generation;
+        }
+    }
+
+    public static int size() {
+        synchronized (tiles) {
+            return tiles.size();
+        }
+    }
+
+    private static final class TileKey {
+        private final String worldName;
+        private final long chunkIndex;
+
+        private TileKey(String worldName, long chunkIndex) {
+            this.worldName = worldName;
+            this.chunkIndex = chunkIndex;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TileKey)) return false;
+            TileKey other = (TileKey) o;
+            return chunkIndex == other.chunkIndex && worldName.equals(other.worldName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(worldName, chunkIndex);
+        }
+    }
+}
@@ -0,0 +1,484 @@
+package com.easyclaims.map;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.math.util.ChunkUtil;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Persists rendered terrain tiles to disk so the map can be served after a restart
+ * without loading chunks.
+ *
+ * Tiles are stored in region files (terrain/&lt;world&gt;/r.&lt;rx&gt;.&lt;rz&gt;.tiles), one per
+ * 32x32 chunk area, with a fixed-size slot per chunk. Files are memory-mapped and
+ * never compacted; unused slots stay sparse on disk.
+ *
+ * Only the sampled data is stored (heights, block colors, fluid tints), not the pixels,
+ * so a stored tile can be used for any map scale. Each slot carries two generation
+ * stamps: the chunk's current generation, bumped whenever the chunk is modified, and
+ * the generation the stored tile was rendered at. A tile is only used while they match.
+ *
+ * Chunks are modified on the world thread, so bumping a generation only counts it in
+ * memory; the counts are added to the region file the next time the chunk's slot is
+ * read or written, and when regions are closed.
+ */
+public class TerrainTileStore {
+
+    private static final int REGION_SIZE = 32;
+    private static final int SLOTS_PER_REGION = REGION_SIZE * REGION_SIZE;
+
+    private static final int MAGIC = 0x45435454; // "ECTT"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 16;
+
+    // Slot layout: flags(4) currentGen(8) renderedGen(8) timestamp(8) sampleW(2) sampleH(2) hasFluid(1), then data
+    private static final int SLOT_SIZE = 16 * 1024;
+    private static final int SLOT_HEADER_SIZE = 40;
+    private static final int OFFSET_FLAGS = 0;
+    private static final int OFFSET_CURRENT_GEN = 4;
+    private static final int OFFSET_RENDERED_GEN = 12;
+    private static final int OFFSET_TIMESTAMP = 20;
+    private static final int OFFSET_SAMPLE_WIDTH = 28;
+    private static final int OFFSET_SAMPLE_HEIGHT = 30;
+    private static final int OFFSET_HAS_FLUID = 32;
+    private static final int FLAG_PRESENT = 1;
+
+    private static final long REGION_FILE_SIZE = FILE_HEADER_SIZE + (long) SLOTS_PER_REGION * SLOT_SIZE;
+
+    // Regions kept mapped at once; older ones are flushed and dropped
+    private static final int MAX_OPEN_REGIONS = 64;
+
+    private static Path directory;
+    private static long maxAgeMs;
+    private static HytaleLogger logger;
+
+    private static final Map<String, Region> regions = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Region> eldest) {
+            if (size() > MAX_OPEN_REGIONS) {
+                eldest.getValue().flush();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    // Generation bumps not yet written to the region files
+    private static final Map<ChunkKey, Long> pendingBumps = new ConcurrentHashMap<>();
+
+    /**
+     * Enables the store. Called during plugin startup when the persistent map cache is on.
+     *
+     * @param dataDirectory Plugin data directory; tiles go in a "terrain" folder inside it
+     * @param maxAgeHours   Stored tiles older than this are re-rendered (0 = no limit)
+     */
+    public static void init(Path dataDirectory, int maxAgeHours, HytaleLogger log) {
+        directory = dataDirectory.resolve("terrain");
+        maxAgeMs = maxAgeHours > 0 ? maxAgeHours * 60L * 60L * 1000L : 0;
+        logger = log;
+    }
+
+    public static boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Gets the current generation of a chunk. Pass it to {@link #save} so a tile rendered
+     * while the chunk was being modified is not used.
+     */
+    public static long getGeneration(String worldName, long chunkIndex) {
+        if (!isEnabled()) {
+            return 0;
+        }
+        synchronized (regions) {
+            return currentGeneration(worldName, chunkIndex, getRegion(worldName, chunkIndex, false));
+        }
+    }
+
+    /**
+     * Gets the generation a chunk's stored tile was rendered at, or -1 if there is no
+     * usable stored tile. Changes whenever the stored terrain changes.
+     */
+    public static long getRenderedGeneration(String worldName, long chunkIndex) {
+        if (!isEnabled()) {
+            return -1;
+        }
+        synchronized (regions) {
+            Region region = getRegion(worldName, chunkIndex, false);
+            if (region == null) {
+                return -1;
+            }
+            ByteBuffer buffer = region.buffer;
+            int slot = slotOffset(chunkIndex);
+            long rendered = buffer.getLong(slot + OFFSET_RENDERED_GEN);
+            if (buffer.getInt(slot + OFFSET_FLAGS) != FLAG_PRESENT || rendered != currentGeneration(worldName, chunkIndex, region)) {
+                return -1;
+            }
+            return rendered;
+        }
+    }
+
+    /**
+     * Marks a chunk as modified; its stored tile will not be used anymore, nor a tile
+     * whose rendering already started. Never blocks on the store or the disk.
+     */
+    public static void invalidate(String worldName, long chunkIndex) {
+        if (!isEnabled()) {
+            return;
+        }
+        pendingBumps.merge(new ChunkKey(worldName, chunkIndex), 1L, Long::sum);
+    }
+
+    /**
+     * Stores a rendered tile.
+     *
+     * @param generation The chunk generation read with {@link #getGeneration} before rendering started
+     */
+    public static void save(String worldName, long chunkIndex, long generation, TerrainTile tile) {
+        if (!isEnabled()) {
+            return;
+        }
+        int sampleCount = tile.getSampleWidth() * tile.getSampleHeight();
+        int dataSize = tile.getHeights().length * 2 + sampleCount * 4 + (tile.hasFluid() ? sampleCount * 8 : 0);
+        if (SLOT_HEADER_SIZE + dataSize > SLOT_SIZE) {
+            return; // Larger than a slot - only happens for unusual map scales
+        }
+
+        synchronized (regions) {
+            Region region = getRegion(worldName, chunkIndex, true);
+            if (region == null) {
+                return;
+            }
+            ByteBuffer buffer = region.buffer;
+            int slot = slotOffset(chunkIndex);
+            if (currentGeneration(worldName, chunkIndex, region) != generation) {
+                return; // Chunk was modified while rendering
+            }
+            if (buffer.getInt(slot + OFFSET_FLAGS) == FLAG_PRESENT
+                    && buffer.getLong(slot + OFFSET_RENDERED_GEN) == generation
+                    && buffer.getShort(slot + OFFSET_SAMPLE_WIDTH) > tile.getSampleWidth()
+                    && (maxAgeMs <= 0 || System.currentTimeMillis() - buffer.getLong(slot + OFFSET_TIMESTAMP) <= maxAgeMs)) {
+                return; // Keep the finer tile, coarser ones are taken from it
+            }
+
+            ByteBuffer data = buffer.slice(slot + SLOT_HEADER_SIZE, dataSize);
+            data.asShortBuffer().put(tile.getHeights());
+            data.position(tile.getHeights().length * 2);
+            data.slice().asIntBuffer().put(tile.getBaseColors());
+            if (tile.hasFluid()) {
+                data.position(data.position() + sampleCount * 4);
+                data.slice().asIntBuffer().put(tile.getFluidTints());
+                data.position(data.position() + sampleCount * 4);
+                data.slice().asFloatBuffer().put(tile.getFluidMix());
+            }
+
+            buffer.putLong(slot + OFFSET_RENDERED_GEN, generation);
+            buffer.putLong(slot + OFFSET_TIMESTAMP, System.currentTimeMillis());
+            buffer.putShort(slot + OFFSET_SAMPLE_WIDTH, (short) tile.getSampleWidth());
+            buffer.putShort(slot + OFFSET_SAMPLE_HEIGHT, (short) tile.getSampleHeight());
+            buffer.put(slot + OFFSET_HAS_FLUID, (byte) (tile.hasFluid() ? 1 : 0));
+            buffer.putInt(slot + OFFSET_FLAGS, FLAG_PRESENT);
+        }
+    }
+
+    /**
+     * Loads a stored tile for the given image size, or null if there is no usable tile.
+     */
+    @Nullable
+    public static TerrainTile load(String worldName, long chunkIndex, int imageWidth, int imageHeight) {
+        if (!isEnabled()) {
+            return null;
+        }
+        int storedWidth;
+        int storedHeight;
+        int sampleCount;
+
+        short[] heights;
+        int[] baseColors;
+        int[] fluidTints = null;
+        float[] fluidMix = null;
+
+        synchronized (regions) {
+            Region region = getRegion(worldName, chunkIndex, false);
+            if (region == null) {
+                return null;
+            }
+            ByteBuffer buffer = region.buffer;
+            int slot = slotOffset(chunkIndex);
+            if (buffer.getInt(slot + OFFSET_FLAGS) != FLAG_PRESENT
+                    || buffer.getLong(slot + OFFSET_RENDERED_GEN) != currentGeneration(worldName, chunkIndex, region)) {
+                return null;
+            }
+            // A tile stored for a larger image can be downsampled
+            storedWidth = buffer.getShort(slot + OFFSET_SAMPLE_WIDTH);
+            storedHeight = buffer.getShort(slot + OFFSET_SAMPLE_HEIGHT);
+            if (!TerrainLod.canDownsample(storedWidth, storedHeight, imageWidth, imageHeight)) {
+                return null;
+            }
+            if (maxAgeMs > 0 && System.currentTimeMillis() - buffer.getLong(slot + OFFSET_TIMESTAMP) > maxAgeMs) {
+                return null;
+            }
+            boolean hasFluid = buffer.get(slot + OFFSET_HAS_FLUID) != 0;
+
+            sampleCount = storedWidth * storedHeight;
+            heights = new short[(storedWidth + 2) * (storedHeight + 2)];
+            baseColors = new int[sampleCount];
+            int dataSize = heights.length * 2 + sampleCount * 4 + (hasFluid ? sampleCount * 8 : 0);
+
+            ByteBuffer data = buffer.slice(slot + SLOT_HEADER_SIZE, dataSize);
+            data.asShortBuffer().get(heights);
+            data.position(heights.length * 2);
+            data.slice().asIntBuffer().get(baseColors);
+            if (hasFluid) {
+                fluidTints = new int[sampleCount];
+                fluidMix = new float[sampleCount];
+                data.position(data.position() + sampleCount * 4);
+                data.slice().asIntBuffer().get(fluidTints);
+                data.position(data.position() + sampleCount * 4);
+                data.slice().asFloatBuffer().get(fluidMix);
+            }
+        }
+
+        if (storedWidth != Math.min(32, imageWidth) || storedHeight != Math.min(32, imageHeight)) {
+            return TerrainLod.downsample(heights, baseColors, fluidTints, fluidMix, storedWidth, storedHeight,
+                    imageWidth, imageHeight, System.currentTimeMillis());
+        }
+        float[] shades = MapTileRenderer.computeShades(heights, storedWidth, storedHeight, imageWidth, imageHeight);
+        return new TerrainTile(imageWidth, imageHeight, storedWidth, storedHeight,
+                heights, baseColors, shades, fluidTints, fluidMix, System.currentTimeMillis());
+    }
+
+    /**
+     * Flushes and closes all open region files (called on shutdown).
+     */
+    public static void close() {
+        synchronized (regions) {
+            writePendingBumps(null);
+            for (Region region : regions.values()) {
+                region.flush();
+            }
+            regions.clear();
+        }
+    }
+
+    /**
+     * Drops the open region files of a world (e.g. when it is removed).
+     */
+    public static void closeWorld(String worldName) {
+        synchronized (regions) {
+            writePendingBumps(worldName);
+            List<String> keys = new ArrayList<>();
+            for (String key : regions.keySet()) {
+                if (key.startsWith(worldName + "/")) {
+                    keys.add(key);
+                }
+            }
+            for (String key : keys) {
+                regions.remove(key).flush();
+            }
+        }
+    }
+
+    /**
+     * Drops all stored tiles, e.g. after the map colors changed, by deleting the region files.
+     */
+    public static void clear() {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (regions) {
+            close();
+            if (!Files.isDirectory(directory)) {
+                return;
+            }
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    if (!file.getFileName().toString().endsWith(".tiles")) {
+                        continue;
+                    }
+                    try {
+                        Files.delete(file);
+                    } catch (IOException e) {
+                        // Still mapped somewhere (e.g. on Windows): break the header instead,
+                        // so its slots are reset the next time it is opened
+                        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                            channel.write(ByteBuffer.allocate(4), 0);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                if (logger != null) {
+                    logger.atWarning().withCause(e).log("[Map] Could not clear terrain cache in %s", directory);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets a chunk's current generation, adding any pending bumps to its slot first.
+     * Must be called while holding the regions lock.
+     *
+     * @param region The chunk's region, or null if it has no region file yet
+     */
+    private static long currentGeneration(String worldName, long chunkIndex, @Nullable Region region) {
+        ChunkKey key = new ChunkKey(worldName, chunkIndex);
+        if (region == null) {
+            return pendingBumps.getOrDefault(key, 0L);
+        }
+        int offset = slotOffset(chunkIndex) + OFFSET_CURRENT_GEN;
+        long generation = region.buffer.getLong(offset);
+        Long bumps = pendingBumps.remove(key);
+        if (bumps != null) {
+            generation += bumps;
+            region.buffer.putLong(offset, generation);
+        }
+        return generation;
+    }
+
+    /**
+     * Writes pending generation bumps to the region files that exist. Bumps of chunks
+     * without a region file are dropped, as there is no stored tile they could outdate.
+     * Must be called while holding the regions lock.
+     *
+     * @param worldName Only write the bumps of this world, or null for all worlds
+     */
+    private static void writePendingBumps(@Nullable String worldName) {
+        Iterator<ChunkKey> keys = pendingBumps.keySet().iterator();
+        while (keys.hasNext()) {
+            ChunkKey key = keys.next();
+            if (worldName == null || key.worldName.equals(worldName)) {
+                Region region = getRegion(key.worldName, key.chunkIndex, false);
+                if (region != null) {
+                    currentGeneration(key.worldName, key.chunkIndex, region);
+                } else {
+                    keys.remove();
+                }
+            }
+        }
+    }
+
+    private static int slotOffset(long chunkIndex) {
+        int localX = Math.floorMod(ChunkUtil.xOfChunkIndex(chunkIndex), REGION_SIZE);
+        int localZ = Math.floorMod(ChunkUtil.zOfChunkIndex(chunkIndex), REGION_SIZE);
+        return FILE_HEADER_SIZE + (localZ * REGION_SIZE + localX) * SLOT_SIZE;
+    }
+
+    /**
+     * Gets the mapped region containing a chunk. Must be called while holding the regions lock.
+     *
+     * @param create Whether to create the region file if it doesn't exist
+     */
+    @Nullable
+    private static Region getRegion(String worldName, long chunkIndex, boolean create) {
+        int regionX = Math.floorDiv(ChunkUtil.xOfChunkIndex(chunkIndex), REGION_SIZE);
+        int regionZ = Math.floorDiv(ChunkUtil.zOfChunkIndex(chunkIndex), REGION_SIZE);
+        String key = worldName + "/" + regionX + "," + regionZ;
+
+        Region region = regions.get(key);
+        if (region != null) {
+            return region;
+        }
+
+        Path file = directory.resolve(sanitize(worldName)).resolve("r." + regionX + "." + regionZ + ".tiles");
+        if (!create && !Files.exists(file)) {
+            return null;
+        }
+
+        try {
+            region = Region.open(file);
+            regions.put(key, region);
+            return region;
+        } catch (IOException e) {
+            if (logger != null) {
+                logger.atWarning().withCause(e).log("[Map] Could not open terrain cache file %s", file);
+            }
+            return null;
+        }
+    }
+
+    private static String sanitize(String worldName) {
+        return worldName.replaceAll("[^A-Za-z0-9_.-]", "_");
+    }
+
+    /**
+     * A memory-mapped region file.
+     */
+    private static final class Region {
+        private final MappedByteBuffer buffer;
+
+        private Region(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        static Region open(Path file) throws IOException {
+            Files.createDirectories(file.getParent());
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                boolean fresh = channel.size() < FILE_HEADER_SIZE;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, REGION_FILE_SIZE);
+
+                boolean compatible = !fresh && buffer.getInt(0) == MAGIC
+                        && buffer.getInt(4) == VERSION && buffer.getInt(8) == SLOT_SIZE;
+                if (!compatible) {
+                    // A new file reads as zeros; only one written by an incompatible version
+                    // needs its slots reset (touching every slot's page)
+                    if (!fresh) {
+                        for (int i = 0; i < SLOTS_PER_REGION; i++) {
+                            buffer.putInt(FILE_HEADER_SIZE + i * SLOT_SIZE + OFFSET_FLAGS, 0);
+                        }
+                    }
+                    buffer.putInt(0, MAGIC);
+                    buffer.putInt(4, VERSION);
+                    buffer.putInt(8, SLOT_SIZE);
+                }
+                return new Region(buffer);
+            }
+        }
+
+        void flush() {
+            try {
+                buffer.force();
+            } catch (Exception e) {
+                // Best effort - the OS writes mapped pages back anyway
+            }
+        }
+    }
+
+    private static final class ChunkKey {
+        private final String worldName;
+        private final long chunkIndex;
+
+        private ChunkKey(String worldName, long chunkIndex) {
+            this.worldName = worldName;
+            this.chunkIndex = chunkIndex;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ChunkKey)) return false;
+            ChunkKey other = (ChunkKey) o;
+            return chunkIndex == other.chunkIndex && worldName.equals(other.worldName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(worldName, chunkIndex);
+        }
+    }
+}
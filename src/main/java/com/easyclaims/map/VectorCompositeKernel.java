@@ -0,0 +1,121 @@
+package com.easyclaims.map;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import javax.annotation.Nullable;
+
+/**
+ * SIMD version of {@link CompositeKernel} using the incubating Vector API.
+ *
+ * Performs the same float operations in the same order as the scalar kernel, so the
+ * output is identical. Only loaded by {@link CompositeKernel#init} when the
+ * jdk.incubator.vector module is present.
+ */
+class VectorCompositeKernel extends CompositeKernel {
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    VectorCompositeKernel() {
+        if (FLOATS.length() != INTS.length()) {
+            throw new IllegalStateException("Float and int vector shapes differ");
+        }
+    }
+
+    @Override
+    public String describe() {
+        return FLOATS.length() + " lanes";
+    }
+
+    @Override
+    public void compositeRow(int[] base, float[] blend, int claimColor, float[] shades, int shadeOffset,
+                             @Nullable int[] fluidTints, @Nullable float[] fluidMix,
+                             int[] out, int outOffset, int length) {
+        float claimR = claimColor >> 16 & 255;
+        float claimG = claimColor >> 8 & 255;
+        float claimB = claimColor & 255;
+        FloatVector one = FloatVector.broadcast(FLOATS, 1.0F);
+
+        int bound = FLOATS.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += FLOATS.length()) {
+            IntVector color = IntVector.fromArray(INTS, base, i);
+            IntVector r = color.lanewise(VectorOperators.LSHR, 16).and(255);
+            IntVector g = color.lanewise(VectorOperators.LSHR, 8).and(255);
+            IntVector b = color.and(255);
+
+            // Claim tint (a blend factor of 0 leaves the channel unchanged)
+            FloatVector blendFactor = FloatVector.fromArray(FLOATS, blend, i);
+            FloatVector keep = one.sub(blendFactor);
+            r = toInt(toFloat(r).mul(keep).add(blendFactor.mul(claimR)));
+            g = toInt(toFloat(g).mul(keep).add(blendFactor.mul(claimG)));
+            b = toInt(toFloat(b).mul(keep).add(blendFactor.mul(claimB)));
+
+            // Lighting/shading
+            FloatVector shade = FloatVector.fromArray(FLOATS, shades, shadeOffset + i);
+            r = toInt(toFloat(r).mul(shade)).max(0).min(255);
+            g = toInt(toFloat(g).mul(shade)).max(0).min(255);
+            b = toInt(toFloat(b).mul(shade)).max(0).min(255);
+
+            // Fluid tinting
+            if (fluidTints != null) {
+                IntVector tint = IntVector.fromArray(INTS, fluidTints, i);
+                FloatVector depthMultiplier = FloatVector.fromArray(FLOATS, fluidMix, i);
+                r = tintChannel(r, tint.lanewise(VectorOperators.LSHR, 16).and(255), depthMultiplier);
+                g = tintChannel(g, tint.lanewise(VectorOperators.LSHR, 8).and(255), depthMultiplier);
+                b = tintChannel(b, tint.and(255), depthMultiplier);
+            }
+
+            r.and(255).lanewise(VectorOperators.LSHL, 24)
+                    .or(g.and(255).lanewise(VectorOperators.LSHL, 16))
+                    .or(b.and(255).lanewise(VectorOperators.LSHL, 8))
+                    .or(255)
+                    .intoArray(out, outOffset + i);
+        }
+
+        compositeRange(base, blend, claimColor, shades, shadeOffset, fluidTints, fluidMix, out, outOffset, i, length);
+    }
+
+    @Override
+    public void blendRow(int[] base, int baseOffset, int overlay, int[] out, int outOffset, int length) {
+        int overlayA = (overlay >> 24) & 0xFF;
+        float alpha = overlayA / 255f;
+        float invAlpha = 1f - alpha;
+        float overlayR = ((overlay >> 16) & 0xFF) * alpha;
+        float overlayG = ((overlay >> 8) & 0xFF) * alpha;
+        float overlayB = (overlay & 0xFF) * alpha;
+
+        int bound = FLOATS.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += FLOATS.length()) {
+            IntVector pixel = IntVector.fromArray(INTS, base, baseOffset + i);
+            IntVector resultA = pixel.lanewise(VectorOperators.LSHR, 24).max(overlayA);
+            IntVector resultR = toInt(toFloat(pixel.lanewise(VectorOperators.LSHR, 16).and(255)).mul(invAlpha).add(overlayR));
+            IntVector resultG = toInt(toFloat(pixel.lanewise(VectorOperators.LSHR, 8).and(255)).mul(invAlpha).add(overlayG));
+            IntVector resultB = toInt(toFloat(pixel.and(255)).mul(invAlpha).add(overlayB));
+
+            resultA.lanewise(VectorOperators.LSHL, 24)
+                    .or(resultR.lanewise(VectorOperators.LSHL, 16))
+                    .or(resultG.lanewise(VectorOperators.LSHL, 8))
+                    .or(resultB)
+                    .intoArray(out, outOffset + i);
+        }
+
+        blendRange(base, baseOffset, overlay, out, outOffset, i, length);
+    }
+
+    private static IntVector tintChannel(IntVector channel, IntVector tint, FloatVector depthMultiplier) {
+        return toInt(toFloat(tint).add(toFloat(channel.and(255).sub(tint)).mul(depthMultiplier))).and(255);
+    }
+
+    private static FloatVector toFloat(IntVector vector) {
+        return (FloatVector) vector.convert(VectorOperators.I2F, 0);
+    }
+
+    private static IntVector toInt(FloatVector vector) {
+        return (IntVector) vector.convert(VectorOperators.F2I, 0);
+    }
+}
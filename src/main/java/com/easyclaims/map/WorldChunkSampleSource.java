@@ -0,0 +1,61 @@
+package com.easyclaims.map;
+
+import com.hypixel.hytale.server.core.universe.world.chunk.WorldChunk;
+import com.hypixel.hytale.server.core.universe.world.chunk.section.FluidSection;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A live chunk as a {@link ChunkSampleSource}.
+ */
+final class WorldChunkSampleSource implements ChunkSampleSource {
+
+    private final WorldChunk chunk;
+    private final FluidSection[] fluidSections;
+
+    /**
+     * @param fluidSections Fluid sections bottom to top, or null if only heights are read
+     */
+    WorldChunkSampleSource(@Nonnull WorldChunk chunk, @Nullable FluidSection[] fluidSections) {
+        this.chunk = chunk;
+        this.fluidSections = fluidSections != null ? fluidSections : new FluidSection[0];
+    }
+
+    @Override
+    public short getHeight(int x, int z) {
+        return chunk.getHeight(x, z);
+    }
+
+    @Override
+    public int getTint(int x, int z) {
+        return chunk.getTint(x, z);
+    }
+
+    @Override
+    public int getBlock(int x, int y, int z) {
+        return chunk.getBlock(x, y, z);
+    }
+
+    @Override
+    public int getEnvironment(int x, int y, int z) {
+        return chunk.getBlockChunk().getEnvironment(x, y, z);
+    }
+
+    @Override
+    public int getFluidSectionCount() {
+        return fluidSections.length;
+    }
+
+    @Nullable
+    @Override
+    public Object getFluidSection(int sectionY) {
+        FluidSection section = fluidSections[sectionY];
+        return section == null || section.isEmpty() ? null : section;
+    }
+
+    @Override
+    public int getFluidId(int sectionY, int x, int y, int z) {
+        return fluidSections[sectionY].getFluidId(x, y, z);
+    }
+}
@@ -0,0 +1,167 @@
+package com.easyclaims.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+import javax.annotation.Nullable;
+import java.util.UUID;
+
+/**
+ * Java Flight Recorder events for the plugin's slow paths, so a recording of a lag spike
+ * shows which claim, chunk or player file it was spent on, next to GC and I/O on the same
+ * timeline. They show up under "EasyClaims" in JDK Mission Control, or with
+ * <pre>
+ *   jfr print --categories EasyClaims recording.jfr
+ * </pre>
+ *
+ * Events are only filled in and committed when JFR is recording them and they ran longer
+ * than their threshold; otherwise begin/end cost next to nothing. The thresholds below are
+ * defaults and can be changed in a .jfc settings file like those of the JDK's own events.
+ */
+public final class ClaimEvents {
+
+    private ClaimEvents() {
+    }
+
+    /**
+     * Owner UUID as a string for an event field, null for unclaimed.
+     */
+    @Nullable
+    public static String owner(@Nullable UUID owner) {
+        return owner != null ? owner.toString() : null;
+    }
+
+    @Name("easyclaims.PermissionCheck")
+    @Label("Permission Check")
+    @Description("A claim permission check that took longer than the threshold")
+    @Category({"EasyClaims", "Protection"})
+    @Threshold("100 us")
+    @StackTrace(false)
+    public static final class PermissionCheck extends Event {
+        @Label("World")
+        public String world;
+        @Label("Chunk X")
+        public int chunkX;
+        @Label("Chunk Z")
+        public int chunkZ;
+        @Label("Owner")
+        public String owner;
+        @Label("Player")
+        public String player;
+        @Label("Required Trust")
+        public String required;
+        @Label("Allowed")
+        public boolean allowed;
+    }
+
+    @Name("easyclaims.StorageFlush")
+    @Label("Storage Flush")
+    @Description("Saving all cached claim or playtime data to disk")
+    @Category({"EasyClaims", "Storage"})
+    @StackTrace(false)
+    public static final class StorageFlush extends Event {
+        @Label("Storage")
+        @Description("claims or playtime")
+        public String storage;
+        @Label("Players")
+        public int players;
+    }
+
+    @Name("easyclaims.PlayerFileLoad")
+    @Label("Player File Load")
+    @Description("Reading a player's claim or playtime file the first time it is needed")
+    @Category({"EasyClaims", "Storage"})
+    public static final class PlayerFileLoad extends Event {
+        @Label("Storage")
+        @Description("claims or playtime")
+        public String storage;
+        @Label("Owner")
+        public String owner;
+        @Label("Found")
+        @Description("Whether the file existed")
+        public boolean found;
+        @Label("Size")
+        @DataAmount
+        public long bytes;
+        @Label("Claims")
+        public int claims;
+    }
+
+    @Name("easyclaims.MapTileRender")
+    @Label("Map Tile Render")
+    @Description("Rendering one map tile, from being picked off the queue until the image is done")
+    @Category({"EasyClaims", "Map"})
+    @Threshold("10 ms")
+    @StackTrace(false)
+    public static final class MapTileRender extends Event {
+        @Label("World")
+        public String world;
+        @Label("Chunk X")
+        public int chunkX;
+        @Label("Chunk Z")
+        public int chunkZ;
+        @Label("Owner")
+        public String owner;
+        @Label("Image Size")
+        public int imageSize;
+        @Label("Path")
+        @Description("cached, claim_only, rendered or unavailable")
+        public String path;
+    }
+
+    @Name("easyclaims.MapRenderStage")
+    @Label("Map Render Stage")
+    @Description("One stage of a map tile render")
+    @Category({"EasyClaims", "Map"})
+    @Threshold("1 ms")
+    @StackTrace(false)
+    public static final class MapRenderStage extends Event {
+        @Label("World")
+        public String world;
+        @Label("Chunk X")
+        public int chunkX;
+        @Label("Chunk Z")
+        public int chunkZ;
+        @Label("Stage")
+        @Description("cache_lookup, fetch_chunk, wait_neighbors, terrain or composite")
+        public String stage;
+        @Label("Image Size")
+        public int imageSize;
+    }
+
+    @Name("easyclaims.BulkClaimOperation")
+    @Label("Bulk Claim Operation")
+    @Description("An operation over many claims or positions at once")
+    @Category({"EasyClaims", "Protection"})
+    public static final class BulkClaimOperation extends Event {
+        @Label("Operation")
+        @Description("unclaim_all or check_batch")
+        public String operation;
+        @Label("World")
+        public String world;
+        @Label("Owner")
+        public String owner;
+        @Label("Player")
+        public String player;
+        @Label("Count")
+        @Description("Chunks unclaimed or positions checked")
+        public int count;
+        @Label("Denied")
+        public int denied;
+    }
+
+    @Name("easyclaims.ConfigReload")
+    @Label("Config Reload")
+    @Description("Reloading config.json")
+    @Category({"EasyClaims"})
+    public static final class ConfigReload extends Event {
+        @Label("File")
+        public String file;
+    }
+}
@@ -0,0 +1,169 @@
+package com.easyclaims.metrics;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process metrics: counters, latency histograms and gauges, by dotted name
+ * ("protection.break.denied", "map.render"). Shown by /claim admin stats and optionally
+ * appended to a file as one JSON object per interval.
+ *
+ * Metrics are created on first use and live for the whole process, so callers keep them in
+ * static final fields and updating one is just a LongAdder or histogram write:
+ * <pre>
+ *   private static final LongAdder RENDERED = Metrics.counter("map.tiles.rendered");
+ * </pre>
+ * Counters and histograms are cumulative since startup.
+ */
+public class Metrics {
+
+    private static final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private static final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+
+    private static final Gson gson = new Gson();
+    private static ScheduledExecutorService dumpTimer;
+
+    public static LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, (k) -> new LongAdder());
+    }
+
+    public static LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, (k) -> new LatencyHistogram());
+    }
+
+    /**
+     * Registers a value read when metrics are shown, replacing an earlier one of the same name.
+     */
+    public static void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Formats all metrics whose name starts with the prefix (all if null), one per line.
+     */
+    public static List<String> format(@Nullable String prefix) {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            if (matches(entry.getKey(), prefix)) {
+                lines.add(entry.getKey() + " = " + entry.getValue().sum());
+            }
+        }
+        for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+            if (matches(entry.getKey(), prefix)) {
+                lines.add(entry.getKey() + " = " + readGauge(entry.getValue()));
+            }
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            if (matches(entry.getKey(), prefix) && histogram.getCount() > 0) {
+                lines.add(String.format("%s: n=%d mean=%s p50=%s p99=%s p99.9=%s max=%s", entry.getKey(),
+                        histogram.getCount(), formatNanos((long) histogram.getMean()),
+                        formatNanos(histogram.getPercentile(50)), formatNanos(histogram.getPercentile(99)),
+                        formatNanos(histogram.getPercentile(99.9)), formatNanos(histogram.getMax())));
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * All metrics as one JSON object; histograms as count, mean, percentiles and max in nanoseconds.
+     */
+    public static JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("time", System.currentTimeMillis());
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            json.addProperty(entry.getKey(), entry.getValue().sum());
+        }
+        for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+            json.addProperty(entry.getKey(), readGauge(entry.getValue()));
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            JsonObject values = new JsonObject();
+            values.addProperty("count", histogram.getCount());
+            values.addProperty("mean", (long) histogram.getMean());
+            values.addProperty("p50", histogram.getPercentile(50));
+            values.addProperty("p90", histogram.getPercentile(90));
+            values.addProperty("p99", histogram.getPercentile(99));
+            values.addProperty("p999", histogram.getPercentile(99.9));
+            values.addProperty("max", histogram.getMax());
+            json.add(entry.getKey(), values);
+        }
+        return json;
+    }
+
+    /**
+     * Appends all metrics to a file every intervalSeconds, one JSON object per line.
+     */
+    public static synchronized void startDump(Path file, int intervalSeconds, HytaleLogger logger) {
+        stopDump();
+        dumpTimer = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "EasyClaims-Metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumpTimer.scheduleAtFixedRate(() -> {
+            try {
+                Files.writeString(file, gson.toJson(toJson()) + "\n", StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                logger.atWarning().withCause(e).log("[Metrics] Failed to write %s", file);
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        logger.atInfo().log("[Metrics] Writing metrics to %s every %d seconds", file, intervalSeconds);
+    }
+
+    public static synchronized void stopDump() {
+        if (dumpTimer != null) {
+            dumpTimer.shutdownNow();
+            dumpTimer = null;
+        }
+    }
+
+    /**
+     * Formats a duration with a unit that keeps it short (ns, us, ms or s).
+     */
+    public static String formatNanos(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + "ns";
+        }
+        if (nanos < 1_000_000) {
+            return String.format("%.1fus", nanos / 1e3);
+        }
+        if (nanos < 1_000_000_000) {
+            return String.format("%.1fms", nanos / 1e6);
+        }
+        return String.format("%.2fs", nanos / 1e9);
+    }
+
+    private static boolean matches(String name, @Nullable String prefix) {
+        return prefix == null || name.startsWith(prefix);
+    }
+
+    private static long readGauge(LongSupplier gauge) {
+        try {
+            return gauge.getAsLong();
+        } catch (RuntimeException e) {
+            // A gauge of a subsystem that isn't running
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.easyclaims.metrics;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+
+/**
+ * Times the phases of plugin startup, logs them in one line when done and keeps each as a
+ * "startup.&lt;name&gt;.&lt;phase&gt;_ms" gauge for /claim admin stats:
+ * <pre>
+ *   StartupTimer startup = new StartupTimer("setup", logger);
+ *   config = new PluginConfig(dataDirectory);
+ *   startup.mark("config");
+ *   ...
+ *   startup.finish();
+ * </pre>
+ * Not thread safe; each thread doing startup work uses its own.
+ */
+public final class StartupTimer {
+
+    private final String name;
+    private final HytaleLogger logger;
+    private final long start;
+    private final StringBuilder phases = new StringBuilder();
+    private long lastMark;
+
+    public StartupTimer(String name, HytaleLogger logger) {
+        this.name = name;
+        this.logger = logger;
+        this.start = System.nanoTime();
+        this.lastMark = this.start;
+    }
+
+    /**
+     * Ends a phase: the time since the previous mark (or the start) is counted as this phase.
+     */
+    public void mark(String phase) {
+        long now = System.nanoTime();
+        long nanos = now - lastMark;
+        lastMark = now;
+        Metrics.gauge("startup." + name + "." + phase + "_ms", () -> nanos / 1_000_000);
+        if (phases.length() > 0) {
+            phases.append(", ");
+        }
+        phases.append(phase).append(' ').append(Metrics.formatNanos(nanos));
+    }
+
+    /**
+     * Logs the total time and the time of every phase.
+     */
+    public void finish() {
+        long total = System.nanoTime() - start;
+        Metrics.gauge("startup." + name + "_ms", () -> total / 1_000_000);
+        logger.atInfo().log("[Startup] %s took %s (%s)", name, Metrics.formatNanos(total), phases);
+    }
+}
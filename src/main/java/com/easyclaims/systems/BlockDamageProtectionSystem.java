@@ -15,6 +15,7 @@ import com.hypixel.hytale.server.core.event.events.ecs.DamageBlockEvent;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import com.easyclaims.data.TrustLevel;
+import com.easyclaims.listeners.ClaimProtectionListener;
 import com.easyclaims.managers.ClaimManager;
 import com.easyclaims.util.Messages;
 
@@ -86,7 +87,10 @@ public class BlockDamageProtectionSystem extends EntityEventSystem<EntityStore,
         String worldName = player.getWorld().getName();
 
         // Damaging blocks requires DAMAGE trust level
-        if (!claimManager.hasPermissionAt(playerId, worldName, targetBlock.getX(), targetBlock.getZ(), TrustLevel.DAMAGE)) {
+        boolean allowed = ClaimProtectionListener.hasPermission(claimManager, playerId, worldName, targetBlock, TrustLevel.DAMAGE);
+        ProtectionEventRecorder.record(ProtectionEventLog.Kind.DAMAGE, playerId, worldName,
+                targetBlock.getX(), targetBlock.getY(), targetBlock.getZ(), TrustLevel.DAMAGE, allowed);
+        if (!allowed) {
             event.setCancelled(true);
             if (canSendMessage(playerId)) {
                 player.sendMessage(Messages.cannotDamageHere());
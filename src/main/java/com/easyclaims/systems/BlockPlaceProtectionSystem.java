@@ -15,7 +15,9 @@ import com.hypixel.hytale.server.core.event.events.ecs.PlaceBlockEvent;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import com.easyclaims.data.TrustLevel;
+import com.easyclaims.listeners.ClaimProtectionListener;
 import com.easyclaims.managers.ClaimManager;
+import com.easyclaims.map.TerrainTileCache;
 import com.easyclaims.util.Messages;
 
 import javax.annotation.Nonnull;
@@ -85,11 +87,17 @@ public class BlockPlaceProtectionSystem extends EntityEventSystem<EntityStore, P
         String worldName = player.getWorld().getName();
 
         // Placing blocks requires BUILD trust level
-        if (!claimManager.hasPermissionAt(playerId, worldName, targetBlock.getX(), targetBlock.getZ(), TrustLevel.BUILD)) {
+        boolean allowed = ClaimProtectionListener.hasPermission(claimManager, playerId, worldName, targetBlock, TrustLevel.BUILD);
+        ProtectionEventRecorder.record(ProtectionEventLog.Kind.PLACE, playerId, worldName,
+                targetBlock.getX(), targetBlock.getY(), targetBlock.getZ(), TrustLevel.BUILD, allowed);
+        if (!allowed) {
             event.setCancelled(true);
             if (canSendMessage(playerId)) {
                 player.sendMessage(Messages.cannotBuildHere());
             }
+        } else {
+            // Terrain changed - the cached map tile for this chunk is stale
+            TerrainTileCache.invalidateBlock(worldName, targetBlock.getX(), targetBlock.getZ());
         }
     }
 }
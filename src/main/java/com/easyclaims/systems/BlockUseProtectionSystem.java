@@ -18,6 +18,7 @@ import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import com.hypixel.hytale.protocol.InteractionType;
 import com.easyclaims.config.BlockGroups;
 import com.easyclaims.data.TrustLevel;
+import com.easyclaims.listeners.ClaimProtectionListener;
 import com.easyclaims.managers.ClaimManager;
 import com.easyclaims.util.Messages;
 
@@ -94,7 +95,11 @@ public class BlockUseProtectionSystem extends EntityEventSystem<EntityStore, Use
         TrustLevel requiredLevel = getRequiredTrustLevel(blockType, interactionType);
 
         // Check if player has permission
-        if (!claimManager.hasPermissionAt(playerId, worldName, targetBlock.getX(), targetBlock.getZ(), requiredLevel)) {
+        // Reuse the decision from the matching PlayerInteractEvent when it covers this level
+        boolean allowed = ClaimProtectionListener.hasPermission(claimManager, playerId, worldName, targetBlock, requiredLevel);
+        ProtectionEventRecorder.record(ProtectionEventLog.Kind.USE, playerId, worldName,
+                targetBlock.getX(), targetBlock.getY(), targetBlock.getZ(), requiredLevel, allowed);
+        if (!allowed) {
             event.setCancelled(true);
             if (canSendMessage(playerId)) {
                 // Send appropriate message based on interaction type
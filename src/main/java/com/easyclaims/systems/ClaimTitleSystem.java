@@ -1,6 +1,7 @@
 package com.easyclaims.systems;
 
 import com.easyclaims.data.ClaimStorage;
+import com.easyclaims.map.MapRenderScheduler;
 import com.easyclaims.util.ChunkUtil;
 import com.hypixel.hytale.component.ArchetypeChunk;
 import com.hypixel.hytale.component.CommandBuffer;
@@ -8,6 +9,7 @@ import com.hypixel.hytale.component.Ref;
 import com.hypixel.hytale.component.Store;
 import com.hypixel.hytale.component.query.Query;
 import com.hypixel.hytale.component.system.tick.EntityTickingSystem;
+import com.hypixel.hytale.logger.HytaleLogger;
 import com.hypixel.hytale.server.core.Message;
 import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
@@ -22,7 +24,8 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Ticking system that shows a title banner when players enter or leave claimed zones.
- * Runs every tick for all players and displays a title when the claim status changes.
+ * Players are checked on a staggered schedule (a few times per second each) rather than
+ * every tick, and a title is displayed when the claim status changes.
  */
 public class ClaimTitleSystem extends EntityTickingSystem<EntityStore> {
 
@@ -30,12 +33,18 @@ public class ClaimTitleSystem extends EntityTickingSystem<EntityStore> {
     private static final Message EASY_CLAIMS_MESSAGE = Message.raw("EasyClaims");
     private static final String WILDERNESS_TEXT = "Wilderness";
 
+    // Each player is checked every TITLE_BUCKETS ticks (4 = 5 checks per second)
+    private static final int TITLE_BUCKETS = 4;
+    private static final long TITLE_BUDGET_NANOS = 1_000_000L; // 1ms per tick
+
     private final ClaimStorage claimStorage;
     private final Map<UUID, String> playerLastTitle;
+    private final StaggeredTickScheduler scheduler;
 
-    public ClaimTitleSystem(ClaimStorage claimStorage) {
+    public ClaimTitleSystem(ClaimStorage claimStorage, HytaleLogger logger) {
         this.claimStorage = claimStorage;
         this.playerLastTitle = new ConcurrentHashMap<>();
+        this.scheduler = new StaggeredTickScheduler("titles", TITLE_BUCKETS, TITLE_BUDGET_NANOS, logger);
     }
 
     @Override
@@ -48,12 +57,25 @@ public class ClaimTitleSystem extends EntityTickingSystem<EntityStore> {
         Player player = store.getComponent(ref, Player.getComponentType());
         if (playerRef == null || player == null) return;
 
+        String worldName = player.getWorld().getName();
+        if (!scheduler.tryAcquire(worldName, playerRef.getUuid())) return;
+        long start = System.nanoTime();
+        try {
+            updateTitle(playerRef, player, worldName);
+        } finally {
+            scheduler.complete(worldName, start);
+        }
+    }
+
+    private void updateTitle(PlayerRef playerRef, Player player, String worldName) {
         // Get player's current position and convert to chunk coordinates
         double posX = playerRef.getTransform().getPosition().getX();
         double posZ = playerRef.getTransform().getPosition().getZ();
         int chunkX = ChunkUtil.toChunkX(posX);
         int chunkZ = ChunkUtil.toChunkZ(posZ);
-        String worldName = player.getWorld().getName();
+
+        // Map tiles near players are rendered first
+        MapRenderScheduler.updateViewer(playerRef.getUuid(), worldName, chunkX, chunkZ);
 
         // Check if this chunk is claimed
         Message titleMessage = WILDERNESS_MESSAGE;
@@ -86,6 +108,22 @@ public class ClaimTitleSystem extends EntityTickingSystem<EntityStore> {
      */
     public void removePlayer(UUID playerId) {
         playerLastTitle.remove(playerId);
+        scheduler.removePlayer(playerId);
+        MapRenderScheduler.removeViewer(playerId);
+    }
+
+    /**
+     * Forget a world's tick state when the world is removed.
+     */
+    public void removeWorld(String worldName) {
+        scheduler.removeWorld(worldName);
+    }
+
+    /**
+     * Gets the scheduler that staggers title checks (for stats reporting).
+     */
+    public StaggeredTickScheduler getScheduler() {
+        return scheduler;
     }
 
     @Nullable
@@ -91,7 +91,11 @@ public class ItemPickupProtectionSystem extends EntityEventSystem<EntityStore, I
         String worldName = player.getWorld().getName();
 
         // Picking up items requires USE trust level (same as basic interaction)
-        if (!claimManager.hasPermissionAt(playerId, worldName, position.getX(), position.getZ(), TrustLevel.USE)) {
+        boolean allowed = claimManager.hasPermissionAt(playerId, worldName, position.getX(), position.getZ(), TrustLevel.USE);
+        ProtectionEventRecorder.record(ProtectionEventLog.Kind.PICKUP, playerId, worldName,
+                (int) Math.floor(position.getX()), (int) Math.floor(position.getY()), (int) Math.floor(position.getZ()),
+                TrustLevel.USE, allowed);
+        if (!allowed) {
             event.setCancelled(true);
             if (canSendMessage(playerId)) {
                 player.sendMessage(Messages.cannotPickupItemsHere());
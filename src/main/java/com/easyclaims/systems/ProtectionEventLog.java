@@ -0,0 +1,225 @@
+package com.easyclaims.systems;
+
+import com.easyclaims.data.TrustLevel;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Binary log of protection decisions, written by {@link ProtectionEventRecorder} and read
+ * back by the replay harness in benchmarks/.
+ *
+ * After a header ("ECPT" and a version), each record starts with a tag byte. Players and
+ * worlds are written once when first seen and referred to by number afterwards, so an
+ * event takes about a dozen bytes:
+ * <pre>
+ *   event:        kind, time since previous event (varint, ns), player, world (varints),
+ *                 x, y, z (zigzag varints), required trust level ordinal << 1 | allowed
+ *   define player: 0x40, UUID (two longs)
+ *   define world:  0x41, name (UTF)
+ * </pre>
+ */
+public final class ProtectionEventLog {
+
+    public static final int MAGIC = 0x45435054; // "ECPT"
+    public static final int VERSION = 1;
+
+    private static final int TAG_PLAYER = 0x40;
+    private static final int TAG_WORLD = 0x41;
+
+    /**
+     * What triggered a protection decision; one per protection system plus the interact listener.
+     */
+    public enum Kind {
+        BREAK,
+        PLACE,
+        DAMAGE,
+        USE,
+        PICKUP,
+        INTERACT;
+
+        private static final Kind[] VALUES = values();
+    }
+
+    private static final TrustLevel[] LEVELS = TrustLevel.values();
+
+    private ProtectionEventLog() {
+    }
+
+    /**
+     * Writes events to a stream. Not thread safe.
+     */
+    public static final class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final Map<UUID, Integer> players = new HashMap<>();
+        private final Map<String, Integer> worlds = new HashMap<>();
+        private long lastTime;
+        private long count;
+
+        /**
+         * @param startTime Time (System.nanoTime) the first event is measured from
+         */
+        public Writer(OutputStream out, long startTime) throws IOException {
+            this.out = new DataOutputStream(out);
+            this.out.writeInt(MAGIC);
+            this.out.writeInt(VERSION);
+            this.lastTime = startTime;
+        }
+
+        public void write(Kind kind, long time, UUID player, String world, int x, int y, int z,
+                          TrustLevel required, boolean allowed) throws IOException {
+            Integer playerId = players.get(player);
+            if (playerId == null) {
+                playerId = players.size();
+                players.put(player, playerId);
+                out.writeByte(TAG_PLAYER);
+                out.writeLong(player.getMostSignificantBits());
+                out.writeLong(player.getLeastSignificantBits());
+            }
+            Integer worldId = worlds.get(world);
+            if (worldId == null) {
+                worldId = worlds.size();
+                worlds.put(world, worldId);
+                out.writeByte(TAG_WORLD);
+                out.writeUTF(world);
+            }
+
+            out.writeByte(kind.ordinal());
+            writeVarLong(Math.max(0, time - lastTime));
+            writeVarLong(playerId);
+            writeVarLong(worldId);
+            writeVarLong(zigzag(x));
+            writeVarLong(zigzag(y));
+            writeVarLong(zigzag(z));
+            out.writeByte(required.ordinal() << 1 | (allowed ? 1 : 0));
+            lastTime = Math.max(lastTime, time);
+            count++;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+
+        private static long zigzag(int value) {
+            return (value << 1 ^ value >> 31) & 0xFFFFFFFFL;
+        }
+    }
+
+    /**
+     * Reads events from a stream one at a time; the fields describe the last event read.
+     * Not thread safe.
+     */
+    public static final class Reader implements Closeable {
+        private final DataInputStream in;
+        private final List<UUID> players = new ArrayList<>();
+        private final List<String> worlds = new ArrayList<>();
+
+        public Kind kind;
+        // Nanoseconds since the recording started
+        public long time;
+        public UUID player;
+        public String world;
+        public int x;
+        public int y;
+        public int z;
+        public TrustLevel required;
+        public boolean allowed;
+
+        public Reader(InputStream in) throws IOException {
+            this.in = new DataInputStream(in);
+            if (this.in.readInt() != MAGIC) {
+                throw new IOException("Not a protection event log");
+            }
+            int version = this.in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported protection event log version: " + version);
+            }
+        }
+
+        /**
+         * Reads the next event.
+         *
+         * @return false at the end of the log, including a record cut off by a crash
+         */
+        public boolean next() throws IOException {
+            try {
+                while (true) {
+                    int tag = in.read();
+                    if (tag < 0) {
+                        return false;
+                    }
+                    if (tag == TAG_PLAYER) {
+                        players.add(new UUID(in.readLong(), in.readLong()));
+                    } else if (tag == TAG_WORLD) {
+                        worlds.add(in.readUTF());
+                    } else if (tag < Kind.VALUES.length) {
+                        kind = Kind.VALUES[tag];
+                        time += readVarLong();
+                        player = players.get((int) readVarLong());
+                        world = worlds.get((int) readVarLong());
+                        x = unzigzag(readVarLong());
+                        y = unzigzag(readVarLong());
+                        z = unzigzag(readVarLong());
+                        int decision = in.readUnsignedByte();
+                        required = LEVELS[decision >> 1];
+                        allowed = (decision & 1) != 0;
+                        return true;
+                    } else {
+                        throw new IOException("Corrupt protection event log (tag " + tag + ")");
+                    }
+                }
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Corrupt protection event log (varint too long)");
+        }
+
+        private static int unzigzag(long value) {
+            int v = (int) value;
+            return v >>> 1 ^ -(v & 1);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.easyclaims.systems;
+
+import com.easyclaims.data.TrustLevel;
+import com.easyclaims.metrics.Metrics;
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts every protection decision per kind in {@link Metrics} (protection.&lt;kind&gt;.allowed
+ * and .denied), and while enabled also records it to a {@link ProtectionEventLog}, so load
+ * from a live server can be replayed against ClaimManager offline (see benchmarks/).
+ *
+ * Events are encoded into a memory buffer on the calling (world) thread and written to disk
+ * once a second on a background thread. If the disk falls behind by more than
+ * {@link #MAX_PENDING_BYTES}, events are dropped and counted instead of growing the buffer.
+ * When not recording, {@link #record} only counts the decision.
+ */
+public class ProtectionEventRecorder {
+
+    private static final long FLUSH_INTERVAL_MS = 1000;
+    private static final int MAX_PENDING_BYTES = 16 * 1024 * 1024;
+
+    private static final LongAdder[] allowedCounts = new LongAdder[ProtectionEventLog.Kind.values().length];
+    private static final LongAdder[] deniedCounts = new LongAdder[allowedCounts.length];
+
+    static {
+        for (ProtectionEventLog.Kind kind : ProtectionEventLog.Kind.values()) {
+            String name = "protection." + kind.name().toLowerCase();
+            allowedCounts[kind.ordinal()] = Metrics.counter(name + ".allowed");
+            deniedCounts[kind.ordinal()] = Metrics.counter(name + ".denied");
+        }
+    }
+
+    private static final Object lock = new Object();
+
+    private static volatile boolean recording;
+    // Guarded by lock
+    private static ByteArrayOutputStream pending;
+    private static ProtectionEventLog.Writer writer;
+    private static OutputStream file;
+    private static Path path;
+    private static long dropped;
+
+    private static ScheduledExecutorService timer;
+    private static HytaleLogger logger;
+
+    /**
+     * Starts recording into a new file, replacing it if it exists.
+     *
+     * @return false if already recording or the file could not be created
+     */
+    public static boolean start(Path target, HytaleLogger log) {
+        synchronized (lock) {
+            if (recording) {
+                return false;
+            }
+            logger = log;
+            try {
+                Files.createDirectories(target.toAbsolutePath().getParent());
+                file = Files.newOutputStream(target);
+                pending = new ByteArrayOutputStream(64 * 1024);
+                writer = new ProtectionEventLog.Writer(pending, System.nanoTime());
+            } catch (IOException e) {
+                log.atWarning().withCause(e).log("[Trace] Could not create protection event log: %s", target);
+                closeQuietly();
+                return false;
+            }
+            path = target;
+            dropped = 0;
+            timer = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+                Thread thread = new Thread(runnable, "EasyClaims-ProtectionTrace");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.scheduleWithFixedDelay(ProtectionEventRecorder::flush,
+                    FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            recording = true;
+        }
+        log.atInfo().log("[Trace] Recording protection events to %s", target);
+        return true;
+    }
+
+    /**
+     * Stops recording and closes the file.
+     *
+     * @return The file that was recorded to, or null if not recording
+     */
+    @Nullable
+    public static Path stop() {
+        ScheduledExecutorService currentTimer;
+        synchronized (lock) {
+            if (!recording) {
+                return null;
+            }
+            recording = false;
+            currentTimer = timer;
+            timer = null;
+        }
+        currentTimer.shutdown();
+        try {
+            currentTimer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        flush();
+        synchronized (lock) {
+            if (writer == null) {
+                // Writing failed in the meantime, already closed
+                return null;
+            }
+            Path recorded = path;
+            long count = writer.getCount();
+            closeQuietly();
+            if (dropped > 0) {
+                logger.atWarning().log("[Trace] Stopped recording: %d events in %s, %d dropped (disk too slow)",
+                        count, recorded, dropped);
+            } else {
+                logger.atInfo().log("[Trace] Stopped recording: %d events in %s", count, recorded);
+            }
+            return recorded;
+        }
+    }
+
+    public static boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * Number of events recorded since recording started, 0 if not recording.
+     */
+    public static long getRecordedCount() {
+        synchronized (lock) {
+            return writer != null ? writer.getCount() : 0;
+        }
+    }
+
+    /**
+     * Counts a protection decision, and records it if recording is enabled.
+     */
+    public static void record(ProtectionEventLog.Kind kind, UUID playerId, String worldName, int x, int y, int z,
+                              TrustLevel required, boolean allowed) {
+        (allowed ? allowedCounts : deniedCounts)[kind.ordinal()].increment();
+        if (!recording) {
+            return;
+        }
+        long time = System.nanoTime();
+        synchronized (lock) {
+            if (writer == null) {
+                return;
+            }
+            if (pending.size() > MAX_PENDING_BYTES) {
+                dropped++;
+                return;
+            }
+            try {
+                writer.write(kind, time, playerId, worldName, x, y, z, required, allowed);
+            } catch (IOException e) {
+                // Writing to memory doesn't fail
+                dropped++;
+            }
+        }
+    }
+
+    /**
+     * Moves buffered events to disk.
+     */
+    private static void flush() {
+        byte[] bytes;
+        OutputStream out;
+        synchronized (lock) {
+            if (writer == null || pending.size() == 0) {
+                return;
+            }
+            try {
+                writer.flush();
+            } catch (IOException ignored) {
+                // Flushing into memory doesn't fail
+            }
+            bytes = pending.toByteArray();
+            pending.reset();
+            out = file;
+        }
+        try {
+            // Only this thread (or stop, after it ended) writes to the file
+            out.write(bytes);
+            out.flush();
+        } catch (IOException e) {
+            logger.atWarning().withCause(e).log("[Trace] Failed writing protection event log, stopping");
+            ScheduledExecutorService currentTimer;
+            synchronized (lock) {
+                recording = false;
+                currentTimer = timer;
+                timer = null;
+                closeQuietly();
+            }
+            if (currentTimer != null) {
+                currentTimer.shutdown();
+            }
+        }
+    }
+
+    private static void closeQuietly() {
+        try {
+            if (file != null) {
+                file.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        file = null;
+        writer = null;
+        pending = null;
+        path = null;
+    }
+}
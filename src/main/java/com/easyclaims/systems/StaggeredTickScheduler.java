@@ -0,0 +1,207 @@
+package com.easyclaims.systems;
+
+import com.easyclaims.metrics.Metrics;
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Spreads per-player periodic work across server ticks.
+ *
+ * Players are assigned to one of a fixed number of round-robin buckets, and only the
+ * bucket matching the current tick is evaluated. Each tick also has a time budget:
+ * once it is used up, remaining players are deferred to the next tick instead of
+ * being processed late in the same one.
+ *
+ * Ticks are counted per world, from the calls themselves: an entity ticking system is
+ * called once per player per world tick, so a player coming up a second time means the
+ * world has moved on to its next tick. Bucketing therefore follows the server's ticks
+ * however far it lags, and every world thread has its own budget.
+ *
+ * Usage from a ticking system (calls for a world must come from that world's thread):
+ * <pre>
+ *   if (!scheduler.tryAcquire(worldName, playerId)) return;
+ *   long start = System.nanoTime();
+ *   try { ... } finally { scheduler.complete(worldName, start); }
+ * </pre>
+ */
+public class StaggeredTickScheduler {
+
+    // How often the skip report is logged when work is being deferred
+    private static final long REPORT_INTERVAL_NANOS = 60_000_000_000L;
+
+    private final String name;
+    private final int bucketCount;
+    private final long budgetNanos;
+    private final HytaleLogger logger;
+
+    private final Map<String, WorldTick> worlds = new ConcurrentHashMap<>();
+    private final AtomicLong lastReport = new AtomicLong(System.nanoTime());
+
+    // Players whose turn came up while the budget was exhausted; they run first next tick
+    private final Set<UUID> deferred = ConcurrentHashMap.newKeySet();
+
+    // Shared with every scheduler of the same name
+    private final LongAdder evaluated;
+    private final LongAdder notInBucket;
+    private final LongAdder overBudget;
+
+    /**
+     * @param name        Name used in reports and as the metrics prefix (e.g. "titles")
+     * @param bucketCount Number of round-robin buckets; each player runs every bucketCount ticks
+     * @param budgetNanos Time budget per world tick across all its players, in nanoseconds
+     * @param logger      Logger for skip reports, may be null
+     */
+    public StaggeredTickScheduler(String name, int bucketCount, long budgetNanos, HytaleLogger logger) {
+        this.name = name;
+        this.bucketCount = Math.max(1, bucketCount);
+        this.budgetNanos = Math.max(0, budgetNanos);
+        this.logger = logger;
+        this.evaluated = Metrics.counter(name + ".evaluated");
+        this.notInBucket = Metrics.counter(name + ".skipped.not_in_bucket");
+        this.overBudget = Metrics.counter(name + ".skipped.over_budget");
+        Metrics.gauge(name + ".deferred", this::getDeferredCount);
+    }
+
+    /**
+     * Decides whether a player's work should run on this tick.
+     * Callers that get true must call {@link #complete(String, long)} afterwards.
+     */
+    public boolean tryAcquire(String world, UUID playerId) {
+        WorldTick worldTick = worlds.computeIfAbsent(world, (k) -> new WorldTick());
+        long tick = worldTick.advance(playerId);
+
+        boolean wasDeferred = deferred.contains(playerId);
+        if (!wasDeferred && Math.floorMod(tick, bucketCount) != bucketOf(playerId)) {
+            notInBucket.increment();
+            return false;
+        }
+
+        if (budgetNanos > 0 && worldTick.spentNanos >= budgetNanos) {
+            deferred.add(playerId);
+            overBudget.increment();
+            return false;
+        }
+
+        if (wasDeferred) {
+            deferred.remove(playerId);
+        }
+        evaluated.increment();
+        return true;
+    }
+
+    /**
+     * Records the time spent on work started at the given System.nanoTime() value.
+     */
+    public void complete(String world, long startNanos) {
+        WorldTick worldTick = worlds.get(world);
+        if (worldTick != null) {
+            worldTick.spentNanos += System.nanoTime() - startNanos;
+        }
+    }
+
+    /**
+     * Forgets a player (call on disconnect).
+     */
+    public void removePlayer(UUID playerId) {
+        deferred.remove(playerId);
+    }
+
+    /**
+     * Forgets a world (call when it is removed).
+     */
+    public void removeWorld(String world) {
+        worlds.remove(world);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getBucketCount() {
+        return bucketCount;
+    }
+
+    /**
+     * Number of player evaluations that ran.
+     */
+    public long getEvaluatedCount() {
+        return evaluated.sum();
+    }
+
+    /**
+     * Number of player evaluations skipped because it wasn't their bucket's tick.
+     */
+    public long getNotInBucketCount() {
+        return notInBucket.sum();
+    }
+
+    /**
+     * Number of player evaluations deferred because the tick budget was used up.
+     */
+    public long getOverBudgetCount() {
+        return overBudget.sum();
+    }
+
+    /**
+     * Number of players currently waiting for a deferred evaluation.
+     */
+    public int getDeferredCount() {
+        return deferred.size();
+    }
+
+    /**
+     * Human-readable summary of the scheduler counters.
+     */
+    public String formatStats() {
+        return String.format("%s: evaluated=%d, notInBucket=%d, overBudget=%d, deferredNow=%d (buckets=%d, budget=%.2fms)",
+                name, getEvaluatedCount(), getNotInBucketCount(), getOverBudgetCount(), getDeferredCount(),
+                bucketCount, budgetNanos / 1_000_000.0);
+    }
+
+    private int bucketOf(UUID playerId) {
+        long bits = playerId.getMostSignificantBits() ^ playerId.getLeastSignificantBits();
+        return Math.floorMod((int) (bits ^ (bits >>> 32)), bucketCount);
+    }
+
+    private void maybeReport() {
+        long now = System.nanoTime();
+        long last = lastReport.get();
+        if (now - last < REPORT_INTERVAL_NANOS || !lastReport.compareAndSet(last, now)) {
+            return;
+        }
+        if (logger != null && getOverBudgetCount() > 0) {
+            logger.atInfo().log("[Scheduler] %s", formatStats());
+        }
+    }
+
+    /**
+     * Tick count and budget of one world. Only used from that world's thread.
+     */
+    private final class WorldTick {
+        private final Set<UUID> seenThisTick = new HashSet<>();
+        private long tick;
+        private long spentNanos;
+
+        /**
+         * Notes that a player is being ticked and returns the world's current tick number,
+         * starting a new tick (and resetting the budget) if the player was already seen.
+         */
+        long advance(UUID playerId) {
+            if (!seenThisTick.add(playerId)) {
+                tick++;
+                spentNanos = 0;
+                seenThisTick.clear();
+                seenThisTick.add(playerId);
+                maybeReport();
+            }
+            return tick;
+        }
+    }
+}
@@ -8,6 +8,12 @@ public class ChunkUtil {
     // Hytale uses 32-block chunks (not 16 like Minecraft)
     public static final int CHUNK_SIZE = 32;
 
+    // Packed block position layout: 26 bits X | 26 bits Z | 12 bits Y
+    private static final int PACKED_XZ_BITS = 26;
+    private static final int PACKED_Y_BITS = 12;
+    private static final long PACKED_XZ_MASK = (1L << PACKED_XZ_BITS) - 1;
+    private static final long PACKED_Y_MASK = (1L << PACKED_Y_BITS) - 1;
+
     /**
      * Converts a world X coordinate to a chunk X coordinate.
      */
@@ -50,6 +56,37 @@ public class ChunkUtil {
         return (chunkZ + 1) * CHUNK_SIZE - 1;
     }
 
+    /**
+     * Packs a block position into a single long (for batch permission checks).
+     * X and Z must fit in 26 signed bits, Y in 12 signed bits.
+     */
+    public static long packBlock(int x, int y, int z) {
+        return ((x & PACKED_XZ_MASK) << (PACKED_XZ_BITS + PACKED_Y_BITS))
+                | ((z & PACKED_XZ_MASK) << PACKED_Y_BITS)
+                | (y & PACKED_Y_MASK);
+    }
+
+    /**
+     * Gets the X coordinate from a packed block position.
+     */
+    public static int unpackX(long packed) {
+        return (int) (packed >> (PACKED_XZ_BITS + PACKED_Y_BITS));
+    }
+
+    /**
+     * Gets the Y coordinate from a packed block position.
+     */
+    public static int unpackY(long packed) {
+        return (int) (packed << (64 - PACKED_Y_BITS) >> (64 - PACKED_Y_BITS));
+    }
+
+    /**
+     * Gets the Z coordinate from a packed block position.
+     */
+    public static int unpackZ(long packed) {
+        return (int) (packed << PACKED_XZ_BITS >> (64 - PACKED_XZ_BITS));
+    }
+
     /**
      * Creates a chunk key string for use in maps/indexes.
      */
@@ -0,0 +1,126 @@
+package com.easyclaims.map;
+
+import jdk.incubator.vector.FloatVector;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the SIMD map kernel against the scalar one pixel by pixel, on edge cases the
+ * random startup check may miss. Only built with -Psimd, like the kernel itself.
+ */
+class VectorCompositeKernelTest {
+
+    private static final int LANES = FloatVector.SPECIES_PREFERRED.length();
+
+    private final CompositeKernel scalar = new CompositeKernel();
+    private final CompositeKernel vector = new VectorCompositeKernel();
+
+    // Full vectors, full vectors plus a tail, and rows shorter than one vector
+    private static final int[] LENGTHS = {1, LANES - 1, LANES, LANES + 1, 2 * LANES - 1, 3 * LANES + 3, 32};
+
+    private static final int[] COLORS = {0x000000, 0xFFFFFF, 0xFF0000, 0x00FF00, 0x0000FF, 0x808080, 0x123456, 0xFEDCBA};
+    private static final float[] BLENDS = {0.0F, 1.0F, 0.4F, 0.7F};
+    private static final float[] SHADES = {0.0F, 0.4F, 1.0F, 1.25F, 2.0F};
+    private static final float[] FLUID_MIX = {1.0F, 0.0F, 0.5F, 1.0F / 3.0F};
+
+    @Test
+    void compositeRowMatchesScalar() {
+        for (int length : LENGTHS) {
+            if (length < 1) {
+                continue;
+            }
+            for (int claimColor : COLORS) {
+                for (boolean fluid : new boolean[]{false, true}) {
+                    int[] base = new int[length];
+                    float[] blend = new float[length];
+                    float[] shades = new float[length + 5];
+                    int[] fluidTints = new int[length];
+                    float[] fluidMix = new float[length];
+                    for (int i = 0; i < length; ++i) {
+                        base[i] = COLORS[i % COLORS.length];
+                        blend[i] = BLENDS[i % BLENDS.length];
+                        fluidTints[i] = COLORS[(i + 3) % COLORS.length];
+                        fluidMix[i] = FLUID_MIX[i % FLUID_MIX.length];
+                    }
+                    for (int i = 0; i < shades.length; ++i) {
+                        shades[i] = SHADES[i % SHADES.length];
+                    }
+
+                    int[] expected = new int[length + 2];
+                    int[] actual = new int[length + 2];
+                    scalar.compositeRow(base, blend, claimColor, shades, 5, fluid ? fluidTints : null,
+                            fluid ? fluidMix : null, expected, 2, length);
+                    vector.compositeRow(base, blend, claimColor, shades, 5, fluid ? fluidTints : null,
+                            fluid ? fluidMix : null, actual, 2, length);
+                    assertPixels("compositeRow length " + length + " claim " + Integer.toHexString(claimColor)
+                            + (fluid ? " with fluid" : ""), expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    void compositeRowWithUniformInputMatchesScalar() {
+        // Whole rows of saturated or fully blended pixels, so every lane sees the same extreme
+        for (int length : LENGTHS) {
+            if (length < 1) {
+                continue;
+            }
+            for (int color : COLORS) {
+                for (float blendFactor : BLENDS) {
+                    int[] base = filled(length, color);
+                    float[] blend = new float[length];
+                    Arrays.fill(blend, blendFactor);
+                    float[] shades = new float[length];
+                    Arrays.fill(shades, 2.0F);
+                    float[] fluidMix = new float[length];
+                    Arrays.fill(fluidMix, 1.0F);
+
+                    int[] expected = new int[length];
+                    int[] actual = new int[length];
+                    scalar.compositeRow(base, blend, 0xFFFFFF, shades, 0, filled(length, 0x0000FF), fluidMix, expected, 0, length);
+                    vector.compositeRow(base, blend, 0xFFFFFF, shades, 0, filled(length, 0x0000FF), fluidMix, actual, 0, length);
+                    assertPixels("uniform row length " + length + " color " + Integer.toHexString(color)
+                            + " blend " + blendFactor, expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    void blendRowMatchesScalar() {
+        int[] overlays = {0x00000000, 0xFFFFFFFF, 0x80FF0000, 0x01000000, 0xFE123456, 0x40FFFFFF};
+        int[] pixels = {0xFFFFFFFF, 0x00000000, 0xFF000000, 0x00FFFFFF, 0x80808080, 0xFF123456, 0x7FFEDCBA};
+        for (int length : LENGTHS) {
+            if (length < 1) {
+                continue;
+            }
+            int[] base = new int[length + 3];
+            for (int i = 0; i < base.length; ++i) {
+                base[i] = pixels[i % pixels.length];
+            }
+            for (int overlay : overlays) {
+                int[] expected = new int[length + 1];
+                int[] actual = new int[length + 1];
+                scalar.blendRow(base, 3, overlay, expected, 1, length);
+                vector.blendRow(base, 3, overlay, actual, 1, length);
+                assertPixels("blendRow length " + length + " overlay " + Integer.toHexString(overlay), expected, actual);
+            }
+        }
+    }
+
+    private static int[] filled(int length, int value) {
+        int[] array = new int[length];
+        Arrays.fill(array, value);
+        return array;
+    }
+
+    private static void assertPixels(String what, int[] expected, int[] actual) {
+        int mismatch = Arrays.mismatch(expected, actual);
+        assertEquals(-1, mismatch, () -> String.format("%s: pixel %d is %08x, expected %08x",
+                what, mismatch, actual[mismatch], expected[mismatch]));
+    }
+}